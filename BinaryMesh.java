@@ -0,0 +1,352 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads a complex stored in the binary mesh format, which holds the same information as the Data, Edges and
+ * Triangles text files without any parsing. All values are little endian. The file starts with a header of 32
+ * bytes: the magic number "PCMB", the version, the flags, the number of vertices, edges and triangles as ints,
+ * and eight reserved bytes. The header is followed by these sections, the optional ones present if their flag
+ * is set:
+ *
+ *   vertex heights    vertexCount doubles
+ *   vertex ids        vertexCount ints, optional (VERTEX_IDS)
+ *   edges             edgeCount pairs of vertex indices, ints
+ *   edge heights      edgeCount doubles, optional (EDGE_HEIGHTS)
+ *   triangles         triangleCount triples of vertex indices, ints
+ *   triangle heights  triangleCount doubles, optional (TRIANGLE_HEIGHTS)
+ *
+ * Vertices are indexed from 0 in file order. A missing or NaN edge or triangle height means that the height is
+ * computed from the vertices, as when it is omitted from a text file. The vertex ids are not used by the
+ * contraction; Driver writes the original index of every surviving vertex there, since the surviving vertices
+ * of a contracted complex are indexed from 0 again.
+ *
+ * The sections are read from a memory mapping of the file, mapped in windows of at most WINDOW bytes and copied
+ * into arrays in bulk. BinaryMeshWriter writes files in this format.
+ */
+public class BinaryMesh implements Closeable {
+
+	/* "PCMB" read as a little endian int */
+	public static final int MAGIC = 'P' | 'C' << 8 | 'M' << 16 | 'B' << 24;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+
+	/* Flags of the optional sections */
+	public static final int EDGE_HEIGHTS = 1;
+	public static final int TRIANGLE_HEIGHTS = 2;
+	public static final int VERTEX_IDS = 4;
+	static final int ALL_FLAGS = EDGE_HEIGHTS | TRIANGLE_HEIGHTS | VERTEX_IDS;
+
+	private static final long WINDOW = 1L << 30;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int flags;
+	private int vertexCount;
+	private int edgeCount;
+	private int triangleCount;
+
+	/**
+	 * Opens the file and reads its header. The file must not be modified while it is read.
+	 * @param filename
+	 * @throws IOException if the file is not in the binary mesh format
+	 */
+	public BinaryMesh(String filename) throws IOException
+	{
+		this.file = new RandomAccessFile(filename, "r");
+		this.channel = this.file.getChannel();
+		try {
+			if(this.channel.size() < HEADER_SIZE)
+			{
+				throw new IOException(filename + " is too short for a binary mesh!");
+			}
+			MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getInt(0) != MAGIC)
+			{
+				throw new IOException(filename + " is not a binary mesh!");
+			}
+			if(header.getInt(4) != VERSION)
+			{
+				throw new IOException(filename + " has unsupported version " + header.getInt(4) + "!");
+			}
+			this.flags = header.getInt(8);
+			this.vertexCount = header.getInt(12);
+			this.edgeCount = header.getInt(16);
+			this.triangleCount = header.getInt(20);
+			if((this.flags & ~ALL_FLAGS) != 0 || this.vertexCount < 0 || this.edgeCount < 0 || this.triangleCount < 0)
+			{
+				throw new IOException(filename + " has a corrupt header!");
+			}
+			if(this.channel.size() != this.offset(6))
+			{
+				throw new IOException(filename + " has " + this.channel.size() + " bytes, the header announces " + this.offset(6) + "!");
+			}
+		}catch(IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	public int getVertexCount()
+	{
+		return this.vertexCount;
+	}
+
+	public int getEdgeCount()
+	{
+		return this.edgeCount;
+	}
+
+	public int getTriangleCount()
+	{
+		return this.triangleCount;
+	}
+
+	/**
+	 * @param flag EDGE_HEIGHTS, TRIANGLE_HEIGHTS or VERTEX_IDS
+	 * @return whether the optional section is present
+	 */
+	public boolean has(int flag)
+	{
+		return (this.flags & flag) != 0;
+	}
+
+	/**
+	 * Returns the offset of the section with the given number in the order of the file, where 6 is the end.
+	 */
+	private long offset(int section)
+	{
+		long[] sizes = {
+			8L*this.vertexCount,
+			this.has(VERTEX_IDS) ? 4L*this.vertexCount : 0,
+			8L*this.edgeCount,
+			this.has(EDGE_HEIGHTS) ? 8L*this.edgeCount : 0,
+			12L*this.triangleCount,
+			this.has(TRIANGLE_HEIGHTS) ? 8L*this.triangleCount : 0
+		};
+		long offset = HEADER_SIZE;
+		for(int i = 0; i < section; i++)
+		{
+			offset += sizes[i];
+		}
+		return offset;
+	}
+
+	public double[] readVertexHeights() throws IOException
+	{
+		return this.readVertexHeights(0, this.vertexCount);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return the heights of vertices from..to-1
+	 */
+	double[] readVertexHeights(int from, int to) throws IOException
+	{
+		return this.readDoubles(this.offset(0) + 8L*from, to - from);
+	}
+
+	/**
+	 * @return the vertex ids, or null if the file has none
+	 */
+	public int[] readVertexIds() throws IOException
+	{
+		return this.has(VERTEX_IDS) ? this.readInts(this.offset(1), this.vertexCount) : null;
+	}
+
+	/**
+	 * @return the vertex indices of the edges, two per edge
+	 */
+	public int[] readEdges() throws IOException
+	{
+		return this.readEdges(0, this.edgeCount);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return the vertex indices of edges from..to-1, two per edge
+	 */
+	int[] readEdges(int from, int to) throws IOException
+	{
+		return this.readInts(this.offset(2) + 8L*from, 2*(to - from));
+	}
+
+	/**
+	 * @return the edge heights, NaN for every edge if the file has none
+	 */
+	public double[] readEdgeHeights() throws IOException
+	{
+		return this.readEdgeHeights(0, this.edgeCount);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return the heights of edges from..to-1, NaN for every edge if the file has none
+	 */
+	double[] readEdgeHeights(int from, int to) throws IOException
+	{
+		return this.has(EDGE_HEIGHTS) ? this.readDoubles(this.offset(3) + 8L*from, to - from) : BinaryMesh.unknown(to - from);
+	}
+
+	/**
+	 * @return the vertex indices of the triangles, three per triangle
+	 */
+	public int[] readTriangles() throws IOException
+	{
+		return this.readTriangles(0, this.triangleCount);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return the vertex indices of triangles from..to-1, three per triangle
+	 */
+	int[] readTriangles(int from, int to) throws IOException
+	{
+		return this.readInts(this.offset(4) + 12L*from, 3*(to - from));
+	}
+
+	/**
+	 * @return the triangle heights, NaN for every triangle if the file has none
+	 */
+	public double[] readTriangleHeights() throws IOException
+	{
+		return this.readTriangleHeights(0, this.triangleCount);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return the heights of triangles from..to-1, NaN for every triangle if the file has none
+	 */
+	double[] readTriangleHeights(int from, int to) throws IOException
+	{
+		return this.has(TRIANGLE_HEIGHTS) ? this.readDoubles(this.offset(5) + 8L*from, to - from) : BinaryMesh.unknown(to - from);
+	}
+
+	private static double[] unknown(int count)
+	{
+		double[] heights = new double[count];
+		Arrays.fill(heights, Double.NaN);
+		return heights;
+	}
+
+	private int[] readInts(long offset, int count) throws IOException
+	{
+		int[] values = new int[count];
+		for(int done = 0; done < count;)
+		{
+			int length = (int)Math.min(count - done, WINDOW / 4);
+			MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset + 4L*done, 4L*length);
+			window.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, done, length);
+			done += length;
+		}
+		return values;
+	}
+
+	private double[] readDoubles(long offset, int count) throws IOException
+	{
+		double[] values = new double[count];
+		for(int done = 0; done < count;)
+		{
+			int length = (int)Math.min(count - done, WINDOW / 8);
+			MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset + 8L*done, 8L*length);
+			window.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, done, length);
+			done += length;
+		}
+		return values;
+	}
+
+	/**
+	 * Reads all sections the contraction uses.
+	 */
+	ParallelLoader load() throws IOException
+	{
+		return new ParallelLoader(this.readVertexHeights(), this.readEdges(), this.readEdgeHeights(), this.readTriangles(), this.readTriangleHeights());
+	}
+
+	/**
+	 * Reads the complex into Vertex, Edge and Triangle objects, appending them to the lists in file order, the
+	 * same objects ParallelLoader.readObjects creates for the text files the mesh was converted from.
+	 * @param filename
+	 * @param threads the number of threads to create the vertices on
+	 * @param vertices
+	 * @param edges
+	 * @param triangles
+	 * @throws IOException
+	 */
+	public static void readObjects(String filename, int threads, ArrayList<Vertex> vertices, ArrayList<Edge> edges, ArrayList<Triangle> triangles) throws IOException
+	{
+		ParallelLoader loader;
+		try(BinaryMesh mesh = new BinaryMesh(filename)) {
+			loader = mesh.load();
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			loader.buildObjects(pool, vertices, edges, triangles);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Reads the complex into a CompactComplex, identical to the one CompactComplex.read returns for the text
+	 * files the mesh was converted from.
+	 * @param filename
+	 * @param threads the number of threads to build the complex on
+	 * @return CompactComplex
+	 * @throws IOException
+	 */
+	public static CompactComplex readCompact(String filename, int threads) throws IOException
+	{
+		ParallelLoader loader;
+		try(BinaryMesh mesh = new BinaryMesh(filename)) {
+			loader = mesh.load();
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return loader.buildCompact(pool);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Converts a complex from the Data, Edges and Triangles text files to a binary mesh. Heights omitted from the
+	 * text files are stored as NaN, and the optional height sections are only written if some height is given.
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @param meshFileName
+	 * @param threads the number of threads to parse the text files on
+	 * @throws IOException
+	 */
+	public static void convert(String vertexFileName, String edgeFileName, String triangleFileName, String meshFileName, int threads) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			ParallelLoader.parse(pool, vertexFileName, edgeFileName, triangleFileName).writeBinary(meshFileName);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.channel.close();
+		this.file.close();
+	}
+}
@@ -0,0 +1,246 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a complex in the binary format of BinaryMesh one simplex at a time, so that a complex can be written
+ * without holding all of it in memory. The counts and the optional sections are fixed when the writer is
+ * created, and the sections have to be written in the order of the file: the vertex heights, the vertex ids,
+ * the edges, the edge heights, the triangles and the triangle heights. Values are collected in a direct buffer
+ * which is written to the file whenever it is full.
+ */
+public class BinaryMeshWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/* Sections in the order of the file */
+	private static final int VERTEX_HEIGHTS = 0;
+	private static final int VERTEX_IDS = 1;
+	private static final int EDGES = 2;
+	private static final int EDGE_HEIGHTS = 3;
+	private static final int TRIANGLES = 4;
+	private static final int TRIANGLE_HEIGHTS = 5;
+	private static final int END = 6;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private int vertexCount;
+	private int edgeCount;
+	private int triangleCount;
+	private int flags;
+	private int section;
+	/* Entries written to the current section */
+	private int written;
+
+	/**
+	 * Creates the file and writes its header.
+	 * @param filename
+	 * @param vertexCount
+	 * @param edgeCount
+	 * @param triangleCount
+	 * @param flags the optional sections to write, a combination of BinaryMesh.EDGE_HEIGHTS, BinaryMesh.TRIANGLE_HEIGHTS and BinaryMesh.VERTEX_IDS
+	 * @throws IOException
+	 */
+	public BinaryMeshWriter(String filename, int vertexCount, int edgeCount, int triangleCount, int flags) throws IOException
+	{
+		if(vertexCount < 0 || edgeCount < 0 || triangleCount < 0)
+		{
+			throw new IllegalArgumentException("Simplex counts cannot be negative!");
+		}
+		if((flags & ~BinaryMesh.ALL_FLAGS) != 0)
+		{
+			throw new IllegalArgumentException("Unknown flags " + flags + "!");
+		}
+		this.file = new RandomAccessFile(filename, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.vertexCount = vertexCount;
+		this.edgeCount = edgeCount;
+		this.triangleCount = triangleCount;
+		this.flags = flags;
+		this.buffer.putInt(BinaryMesh.MAGIC);
+		this.buffer.putInt(BinaryMesh.VERSION);
+		this.buffer.putInt(flags);
+		this.buffer.putInt(vertexCount);
+		this.buffer.putInt(edgeCount);
+		this.buffer.putInt(triangleCount);
+		this.buffer.putLong(0);
+		this.section = VERTEX_HEIGHTS;
+		this.written = 0;
+	}
+
+	/**
+	 * Appends the height of the next vertex.
+	 * @param height
+	 * @throws IOException
+	 */
+	public void writeVertexHeight(double height) throws IOException
+	{
+		this.enter(VERTEX_HEIGHTS, 8);
+		this.buffer.putDouble(height);
+	}
+
+	/**
+	 * Appends the id of the next vertex, such as its index in the complex the file was contracted from.
+	 * @param id
+	 * @throws IOException
+	 */
+	public void writeVertexId(int id) throws IOException
+	{
+		this.enter(VERTEX_IDS, 4);
+		this.buffer.putInt(id);
+	}
+
+	/**
+	 * Appends the next edge.
+	 * @param first the index of a vertex of the edge
+	 * @param second the index of the other vertex
+	 * @throws IOException
+	 */
+	public void writeEdge(int first, int second) throws IOException
+	{
+		this.checkVertex(first);
+		this.checkVertex(second);
+		this.enter(EDGES, 8);
+		this.buffer.putInt(first);
+		this.buffer.putInt(second);
+	}
+
+	/**
+	 * Appends the height of the next edge. NaN means that the height is taken from the vertices of the edge.
+	 * @param height
+	 * @throws IOException
+	 */
+	public void writeEdgeHeight(double height) throws IOException
+	{
+		this.enter(EDGE_HEIGHTS, 8);
+		this.buffer.putDouble(height);
+	}
+
+	/**
+	 * Appends the next triangle.
+	 * @param first the index of a vertex of the triangle
+	 * @param second the index of another vertex
+	 * @param third the index of the remaining vertex
+	 * @throws IOException
+	 */
+	public void writeTriangle(int first, int second, int third) throws IOException
+	{
+		this.checkVertex(first);
+		this.checkVertex(second);
+		this.checkVertex(third);
+		this.enter(TRIANGLES, 12);
+		this.buffer.putInt(first);
+		this.buffer.putInt(second);
+		this.buffer.putInt(third);
+	}
+
+	/**
+	 * Appends the height of the next triangle. NaN means that the height is taken from the vertices of the triangle.
+	 * @param height
+	 * @throws IOException
+	 */
+	public void writeTriangleHeight(double height) throws IOException
+	{
+		this.enter(TRIANGLE_HEIGHTS, 8);
+		this.buffer.putDouble(height);
+	}
+
+	private void checkVertex(int index)
+	{
+		if(index < 0 || index >= this.vertexCount)
+		{
+			throw new IndexOutOfBoundsException("There is no vertex " + index + "!");
+		}
+	}
+
+	/**
+	 * Moves on to the given section if the current one is complete, and makes room for an entry of the given size.
+	 */
+	private void enter(int target, int bytes) throws IOException
+	{
+		while(this.section != target || this.written == this.size(target))
+		{
+			if(this.section >= target || this.written != this.size(this.section))
+			{
+				throw new IllegalStateException("Section " + target + " written out of order, " + this.written + " of "
+						+ this.size(this.section) + " entries of section " + this.section + " written!");
+			}
+			this.section++;
+			this.written = 0;
+		}
+		if(this.buffer.remaining() < bytes)
+		{
+			this.flush();
+		}
+		this.written++;
+	}
+
+	/**
+	 * @return the number of entries of the section, zero if it is not written
+	 */
+	private int size(int section)
+	{
+		switch(section)
+		{
+		case VERTEX_HEIGHTS:
+			return this.vertexCount;
+		case VERTEX_IDS:
+			return (this.flags & BinaryMesh.VERTEX_IDS) != 0 ? this.vertexCount : 0;
+		case EDGES:
+			return this.edgeCount;
+		case EDGE_HEIGHTS:
+			return (this.flags & BinaryMesh.EDGE_HEIGHTS) != 0 ? this.edgeCount : 0;
+		case TRIANGLES:
+			return this.triangleCount;
+		case TRIANGLE_HEIGHTS:
+			return (this.flags & BinaryMesh.TRIANGLE_HEIGHTS) != 0 ? this.triangleCount : 0;
+		default:
+			return 0;
+		}
+	}
+
+	private void flush() throws IOException
+	{
+		this.buffer.flip();
+		while(this.buffer.hasRemaining())
+		{
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Writes the remaining buffered values and closes the file.
+	 * @throws IllegalStateException if fewer simplices were written than the header announces
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if(this.channel == null)
+		{
+			return;
+		}
+		try {
+			this.flush();
+			for(; this.section < END; this.section++, this.written = 0)
+			{
+				if(this.written != this.size(this.section))
+				{
+					throw new IllegalStateException("Only " + this.written + " of " + this.size(this.section) + " entries of section " + this.section + " written!");
+				}
+			}
+		}finally {
+			this.channel.close();
+			this.file.close();
+			this.channel = null;
+		}
+	}
+}
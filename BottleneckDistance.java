@@ -0,0 +1,467 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * Computes the bottleneck distance between two persistence diagrams of the same dimension: the smallest r such
+ * that the points can be matched to points of the other diagram or to the diagonal, every point moving by at
+ * most r in the maximum norm. Essential classes can only be matched to essential classes, by their births; if
+ * the diagrams have different numbers of them the distance is infinite.
+ *
+ * For the finite points the distance is found by a binary search over r. A point with half its persistence
+ * greater than r cannot go to the diagonal, so it has to be matched to a point of the other diagram within r.
+ * A matching covering these far points of both diagrams exists if and only if one covering the far points of
+ * the first diagram and one covering the far points of the second exist (Mendelsohn and Dulmage), and the rest
+ * of the points can always go to the diagonal. Both are found with Hopcroft-Karp on the graph of the far points
+ * and the points of the other diagram within r. Every test starts from the matchings of the previous one, less
+ * the pairs too far apart for it, so it usually only has to look at a few points. The neighbours of a point are
+ * therefore enumerated with a PointIndex only when the matching reaches it, within a radius a little above r,
+ * and kept for the following tests as long as that radius still covers them.
+ *
+ * The distance is always a distance between two points or half the persistence of a point, computed in double
+ * precision, and the test for a given r compares these same values to r. The search therefore bisects the
+ * binary representations of the non negative doubles, and finds the distance exactly in at most 64 tests. A
+ * test that passes also lowers the upper end of the search to the greatest distance its matchings use.
+ */
+public class BottleneckDistance {
+
+	private Side first;
+	private Side second;
+
+	private BottleneckDistance(double[] firstBirths, double[] firstDeaths, double[] secondBirths, double[] secondDeaths)
+	{
+		this.first = new Side(firstBirths, firstDeaths, secondBirths, secondDeaths);
+		this.second = new Side(secondBirths, secondDeaths, firstBirths, firstDeaths);
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return the bottleneck distance between the diagrams
+	 */
+	public static double compute(PersistenceDiagram a, PersistenceDiagram b)
+	{
+		if(a.getDimension() != b.getDimension())
+		{
+			throw new IllegalArgumentException("Diagrams of dimension " + a.getDimension() + " and " + b.getDimension() + " cannot be compared!");
+		}
+		double essential = BottleneckDistance.essentialDistance(a, b);
+		if(essential == Double.POSITIVE_INFINITY)
+		{
+			return essential;
+		}
+		int finiteA = a.size() - a.getEssentialCount();
+		int finiteB = b.size() - b.getEssentialCount();
+		double[] ax = new double[finiteA];
+		double[] ay = new double[finiteA];
+		double[] bx = new double[finiteB];
+		double[] by = new double[finiteB];
+		BottleneckDistance.finitePoints(a, ax, ay);
+		BottleneckDistance.finitePoints(b, bx, by);
+		return Math.max(essential, new BottleneckDistance(ax, ay, bx, by).search());
+	}
+
+	/**
+	 * Matches the essential classes in order of birth, which is optimal on a line.
+	 */
+	private static double essentialDistance(PersistenceDiagram a, PersistenceDiagram b)
+	{
+		if(a.getEssentialCount() != b.getEssentialCount())
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double[] first = BottleneckDistance.essentialBirths(a);
+		double[] second = BottleneckDistance.essentialBirths(b);
+		double max = 0;
+		for(int i = 0; i < first.length; i++)
+		{
+			max = Math.max(max, Math.abs(first[i] - second[i]));
+		}
+		return max;
+	}
+
+	private static double[] essentialBirths(PersistenceDiagram d)
+	{
+		double[] births = new double[d.getEssentialCount()];
+		int count = 0;
+		for(int i = 0; i < d.size(); i++)
+		{
+			if(d.getDeath(i) == Double.POSITIVE_INFINITY)
+			{
+				births[count++] = d.getBirth(i);
+			}
+		}
+		Arrays.sort(births);
+		return births;
+	}
+
+	private static void finitePoints(PersistenceDiagram d, double[] x, double[] y)
+	{
+		int count = 0;
+		for(int i = 0; i < d.size(); i++)
+		{
+			if(d.getDeath(i) != Double.POSITIVE_INFINITY)
+			{
+				x[count] = d.getBirth(i);
+				y[count++] = d.getDeath(i);
+			}
+		}
+	}
+
+	/**
+	 * Finds the smallest r that passes test by bisecting the bits of the doubles between 0 and half the
+	 * greatest persistence, where every point can go to the diagonal. A test that passes lowers the upper end
+	 * of the search to the cost of the matchings it found.
+	 */
+	private double search()
+	{
+		double max = Math.max(this.first.maxHalfPersistence(), this.second.maxHalfPersistence());
+		/* The doubles at or below lo fail, the one at hi passes; -1 stands for the doubles below 0 */
+		long lo = -1;
+		long hi = Double.doubleToLongBits(max);
+		while(hi - lo > 1)
+		{
+			long middle = lo + (hi - lo) / 2;
+			if(this.test(Double.longBitsToDouble(middle), Double.longBitsToDouble(hi)))
+			{
+				hi = Double.doubleToLongBits(Math.max(this.first.getCost(), this.second.getCost()));
+			}else {
+				lo = middle;
+			}
+		}
+		return Double.longBitsToDouble(hi);
+	}
+
+	/**
+	 * @param r
+	 * @param limit a value known to pass, greater than r
+	 * @return whether the finite points can be matched with no point moving by more than r
+	 */
+	private boolean test(double r, double limit)
+	{
+		return this.first.covers(r, limit) && this.second.covers(r, limit);
+	}
+
+	/**
+	 * The points of one diagram, the index of the other, the neighbours found so far and the last matching of
+	 * the far points.
+	 */
+	private static class Side {
+
+		/* How far above r the neighbours of a point are enumerated, and how far above r they are still kept */
+		private static final double RADIUS_FACTOR = 1.125;
+		private static final double RADIUS_LIMIT = 1.25;
+
+		private double[] xs;
+		private double[] ys;
+		private double[] halves;
+		private double[] otherXs;
+		private double[] otherYs;
+		private PointIndex other;
+		/* mate[i] is the point of the other diagram matched to point i by the last test, or -1 */
+		private int[] mate;
+		private double cost;
+		/* The r of the current test */
+		private double r;
+		/* The neighbours of point i within radius are at start[i] to end[i] of neighbours, if start[i] >= 0 */
+		private double radius;
+		private int[] start;
+		private int[] end;
+		private int[] neighbours;
+		private int edges;
+		/* The far points of the current test, their matching, and the Hopcroft-Karp layers and iterators */
+		private int[] far;
+		private int farCount;
+		private int[] left;
+		private int[] right;
+		private int[] layer;
+		private int[] next;
+		private int[] queue;
+		private int[] path;
+
+		Side(double[] xs, double[] ys, double[] otherXs, double[] otherYs)
+		{
+			this.xs = xs;
+			this.ys = ys;
+			this.halves = new double[xs.length];
+			for(int i = 0; i < xs.length; i++)
+			{
+				this.halves[i] = (ys[i] - xs[i]) / 2;
+			}
+			this.otherXs = otherXs;
+			this.otherYs = otherYs;
+			this.other = new PointIndex(otherXs, otherYs);
+			this.mate = new int[xs.length];
+			Arrays.fill(this.mate, -1);
+			this.radius = -1;
+			this.start = new int[xs.length];
+			this.end = new int[xs.length];
+			this.neighbours = new int[16];
+			this.far = new int[xs.length];
+			this.left = new int[xs.length];
+			this.right = new int[other.size()];
+			this.layer = new int[xs.length];
+			this.next = new int[xs.length];
+			this.queue = new int[xs.length];
+			this.path = new int[xs.length];
+		}
+
+		double maxHalfPersistence()
+		{
+			double max = 0;
+			for(int i = 0; i < this.xs.length; i++)
+			{
+				max = Math.max(max, this.halves[i]);
+			}
+			return max;
+		}
+
+		/**
+		 * Returns whether all points whose half persistence exceeds r can be matched to distinct points of the
+		 * other diagram within r. The matching found is kept to start the next test from, without the pairs
+		 * which are too far apart for it. If the test passes, getCost tells how far r can be lowered without
+		 * changing the outcome.
+		 * @param r
+		 * @param limit a value known to pass, greater than r, beyond which no neighbours are needed
+		 */
+		boolean covers(double r, double limit)
+		{
+			this.r = r;
+			if(r > this.radius || this.radius > Side.RADIUS_LIMIT * r)
+			{
+				/* Forget the neighbours found for another range of r */
+				this.radius = Math.min(limit, Side.RADIUS_FACTOR * r);
+				Arrays.fill(this.start, -1);
+				this.edges = 0;
+			}
+			this.farCount = 0;
+			this.cost = 0;
+			for(int i = 0; i < this.xs.length; i++)
+			{
+				if(this.halves[i] <= r)
+				{
+					this.cost = Math.max(this.cost, this.halves[i]);
+				}else {
+					this.far[this.farCount++] = i;
+				}
+			}
+			if(this.farCount > this.other.size())
+			{
+				return false;
+			}
+			Arrays.fill(this.right, -1);
+			int matched = 0;
+			for(int u = 0; u < this.farCount; u++)
+			{
+				int v = this.mate[this.far[u]];
+				this.left[u] = -1;
+				if(v >= 0 && this.right[v] < 0 && this.distance(this.far[u], v) <= r)
+				{
+					this.left[u] = v;
+					this.right[v] = u;
+					matched++;
+				}
+			}
+			/* Greedily match what is left before searching for augmenting paths */
+			for(int u = 0; u < this.farCount; u++)
+			{
+				if(this.left[u] >= 0)
+				{
+					continue;
+				}
+				int i = this.far[u];
+				int found = this.other.query(this.xs[i], this.ys[i], r);
+				if(found == 0)
+				{
+					return false;
+				}
+				for(int k = 0; k < found && this.left[u] < 0; k++)
+				{
+					int v = this.other.getFound(k);
+					if(this.right[v] < 0)
+					{
+						this.left[u] = v;
+						this.right[v] = u;
+						matched++;
+					}
+				}
+			}
+			if(matched < this.farCount)
+			{
+				matched += this.hopcroftKarp();
+			}
+			Arrays.fill(this.mate, -1);
+			for(int u = 0; u < this.farCount; u++)
+			{
+				this.mate[this.far[u]] = this.left[u];
+				if(this.left[u] >= 0)
+				{
+					this.cost = Math.max(this.cost, this.distance(this.far[u], this.left[u]));
+				}
+			}
+			return matched == this.farCount;
+		}
+
+		/**
+		 * Returns the greatest distance a point moves under the matching of the last test, which passed, with the
+		 * points which are not far going to the diagonal. The far points are the same for every r from this cost
+		 * up to the r tested, and the matching is within all of them, so they all pass.
+		 */
+		double getCost()
+		{
+			return this.cost;
+		}
+
+		private double distance(int i, int j)
+		{
+			return Math.max(Math.abs(this.xs[i] - this.otherXs[j]), Math.abs(this.ys[i] - this.otherYs[j]));
+		}
+
+		/**
+		 * Enumerates the neighbours of the point within the radius, unless they are known already.
+		 */
+		private void find(int i)
+		{
+			if(this.start[i] >= 0)
+			{
+				return;
+			}
+			int found = this.other.query(this.xs[i], this.ys[i], this.radius);
+			if(this.neighbours.length - this.edges < found)
+			{
+				this.neighbours = Arrays.copyOf(this.neighbours, Math.max(this.edges + found, 2*this.neighbours.length));
+			}
+			this.start[i] = this.edges;
+			for(int k = 0; k < found; k++)
+			{
+				this.neighbours[this.edges++] = this.other.getFound(k);
+			}
+			this.end[i] = this.edges;
+		}
+
+		/**
+		 * Augments the matching of the far points along shortest augmenting paths, phase by phase, looking up
+		 * the neighbours of the points as the layers reach them.
+		 * @return the number of augmentations
+		 */
+		private int hopcroftKarp()
+		{
+			int augmented = 0;
+			while(true)
+			{
+				/* Layer the far points by breadth first search from the unmatched ones */
+				int head = 0;
+				int tail = 0;
+				for(int u = 0; u < this.farCount; u++)
+				{
+					if(this.left[u] < 0)
+					{
+						this.layer[u] = 0;
+						this.queue[tail++] = u;
+					}else {
+						this.layer[u] = Integer.MAX_VALUE;
+					}
+				}
+				int unmatched = tail;
+				int free = Integer.MAX_VALUE;
+				while(head < tail)
+				{
+					int u = this.queue[head++];
+					if(this.layer[u] >= free)
+					{
+						continue;
+					}
+					int i = this.far[u];
+					this.find(i);
+					for(int k = this.start[i]; k < this.end[i]; k++)
+					{
+						int v = this.neighbours[k];
+						if(this.distance(i, v) > this.r)
+						{
+							continue;
+						}
+						int w = this.right[v];
+						if(w < 0)
+						{
+							free = Math.min(free, this.layer[u] + 1);
+						}else if(this.layer[w] == Integer.MAX_VALUE) {
+							this.layer[w] = this.layer[u] + 1;
+							this.queue[tail++] = w;
+						}
+					}
+				}
+				if(free == Integer.MAX_VALUE)
+				{
+					return augmented;
+				}
+				for(int q = 0; q < tail; q++)
+				{
+					this.next[this.queue[q]] = this.start[this.far[this.queue[q]]];
+				}
+				for(int q = 0; q < unmatched; q++)
+				{
+					if(this.layer[this.queue[q]] == 0 && this.augment(this.queue[q], free))
+					{
+						augmented++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Searches depth first, without recursion, for an augmenting path from the unmatched point along the
+		 * layers, and flips the matching along it.
+		 */
+		private boolean augment(int first, int free)
+		{
+			int depth = 0;
+			this.path[depth++] = first;
+			while(depth > 0)
+			{
+				int u = this.path[depth - 1];
+				int i = this.far[u];
+				boolean advanced = false;
+				while(this.next[u] < this.end[i])
+				{
+					int v = this.neighbours[this.next[u]];
+					if(this.distance(i, v) > this.r)
+					{
+						this.next[u]++;
+						continue;
+					}
+					int w = this.right[v];
+					if(w < 0 && this.layer[u] + 1 == free)
+					{
+						/* Flip the path, every point taking the neighbour its iterator stands at */
+						for(int d = depth - 1; d >= 0; d--)
+						{
+							int p = this.path[d];
+							int q = this.neighbours[this.next[p]];
+							this.left[p] = q;
+							this.right[q] = p;
+						}
+						return true;
+					}
+					if(w >= 0 && this.layer[u] + 1 < free && this.layer[w] == this.layer[u] + 1)
+					{
+						this.path[depth++] = w;
+						advanced = true;
+						break;
+					}
+					this.next[u]++;
+				}
+				if(!advanced)
+				{
+					/* Dead end, never visit the point again in this phase */
+					this.layer[u] = Integer.MAX_VALUE;
+					depth--;
+					if(depth > 0)
+					{
+						this.next[this.path[depth - 1]]++;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
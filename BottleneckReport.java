@@ -0,0 +1,65 @@
+package contract;
+
+/**
+ * The bottleneck distances between the diagrams of the complex a contract method read and of the contracted
+ * complex, see Driver.setBottleneckCheck, and the bound they should respect: epsilon times the number of
+ * iterations run.
+ */
+public class BottleneckReport {
+
+	private double bound;
+	private double h0Distance;
+	private double h1Distance;
+	private long millis;
+
+	public BottleneckReport(double bound, double h0Distance, double h1Distance, long millis)
+	{
+		this.bound = bound;
+		this.h0Distance = h0Distance;
+		this.h1Distance = h1Distance;
+		this.millis = millis;
+	}
+
+	public double getBound()
+	{
+		return this.bound;
+	}
+
+	public double getH0Distance()
+	{
+		return this.h0Distance;
+	}
+
+	public double getH1Distance()
+	{
+		return this.h1Distance;
+	}
+
+	/**
+	 * @return the greater of the distances in dimension zero and one
+	 */
+	public double getDistance()
+	{
+		return Math.max(this.h0Distance, this.h1Distance);
+	}
+
+	/**
+	 * @return the time taken to compute the diagrams of the contracted complex and the distances
+	 */
+	public long getMillis()
+	{
+		return this.millis;
+	}
+
+	public boolean isWithinBound()
+	{
+		return this.getDistance() <= this.bound;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "H0 distance: " + this.h0Distance + "\tH1 distance: " + this.h1Distance + "\tBound: " + this.bound
+				+ "\t" + (this.isWithinBound() ? "within bound" : "BOUND EXCEEDED") + "\tCheck: " + this.millis + " ms";
+	}
+}
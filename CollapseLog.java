@@ -0,0 +1,315 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Writes a binary log of the contractions of a run, from which CollapseReplay rebuilds the complex after any
+ * prefix of the run without testing a single edge again. All values are little endian ints. The file starts with
+ * a header of 32 bytes: the magic number "PCCL", the version, the number of vertices, edges and triangles of the
+ * complex that was contracted, the number of records, which is written when the log is closed, and eight reserved
+ * bytes. Every contraction then appends a record:
+ *
+ *   perishing vertex, surviving vertex, iteration, mirror edge count m, mirror triangle count n
+ *   m pairs of vertex indices, the mirror edges that vanished
+ *   n triples of vertex indices, the mirror triangles that vanished
+ *
+ * The mirrors are given by their vertices before the contraction, so a mirror containing the perishing vertex
+ * vanished into the one with the surviving vertex in its place, and the other way round. The contracted edge and
+ * the triangles containing it are not listed; they vanish with the perishing vertex.
+ *
+ * Vertex.union reports the mirrors through mirrorEdgeVanished and mirrorTriangleVanished to the log recording
+ * on its thread, as it reports them to ContractionStatistics.
+ */
+public class CollapseLog implements Closeable {
+
+	/* "PCCL" read as a little endian int */
+	public static final int MAGIC = 'P' | 'C' << 8 | 'C' << 16 | 'L' << 24;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/* The contraction being logged on this thread, for Vertex.union */
+	private static final ThreadLocal<Collapse> RECORDING = new ThreadLocal<Collapse>();
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private Collapse current;
+	private int records;
+
+	/**
+	 * One contraction of the log.
+	 */
+	public static class Collapse {
+
+		private int perishing;
+		private int surviving;
+		private int iteration;
+		private int[] mirrorEdges;
+		private int mirrorEdgeCount;
+		private int[] mirrorTriangles;
+		private int mirrorTriangleCount;
+
+		Collapse()
+		{
+			this.mirrorEdges = new int[16];
+			this.mirrorTriangles = new int[24];
+		}
+
+		void reset(int perishing, int surviving, int iteration)
+		{
+			this.perishing = perishing;
+			this.surviving = surviving;
+			this.iteration = iteration;
+			this.mirrorEdgeCount = 0;
+			this.mirrorTriangleCount = 0;
+		}
+
+		void addMirrorEdge(int first, int second)
+		{
+			if(2*this.mirrorEdgeCount + 2 > this.mirrorEdges.length)
+			{
+				this.mirrorEdges = Arrays.copyOf(this.mirrorEdges, 2*this.mirrorEdges.length);
+			}
+			this.mirrorEdges[2*this.mirrorEdgeCount] = first;
+			this.mirrorEdges[2*this.mirrorEdgeCount+1] = second;
+			this.mirrorEdgeCount++;
+		}
+
+		void addMirrorTriangle(int first, int second, int third)
+		{
+			if(3*this.mirrorTriangleCount + 3 > this.mirrorTriangles.length)
+			{
+				this.mirrorTriangles = Arrays.copyOf(this.mirrorTriangles, 2*this.mirrorTriangles.length);
+			}
+			this.mirrorTriangles[3*this.mirrorTriangleCount] = first;
+			this.mirrorTriangles[3*this.mirrorTriangleCount+1] = second;
+			this.mirrorTriangles[3*this.mirrorTriangleCount+2] = third;
+			this.mirrorTriangleCount++;
+		}
+
+		/**
+		 * Returns the vertex a simplex had before the contraction in place of the given one after it.
+		 */
+		private int before(int vertex, boolean perishingSide)
+		{
+			return perishingSide && vertex == this.surviving ? this.perishing : vertex;
+		}
+
+		public int getPerishing()
+		{
+			return this.perishing;
+		}
+
+		public int getSurviving()
+		{
+			return this.surviving;
+		}
+
+		public int getIteration()
+		{
+			return this.iteration;
+		}
+
+		public int getMirrorEdgeCount()
+		{
+			return this.mirrorEdgeCount;
+		}
+
+		/**
+		 * @param i
+		 * @return the vertices of the i'th mirror edge that vanished
+		 */
+		public int[] getMirrorEdge(int i)
+		{
+			return new int[] {this.mirrorEdges[2*i], this.mirrorEdges[2*i+1]};
+		}
+
+		public int getMirrorTriangleCount()
+		{
+			return this.mirrorTriangleCount;
+		}
+
+		/**
+		 * @param i
+		 * @return the vertices of the i'th mirror triangle that vanished
+		 */
+		public int[] getMirrorTriangle(int i)
+		{
+			return new int[] {this.mirrorTriangles[3*i], this.mirrorTriangles[3*i+1], this.mirrorTriangles[3*i+2]};
+		}
+
+		/**
+		 * Determines if the other contraction has the same vertices and mirrors, in the same order.
+		 * @param other
+		 * @return boolean
+		 */
+		public boolean sameAs(Collapse other)
+		{
+			return this.perishing == other.perishing && this.surviving == other.surviving
+					&& Arrays.equals(this.mirrorEdges, 0, 2*this.mirrorEdgeCount, other.mirrorEdges, 0, 2*other.mirrorEdgeCount)
+					&& Arrays.equals(this.mirrorTriangles, 0, 3*this.mirrorTriangleCount, other.mirrorTriangles, 0, 3*other.mirrorTriangleCount);
+		}
+
+		@Override
+		public String toString()
+		{
+			return this.perishing + "->" + this.surviving + " in iteration " + this.iteration + ", " + this.mirrorEdgeCount
+					+ " mirror edges, " + this.mirrorTriangleCount + " mirror triangles";
+		}
+	}
+
+	/**
+	 * Creates the log and writes its header.
+	 * @param filename
+	 * @param vertexCount
+	 * @param edgeCount
+	 * @param triangleCount the counts of the complex that is contracted
+	 * @throws IOException
+	 */
+	public CollapseLog(String filename, int vertexCount, int edgeCount, int triangleCount) throws IOException
+	{
+		this.file = new RandomAccessFile(filename, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.putInt(MAGIC);
+		this.buffer.putInt(VERSION);
+		this.buffer.putInt(vertexCount);
+		this.buffer.putInt(edgeCount);
+		this.buffer.putInt(triangleCount);
+		this.buffer.putInt(0);
+		this.buffer.putLong(0);
+		this.current = new Collapse();
+	}
+
+	/**
+	 * Starts logging the contraction of the edge, which has to follow on this thread before end is called.
+	 * @param e
+	 * @param iteration
+	 */
+	public void begin(Edge e, int iteration)
+	{
+		this.current.reset(e.getPerishingVertex().getIndex(), e.getSurvivingVertex().getIndex(), iteration);
+		CollapseLog.startRecording(this.current);
+	}
+
+	/**
+	 * Appends the record of the contraction started by begin.
+	 * @throws IOException
+	 */
+	public void end() throws IOException
+	{
+		CollapseLog.stopRecording();
+		Collapse c = this.current;
+		this.putInt(c.perishing);
+		this.putInt(c.surviving);
+		this.putInt(c.iteration);
+		this.putInt(c.mirrorEdgeCount);
+		this.putInt(c.mirrorTriangleCount);
+		for(int i = 0; i < 2*c.mirrorEdgeCount; i++)
+		{
+			this.putInt(c.mirrorEdges[i]);
+		}
+		for(int i = 0; i < 3*c.mirrorTriangleCount; i++)
+		{
+			this.putInt(c.mirrorTriangles[i]);
+		}
+		this.records++;
+	}
+
+	/**
+	 * Collects the mirrors that vanish on this thread into the record, until stopRecording is called.
+	 */
+	static void startRecording(Collapse c)
+	{
+		RECORDING.set(c);
+	}
+
+	static void stopRecording()
+	{
+		RECORDING.remove();
+	}
+
+	private void putInt(int value) throws IOException
+	{
+		if(this.buffer.remaining() < 4)
+		{
+			this.flush();
+		}
+		this.buffer.putInt(value);
+	}
+
+	/**
+	 * Called by Vertex.union when an edge vanishes into its mirror.
+	 * @param e the edge that vanished
+	 * @param perishingSide whether the edge contained the perishing vertex
+	 */
+	static void mirrorEdgeVanished(Edge e, boolean perishingSide)
+	{
+		Collapse c = RECORDING.get();
+		if(c != null)
+		{
+			c.addMirrorEdge(c.before(e.getFirstVertex().getIndex(), perishingSide), c.before(e.getSecondVertex().getIndex(), perishingSide));
+		}
+	}
+
+	/**
+	 * Called by Vertex.union when a triangle vanishes into its mirror.
+	 * @param t the triangle that vanished
+	 * @param perishingSide whether the triangle contained the perishing vertex
+	 */
+	static void mirrorTriangleVanished(Triangle t, boolean perishingSide)
+	{
+		Collapse c = RECORDING.get();
+		if(c != null)
+		{
+			c.addMirrorTriangle(c.before(t.getFirstVertex().getIndex(), perishingSide), c.before(t.getSecondVertex().getIndex(), perishingSide),
+					c.before(t.getThirdVertex().getIndex(), perishingSide));
+		}
+	}
+
+	public int getRecords()
+	{
+		return this.records;
+	}
+
+	private void flush() throws IOException
+	{
+		this.buffer.flip();
+		while(this.buffer.hasRemaining())
+		{
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Writes the remaining buffered records, completes the header and closes the file.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if(this.channel == null)
+		{
+			return;
+		}
+		try {
+			this.flush();
+			this.buffer.putInt(this.records).flip();
+			this.channel.write(this.buffer, 20);
+			this.buffer.clear();
+		}finally {
+			this.channel.close();
+			this.file.close();
+			this.channel = null;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a CollapseLog in order. The file is read through a buffer, so a log of any length is read
+ * in constant memory.
+ */
+public class CollapseLogReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private int vertexCount;
+	private int edgeCount;
+	private int triangleCount;
+	private int records;
+	private int read;
+	private CollapseLog.Collapse current;
+
+	/**
+	 * Opens the log and reads its header.
+	 * @param filename
+	 * @throws IOException if the file is not a complete collapse log
+	 */
+	public CollapseLogReader(String filename) throws IOException
+	{
+		this.file = new RandomAccessFile(filename, "r");
+		this.channel = this.file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.limit(0);
+		try {
+			if(this.getInt() != CollapseLog.MAGIC)
+			{
+				throw new IOException(filename + " is not a collapse log!");
+			}
+			int version = this.getInt();
+			if(version != CollapseLog.VERSION)
+			{
+				throw new IOException(filename + " has unsupported version " + version + "!");
+			}
+			this.vertexCount = this.getInt();
+			this.edgeCount = this.getInt();
+			this.triangleCount = this.getInt();
+			this.records = this.getInt();
+			this.getInt();
+			this.getInt();
+		}catch(IOException e) {
+			this.close();
+			throw e;
+		}
+		this.current = new CollapseLog.Collapse();
+	}
+
+	public int getVertexCount()
+	{
+		return this.vertexCount;
+	}
+
+	public int getEdgeCount()
+	{
+		return this.edgeCount;
+	}
+
+	public int getTriangleCount()
+	{
+		return this.triangleCount;
+	}
+
+	/**
+	 * @return the number of records of the log
+	 */
+	public int getRecords()
+	{
+		return this.records;
+	}
+
+	/**
+	 * Reads the next record, see getCurrent.
+	 * @return false if every record has been read
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		if(this.read == this.records)
+		{
+			return false;
+		}
+		this.current.reset(this.getInt(), this.getInt(), this.getInt());
+		int mirrorEdges = this.getInt();
+		int mirrorTriangles = this.getInt();
+		for(int i = 0; i < mirrorEdges; i++)
+		{
+			this.current.addMirrorEdge(this.getInt(), this.getInt());
+		}
+		for(int i = 0; i < mirrorTriangles; i++)
+		{
+			this.current.addMirrorTriangle(this.getInt(), this.getInt(), this.getInt());
+		}
+		this.read++;
+		return true;
+	}
+
+	/**
+	 * @return the record read last, which the next call of next overwrites
+	 */
+	public CollapseLog.Collapse getCurrent()
+	{
+		return this.current;
+	}
+
+	private int getInt() throws IOException
+	{
+		if(this.buffer.remaining() < 4)
+		{
+			this.buffer.compact();
+			while(this.buffer.position() < 4)
+			{
+				if(this.channel.read(this.buffer) < 0)
+				{
+					throw new EOFException("The collapse log ends in the middle of a record!");
+				}
+			}
+			this.buffer.flip();
+		}
+		return this.buffer.getInt();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			this.channel.close();
+		}finally {
+			this.file.close();
+		}
+	}
+}
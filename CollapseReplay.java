@@ -0,0 +1,131 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Replays a CollapseLog on the complex it was written for, rebuilding the complex after any prefix of the run, by
+ * record or by iteration, without testing any edge. Every record is applied with Vertex.union, exactly as
+ * Edge.contract applied it, so the replayed complex is the one the run had at that point. The complex can be
+ * advanced any number of times, which streams the resolutions of the run from the finest to the coarsest.
+ *
+ * The mirrors every union makes vanish are compared with the ones in the log, so a log replayed on another
+ * complex, or out of order, fails with an IllegalStateException instead of producing a wrong complex.
+ */
+public class CollapseReplay implements Closeable {
+
+	private Vertex[] vertices;
+	private CollapseLogReader reader;
+	/* Whether the current record of the reader has been read but not applied */
+	private boolean pending;
+	private CollapseLog.Collapse replayed;
+	private int applied;
+	private int iteration;
+
+	/**
+	 * Opens the log for replay on the complex, which has to be read the way the contracted complex was.
+	 * @param vertices the vertices, which are indexed from 0 in list order
+	 * @param edges
+	 * @param triangles
+	 * @param filename the log
+	 * @throws IOException if the log was written for a complex of different size
+	 */
+	public CollapseReplay(List<Vertex> vertices, List<Edge> edges, List<Triangle> triangles, String filename) throws IOException
+	{
+		this.reader = new CollapseLogReader(filename);
+		if(this.reader.getVertexCount() != vertices.size() || this.reader.getEdgeCount() != edges.size() || this.reader.getTriangleCount() != triangles.size())
+		{
+			this.reader.close();
+			throw new IOException(filename + " logs a complex of " + this.reader.getVertexCount() + " vertices, " + this.reader.getEdgeCount()
+					+ " edges and " + this.reader.getTriangleCount() + " triangles, not this one!");
+		}
+		this.vertices = vertices.toArray(new Vertex[0]);
+		this.replayed = new CollapseLog.Collapse();
+	}
+
+	/**
+	 * Applies the following records of the log.
+	 * @param maxRecords the maximum number of records to apply, or -1 for no limit
+	 * @param maxIteration the last iteration to apply records of, or -1 for no limit
+	 * @return the number of records applied
+	 * @throws IOException
+	 */
+	public int advance(int maxRecords, int maxIteration) throws IOException
+	{
+		int count = 0;
+		while(count != maxRecords)
+		{
+			if(!this.pending)
+			{
+				if(!this.reader.next())
+				{
+					break;
+				}
+				this.pending = true;
+			}
+			CollapseLog.Collapse c = this.reader.getCurrent();
+			if(maxIteration >= 0 && c.getIteration() > maxIteration)
+			{
+				break;
+			}
+			this.apply(c);
+			this.pending = false;
+			this.iteration = c.getIteration();
+			this.applied++;
+			count++;
+		}
+		return count;
+	}
+
+	private void apply(CollapseLog.Collapse c)
+	{
+		Vertex perishing = this.vertices[c.getPerishing()];
+		Vertex surviving = this.vertices[c.getSurviving()];
+		if(perishing.hasVanished() || surviving.hasVanished())
+		{
+			throw new IllegalStateException("Cannot replay " + c + ", a vertex has already perished!");
+		}
+		this.replayed.reset(c.getPerishing(), c.getSurviving(), c.getIteration());
+		CollapseLog.startRecording(this.replayed);
+		try {
+			surviving.union(perishing);
+		}finally {
+			CollapseLog.stopRecording();
+		}
+		if(surviving.hasVanished() || !this.replayed.sameAs(c))
+		{
+			throw new IllegalStateException("Replaying " + c + " gave " + this.replayed + "!");
+		}
+	}
+
+	/**
+	 * @return the number of records applied so far
+	 */
+	public int getApplied()
+	{
+		return this.applied;
+	}
+
+	/**
+	 * @return the iteration of the last record applied, 0 if there was none
+	 */
+	public int getIteration()
+	{
+		return this.iteration;
+	}
+
+	/**
+	 * @return the number of records of the log
+	 */
+	public int getRecords()
+	{
+		return this.reader.getRecords();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.reader.close();
+	}
+}
@@ -0,0 +1,317 @@
+package contract;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Index based representation of a 2-complex. Vertices, edges and triangles are identified by their
+ * line number in the input files, and all attributes are kept in primitive arrays. Incidences are
+ * stored in compressed sparse row form.
+ */
+public class CompactComplex {
+
+	private int vertexCount;
+	private double[] vertexHeights;
+	private int edgeCount;
+	/* Two entries per edge: the vertex playing the role of Edge.getFirstVertex() and then Edge.getSecondVertex() */
+	private int[] edgeVertices;
+	private double[] edgeHeights;
+	private int triangleCount;
+	private int[] triangleVertices;
+	private int[] triangleEdges;
+	private double[] triangleHeights;
+	private IntAdjacency vertexEdges;
+	private IntAdjacency vertexTriangles;
+	private IntAdjacency edgeTriangles;
+
+	/**
+	 * Constructs the complex from the primitive arrays, and computes the incidence structures.
+	 * Every triangle must list the three edges joining its vertices.
+	 * @param vertexHeights
+	 * @param edgeVertices
+	 * @param edgeHeights
+	 * @param triangleVertices
+	 * @param triangleEdges
+	 * @param triangleHeights
+	 */
+	public CompactComplex(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, int[] triangleVertices, int[] triangleEdges, double[] triangleHeights)
+	{
+		if(edgeVertices.length != 2*edgeHeights.length)
+		{
+			throw new IllegalArgumentException("Every edge needs two vertices and a height value!");
+		}
+		if(triangleVertices.length != 3*triangleHeights.length || triangleEdges.length != triangleVertices.length)
+		{
+			throw new IllegalArgumentException("Every triangle needs three vertices, three edges and a height value!");
+		}
+		this.vertexCount = vertexHeights.length;
+		this.vertexHeights = vertexHeights;
+		this.edgeCount = edgeHeights.length;
+		this.edgeVertices = edgeVertices;
+		this.edgeHeights = edgeHeights;
+		this.triangleCount = triangleHeights.length;
+		this.triangleVertices = triangleVertices;
+		this.triangleEdges = triangleEdges;
+		this.triangleHeights = triangleHeights;
+		this.vertexEdges = IntAdjacency.build(this.vertexCount, edgeVertices, edgeVertices.length, 2);
+		this.vertexTriangles = IntAdjacency.build(this.vertexCount, triangleVertices, triangleVertices.length, 3);
+		this.edgeTriangles = IntAdjacency.build(this.edgeCount, triangleEdges, triangleEdges.length, 3);
+	}
+
+	/**
+	 * Reads a complex from the Data, Edges and Triangles files described in Driver.main.
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @return CompactComplex
+	 * @throws IOException
+	 */
+	public static CompactComplex read(String vertexFileName, String edgeFileName, String triangleFileName) throws IOException
+	{
+		double[] vertexHeights = new double[1024];
+		int vertexCount = 0;
+		MappedTextReader reader = new MappedTextReader(vertexFileName);
+		while(reader.nextLine())
+		{
+			if(vertexCount == vertexHeights.length)
+			{
+				vertexHeights = Arrays.copyOf(vertexHeights, 2*vertexCount);
+			}
+			vertexHeights[vertexCount++] = reader.getDouble(reader.fieldCount() - 1);
+		}
+		reader.close();
+		vertexHeights = Arrays.copyOf(vertexHeights, vertexCount);
+
+		int[] edgeVertices = new int[2048];
+		double[] edgeHeights = new double[1024];
+		int edgeCount = 0;
+		reader = new MappedTextReader(edgeFileName);
+		while(reader.nextLine())
+		{
+			if(edgeCount == edgeHeights.length)
+			{
+				edgeHeights = Arrays.copyOf(edgeHeights, 2*edgeCount);
+				edgeVertices = Arrays.copyOf(edgeVertices, 4*edgeCount);
+			}
+			CompactComplex.setEdge(edgeVertices, edgeHeights, edgeCount, reader.getInt(0), reader.getInt(1),
+					reader.fieldCount() < 3 ? Double.NaN : reader.getDouble(2), vertexHeights);
+			edgeCount++;
+		}
+		reader.close();
+		edgeVertices = Arrays.copyOf(edgeVertices, 2*edgeCount);
+		edgeHeights = Arrays.copyOf(edgeHeights, edgeCount);
+		IntAdjacency vertexEdges = IntAdjacency.build(vertexCount, edgeVertices, edgeVertices.length, 2);
+
+		int[] triangleVertices = new int[3072];
+		int[] triangleEdges = new int[3072];
+		double[] triangleHeights = new double[1024];
+		int triangleCount = 0;
+		reader = new MappedTextReader(triangleFileName);
+		while(reader.nextLine())
+		{
+			if(triangleCount == triangleHeights.length)
+			{
+				triangleHeights = Arrays.copyOf(triangleHeights, 2*triangleCount);
+				triangleVertices = Arrays.copyOf(triangleVertices, 6*triangleCount);
+				triangleEdges = Arrays.copyOf(triangleEdges, 6*triangleCount);
+			}
+			CompactComplex.setTriangle(triangleVertices, triangleEdges, triangleHeights, triangleCount, reader.getInt(0), reader.getInt(1), reader.getInt(2),
+					reader.fieldCount() < 4 ? Double.NaN : reader.getDouble(3), vertexHeights, edgeVertices, edgeHeights, vertexEdges);
+			triangleCount++;
+		}
+		reader.close();
+		triangleVertices = Arrays.copyOf(triangleVertices, 3*triangleCount);
+		triangleEdges = Arrays.copyOf(triangleEdges, 3*triangleCount);
+		triangleHeights = Arrays.copyOf(triangleHeights, triangleCount);
+
+		return new CompactComplex(vertexHeights, edgeVertices, edgeHeights, triangleVertices, triangleEdges, triangleHeights);
+	}
+
+	/**
+	 * Stores the edge between the two vertices at the given position, ordering the vertices the same way
+	 * the Edge constructors do. A NaN height means that the height is taken from the vertices.
+	 */
+	static void setEdge(int[] edgeVertices, double[] edgeHeights, int edge, int firstIndex, int secondIndex, double height, double[] vertexHeights)
+	{
+		if(firstIndex == secondIndex)
+		{
+			throw new IllegalArgumentException("The vertices that make up an edge have to be different!");
+		}
+		if(Double.isNaN(height))
+		{
+			if(vertexHeights[firstIndex] > vertexHeights[secondIndex])
+			{
+				edgeVertices[2*edge] = firstIndex;
+				edgeVertices[2*edge+1] = secondIndex;
+				edgeHeights[edge] = vertexHeights[firstIndex];
+			}else {
+				edgeVertices[2*edge] = secondIndex;
+				edgeVertices[2*edge+1] = firstIndex;
+				edgeHeights[edge] = vertexHeights[secondIndex];
+			}
+		}else {
+			if(height < vertexHeights[firstIndex] || height < vertexHeights[secondIndex])
+			{
+				throw new IllegalArgumentException("This edge has a height value less than its vertices!");
+			}
+			edgeVertices[2*edge] = firstIndex;
+			edgeVertices[2*edge+1] = secondIndex;
+			edgeHeights[edge] = height;
+		}
+	}
+
+	/**
+	 * Stores the triangle spanned by the three vertices at the given position, looking up its edges in
+	 * the vertex to edge incidences. A NaN height means that the height is taken from the vertices.
+	 */
+	static void setTriangle(int[] triangleVertices, int[] triangleEdges, double[] triangleHeights, int triangle, int first, int second, int third, double height,
+			double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, IntAdjacency vertexEdges)
+	{
+		triangleVertices[3*triangle] = first;
+		triangleVertices[3*triangle+1] = second;
+		triangleVertices[3*triangle+2] = third;
+		triangleEdges[3*triangle] = CompactComplex.findEdge(second, third, edgeVertices, vertexEdges);
+		triangleEdges[3*triangle+1] = CompactComplex.findEdge(first, third, edgeVertices, vertexEdges);
+		triangleEdges[3*triangle+2] = CompactComplex.findEdge(first, second, edgeVertices, vertexEdges);
+		if(Double.isNaN(height))
+		{
+			triangleHeights[triangle] = Math.max(vertexHeights[first], Math.max(vertexHeights[second], vertexHeights[third]));
+		}else {
+			for(int i = 0; i < 3; i++)
+			{
+				if(height < edgeHeights[triangleEdges[3*triangle+i]])
+				{
+					throw new IllegalArgumentException("Height value is less than the height value of an edge!");
+				}
+			}
+			triangleHeights[triangle] = height;
+		}
+	}
+
+	/**
+	 * Finds the edge joining the two vertices by scanning the edges incident to the first.
+	 */
+	static int findEdge(int first, int second, int[] edgeVertices, IntAdjacency vertexEdges)
+	{
+		if(vertexEdges.size(second) < vertexEdges.size(first))
+		{
+			int temp = first;
+			first = second;
+			second = temp;
+		}
+		for(int i = 0; i < vertexEdges.size(first); i++)
+		{
+			int e = vertexEdges.get(first, i);
+			if(edgeVertices[2*e] == second || edgeVertices[2*e+1] == second)
+			{
+				return e;
+			}
+		}
+		throw new IllegalArgumentException("There is no edge between vertices " + first + " and " + second + "!");
+	}
+
+	public int getVertexCount()
+	{
+		return this.vertexCount;
+	}
+
+	public int getEdgeCount()
+	{
+		return this.edgeCount;
+	}
+
+	public int getTriangleCount()
+	{
+		return this.triangleCount;
+	}
+
+	public double getVertexHeight(int v)
+	{
+		return this.vertexHeights[v];
+	}
+
+	public double getEdgeHeight(int e)
+	{
+		return this.edgeHeights[e];
+	}
+
+	public double getTriangleHeight(int t)
+	{
+		return this.triangleHeights[t];
+	}
+
+	/**
+	 * @param e
+	 * @return the vertex with the greater height value, as in Edge.getFirstVertex()
+	 */
+	public int getFirstVertex(int e)
+	{
+		return this.edgeVertices[2*e];
+	}
+
+	/**
+	 * @param e
+	 * @return the other vertex of the edge, as in Edge.getSecondVertex()
+	 */
+	public int getSecondVertex(int e)
+	{
+		return this.edgeVertices[2*e+1];
+	}
+
+	/**
+	 * @param t
+	 * @param i 0, 1 or 2
+	 * @return the i'th vertex of the triangle, in file order
+	 */
+	public int getTriangleVertex(int t, int i)
+	{
+		return this.triangleVertices[3*t+i];
+	}
+
+	/**
+	 * @param t
+	 * @param i 0, 1 or 2
+	 * @return the i'th edge of the triangle
+	 */
+	public int getTriangleEdge(int t, int i)
+	{
+		return this.triangleEdges[3*t+i];
+	}
+
+	/**
+	 * Returns a copy of the triangle to edge array, which contractions are free to modify.
+	 * @return int[]
+	 */
+	public int[] copyTriangleEdges()
+	{
+		return this.triangleEdges.clone();
+	}
+
+	/**
+	 * Returns the edges incident to each vertex. The structure shares the arrays of this complex, and ids
+	 * appended to it are not seen by other callers.
+	 * @return IntAdjacency
+	 */
+	IntAdjacency getVertexEdges()
+	{
+		return this.vertexEdges.copy();
+	}
+
+	/**
+	 * Returns the triangles incident to each vertex, see getVertexEdges().
+	 * @return IntAdjacency
+	 */
+	IntAdjacency getVertexTriangles()
+	{
+		return this.vertexTriangles.copy();
+	}
+
+	/**
+	 * Returns the triangles incident to each edge, see getVertexEdges().
+	 * @return IntAdjacency
+	 */
+	IntAdjacency getEdgeTriangles()
+	{
+		return this.edgeTriangles.copy();
+	}
+}
@@ -0,0 +1,632 @@
+package contract;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Edge contraction over a CompactComplex. Follows the same rules as Vertex, Edge and Triangle, so that
+ * contracting a complex with either representation gives the same result, but keeps all state in
+ * primitive arrays indexed by vertex, edge and triangle id.
+ *
+ * The object engine it is compared against is the one of Driver.contract as of this class, which differs from
+ * the original code in four places: Edge.linkCondition looks up its neighbours and triangles under the keys
+ * the incidence maps store them by, so the link condition can fail; Vertex.hasVanished is only true for a
+ * vertex merged into another one, so ContractedData lists the vertices left; getUnstructuredEdges keeps the
+ * edge file order and reads an explicit edge height from the third column; and explicit triangle heights are
+ * checked against the edge heights the right way round, with the triangle registered with its vertices. The
+ * original code passes every link condition and writes an empty ContractedData, so its output is not a
+ * baseline for this class.
+ */
+public class CompactContraction {
+
+	private CompactComplex complex;
+	private int[] parent;
+	private boolean[] edgeVanished;
+	private boolean[] triangleVanished;
+	private int[] triangleEdges;
+	private double[] endingTimes;
+	private IntAdjacency vertexEdges;
+	private IntAdjacency vertexTriangles;
+	private IntAdjacency edgeTriangles;
+	/* Scratch space for neighbourhood queries: mark[v] == stamp iff v was visited by the current query */
+	private int[] mark;
+	private int[] markEdge;
+	private int stamp;
+
+	/**
+	 * Prepares the complex for contraction. The complex itself is not modified.
+	 * @param complex
+	 */
+	public CompactContraction(CompactComplex complex)
+	{
+		this.complex = complex;
+		int vertexCount = complex.getVertexCount();
+		this.parent = new int[vertexCount];
+		for(int v = 0; v < vertexCount; v++)
+		{
+			this.parent[v] = v;
+		}
+		this.edgeVanished = new boolean[complex.getEdgeCount()];
+		this.triangleVanished = new boolean[complex.getTriangleCount()];
+		this.triangleEdges = complex.copyTriangleEdges();
+		this.vertexEdges = complex.getVertexEdges();
+		this.vertexTriangles = complex.getVertexTriangles();
+		this.edgeTriangles = complex.getEdgeTriangles();
+		this.endingTimes = new double[complex.getEdgeCount()];
+		for(int e = 0; e < this.endingTimes.length; e++)
+		{
+			double max = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < this.edgeTriangles.size(e); i++)
+			{
+				max = Math.max(max, complex.getTriangleHeight(this.edgeTriangles.get(e, i)));
+			}
+			this.endingTimes[e] = max;
+		}
+		this.mark = new int[vertexCount];
+		this.markEdge = new int[vertexCount];
+		this.stamp = 0;
+	}
+
+	/**
+	 * Returns the surviving vertex that the parameter has been merged into.
+	 * @param v
+	 * @return int
+	 */
+	public int getVertex(int v)
+	{
+		int root = v;
+		while(this.parent[root] != root)
+		{
+			root = this.parent[root];
+		}
+		while(this.parent[v] != root)
+		{
+			int next = this.parent[v];
+			this.parent[v] = root;
+			v = next;
+		}
+		return root;
+	}
+
+	/**
+	 * @param v
+	 * @return if the vertex has been merged into another vertex
+	 */
+	public boolean vertexHasVanished(int v)
+	{
+		return this.getVertex(v) != v;
+	}
+
+	/**
+	 * @param e
+	 * @return if the edge has been contracted or merged into a mirror
+	 */
+	public boolean edgeHasVanished(int e)
+	{
+		return this.edgeVanished[e] || this.getVertex(this.complex.getFirstVertex(e)) == this.getVertex(this.complex.getSecondVertex(e));
+	}
+
+	/**
+	 * @param t
+	 * @return if the triangle has been collapsed or merged into a mirror
+	 */
+	public boolean triangleHasVanished(int t)
+	{
+		if(this.triangleVanished[t])
+		{
+			return true;
+		}
+		int a = this.getVertex(this.complex.getTriangleVertex(t, 0));
+		int b = this.getVertex(this.complex.getTriangleVertex(t, 1));
+		int c = this.getVertex(this.complex.getTriangleVertex(t, 2));
+		return a == b || a == c || b == c;
+	}
+
+	/**
+	 * Computes the starting time of the window of the edge, see Edge.getStartingTime().
+	 * @param e
+	 * @return double
+	 */
+	public double getStartingTime(int e)
+	{
+		return Math.min(this.height(this.complex.getFirstVertex(e)), this.height(this.complex.getSecondVertex(e)));
+	}
+
+	/**
+	 * Returns the ending time of the window of the edge, see Edge.getEndingTime().
+	 * @param e
+	 * @return double
+	 */
+	public double getEndingTime(int e)
+	{
+		return this.endingTimes[e];
+	}
+
+	private double height(int v)
+	{
+		return this.complex.getVertexHeight(this.getVertex(v));
+	}
+
+	private int otherVertex(int e, int v)
+	{
+		int first = this.getVertex(this.complex.getFirstVertex(e));
+		return first == v ? this.getVertex(this.complex.getSecondVertex(e)) : first;
+	}
+
+	private boolean triangleContains(int t, int v)
+	{
+		return this.getVertex(this.complex.getTriangleVertex(t, 0)) == v || this.getVertex(this.complex.getTriangleVertex(t, 1)) == v
+				|| this.getVertex(this.complex.getTriangleVertex(t, 2)) == v;
+	}
+
+	private boolean edgeContains(int e, int v)
+	{
+		return this.getVertex(this.complex.getFirstVertex(e)) == v || this.getVertex(this.complex.getSecondVertex(e)) == v;
+	}
+
+	/**
+	 * Determines if an edge is a valid candidate to be contracted, see Edge.isContractible(double).
+	 * @param e
+	 * @param epsilon
+	 * @return boolean
+	 */
+	public boolean isContractible(int e, double epsilon)
+	{
+		return !this.edgeHasVanished(e) && this.linkCondition(e) && this.isEpsilonSat(e, epsilon);
+	}
+
+	/**
+	 * Checks the link condition, see Edge.linkCondition(). Every common neighbour of the two vertices must
+	 * be the apex of a triangle incident to the edge, and the vertices may not span mirrored triangles.
+	 * @param e
+	 * @return boolean
+	 */
+	public boolean linkCondition(int e)
+	{
+		int u = this.getVertex(this.complex.getFirstVertex(e));
+		int v = this.getVertex(this.complex.getSecondVertex(e));
+		if(this.vertexEdges.size(u) > this.vertexEdges.size(v))
+		{
+			int temp = u;
+			u = v;
+			v = temp;
+		}
+		this.markNeighbours(v);
+		for(int i = 0; i < this.vertexEdges.size(u); i++)
+		{
+			int f = this.vertexEdges.get(u, i);
+			if(this.edgeHasVanished(f))
+			{
+				continue;
+			}
+			int w = this.otherVertex(f, u);
+			if(w != v && this.mark[w] == this.stamp && !this.hasApex(e, w))
+			{
+				return false;
+			}
+		}
+		for(int i = 0; i < this.vertexTriangles.size(u); i++)
+		{
+			int t = this.vertexTriangles.get(u, i);
+			if(this.triangleHasVanished(t) || this.triangleContains(t, v))
+			{
+				continue;
+			}
+			int x = -1;
+			int y = -1;
+			for(int j = 0; j < 3; j++)
+			{
+				int w = this.getVertex(this.complex.getTriangleVertex(t, j));
+				if(w != u)
+				{
+					if(x < 0) {x = w;}
+					else {y = w;}
+				}
+			}
+			if(this.mark[x] == this.stamp && this.mark[y] == this.stamp && this.findTriangle(v, x, y) >= 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stamps every vertex joined to v by an edge which has not vanished, and records that edge in markEdge.
+	 */
+	private void markNeighbours(int v)
+	{
+		this.stamp++;
+		for(int i = 0; i < this.vertexEdges.size(v); i++)
+		{
+			int f = this.vertexEdges.get(v, i);
+			if(!this.edgeHasVanished(f))
+			{
+				int w = this.otherVertex(f, v);
+				this.mark[w] = this.stamp;
+				this.markEdge[w] = f;
+			}
+		}
+	}
+
+	private boolean hasApex(int e, int w)
+	{
+		for(int i = 0; i < this.edgeTriangles.size(e); i++)
+		{
+			int t = this.edgeTriangles.get(e, i);
+			if(!this.triangleHasVanished(t) && this.triangleContains(t, w))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a triangle incident to v which has not vanished and contains x and y, or -1.
+	 */
+	private int findTriangle(int v, int x, int y)
+	{
+		for(int i = 0; i < this.vertexTriangles.size(v); i++)
+		{
+			int t = this.vertexTriangles.get(v, i);
+			if(!this.triangleHasVanished(t) && this.triangleContains(t, x) && this.triangleContains(t, y))
+			{
+				return t;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Determines if the edge is epsilon admissible, see Edge.isEpsilonSat(double).
+	 * @param e
+	 * @param epsilon
+	 * @return boolean
+	 */
+	public boolean isEpsilonSat(int e, double epsilon)
+	{
+		int first = this.getVertex(this.complex.getFirstVertex(e));
+		int second = this.getVertex(this.complex.getSecondVertex(e));
+		int perishing = this.isEarlier(first, second) ? second : first;
+		if(this.complex.getEdgeHeight(e) - this.complex.getVertexHeight(perishing) > epsilon)
+		{
+			return false;
+		}
+		for(int i = 0; i < this.edgeTriangles.size(e); i++)
+		{
+			int t = this.edgeTriangles.get(e, i);
+			if(!this.triangleHasVanished(t) && this.complex.getTriangleHeight(t) - this.complex.getEdgeHeight(this.getPerishingMirror(t, e, first, second)) > epsilon)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the perishing mirror of the edge about the triangle, see Triangle.getPerishingMirror(Edge).
+	 */
+	private int getPerishingMirror(int t, int e, int first, int second)
+	{
+		int firstMirror = this.getMirror(t, first, second);
+		int secondMirror = this.getMirror(t, second, first);
+		if(this.endingTimes[firstMirror] < this.endingTimes[secondMirror])
+		{
+			return secondMirror;
+		}
+		return firstMirror;
+	}
+
+	/**
+	 * Returns the edge of the triangle that contains v but not w.
+	 */
+	private int getMirror(int t, int v, int w)
+	{
+		for(int i = 0; i < 2; i++)
+		{
+			int f = this.triangleEdges[3*t+i];
+			if(this.edgeContains(f, v) && !this.edgeContains(f, w))
+			{
+				return f;
+			}
+		}
+		return this.triangleEdges[3*t+2];
+	}
+
+	/**
+	 * Orders surviving vertices by height value and then by index, see Vertex.compareTo(Vertex).
+	 */
+	private boolean isEarlier(int v, int w)
+	{
+		double hv = this.complex.getVertexHeight(v);
+		double hw = this.complex.getVertexHeight(w);
+		return hv < hw || (hv == hw && v < w);
+	}
+
+	/**
+	 * Contracts the edge. Only call if the edge is contractible.
+	 * @param e
+	 */
+	public void contract(int e)
+	{
+		this.union(this.getVertex(this.complex.getFirstVertex(e)), this.getVertex(this.complex.getSecondVertex(e)));
+	}
+
+	/**
+	 * Merges the later of the two surviving vertices into the earlier one, see Vertex.union(Vertex).
+	 */
+	private void union(int a, int b)
+	{
+		if(a == b)
+		{
+			return;
+		}
+		int earlier = this.isEarlier(a, b) ? a : b;
+		int later = earlier == a ? b : a;
+		this.parent[later] = earlier;
+
+		/* mark holds the neighbours of earlier from before the union */
+		this.markNeighbours(earlier);
+		for(int i = 0; i < this.vertexEdges.size(later); i++)
+		{
+			int incident = this.vertexEdges.get(later, i);
+			if(this.edgeHasVanished(incident))
+			{
+				continue;
+			}
+			int otherVert = this.otherVertex(incident, earlier);
+			if(this.mark[otherVert] == this.stamp)
+			{
+				/* incident and the edge from earlier to otherVert are mirrored */
+				int existing = this.markEdge[otherVert];
+				int survivingMirror;
+				int vanishingMirror;
+				if(this.complex.getEdgeHeight(existing) > this.complex.getEdgeHeight(incident))
+				{
+					vanishingMirror = existing;
+					survivingMirror = incident;
+					this.markEdge[otherVert] = incident;
+					this.vertexEdges.add(earlier, incident);
+				}else {
+					vanishingMirror = incident;
+					survivingMirror = existing;
+				}
+				this.edgeVanished[vanishingMirror] = true;
+				for(int j = 0; j < this.edgeTriangles.size(vanishingMirror); j++)
+				{
+					int t = this.edgeTriangles.get(vanishingMirror, j);
+					if(!this.triangleHasVanished(t))
+					{
+						for(int k = 0; k < 3; k++)
+						{
+							if(this.triangleEdges[3*t+k] == vanishingMirror)
+							{
+								this.triangleEdges[3*t+k] = survivingMirror;
+							}
+						}
+						this.edgeTriangles.add(survivingMirror, t);
+						this.endingTimes[survivingMirror] = Math.max(this.endingTimes[survivingMirror], this.complex.getTriangleHeight(t));
+					}
+				}
+			}else {
+				this.vertexEdges.add(earlier, incident);
+			}
+		}
+
+		for(int i = 0; i < this.vertexTriangles.size(later); i++)
+		{
+			int t = this.vertexTriangles.get(later, i);
+			if(this.triangleHasVanished(t))
+			{
+				continue;
+			}
+			int mirror = -1;
+			int x = -1;
+			int y = -1;
+			for(int j = 0; j < 3; j++)
+			{
+				int w = this.getVertex(this.complex.getTriangleVertex(t, j));
+				if(w != earlier)
+				{
+					if(x < 0) {x = w;}
+					else {y = w;}
+				}
+			}
+			if(this.mark[x] == this.stamp && this.mark[y] == this.stamp)
+			{
+				mirror = this.findTriangle(earlier, x, y);
+			}
+			if(mirror >= 0)
+			{
+				/* If they are mirrors, the older one survives */
+				if(this.complex.getTriangleHeight(t) < this.complex.getTriangleHeight(mirror))
+				{
+					this.triangleVanished[mirror] = true;
+					this.vertexTriangles.add(earlier, t);
+				}else {
+					this.triangleVanished[t] = true;
+				}
+			}else {
+				this.vertexTriangles.add(earlier, t);
+			}
+		}
+	}
+
+	/**
+	 * Schedules every edge with an endpoint in the closed star of the vertex that survived contracting e,
+	 * see ContractionScheduler.
+	 * @param e a contracted edge
+	 * @param scheduler
+	 * @param rankOf the rank of every edge in the scheduled order
+	 */
+	public void touchStar(int e, ContractionScheduler scheduler, int[] rankOf)
+	{
+		int survivor = this.getVertex(this.complex.getFirstVertex(e));
+		for(int i = 0; i < this.vertexEdges.size(survivor); i++)
+		{
+			int f = this.vertexEdges.get(survivor, i);
+			if(!this.edgeHasVanished(f))
+			{
+				scheduler.touch(rankOf[f], this.getStartingTime(f));
+				int w = this.otherVertex(f, survivor);
+				for(int j = 0; j < this.vertexEdges.size(w); j++)
+				{
+					int g = this.vertexEdges.get(w, j);
+					if(!this.edgeHasVanished(g))
+					{
+						scheduler.touch(rankOf[g], this.getStartingTime(g));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the edges sorted by the ending time of their windows. Edges with equal ending times keep
+	 * the order of the edge file, matching the stable sort applied in Driver.contract.
+	 * @return int[]
+	 */
+	public int[] getPersistenceOrder()
+	{
+		return PersistenceSort.order(this.endingTimes);
+	}
+
+	/**
+	 * Writes the vertices, edges and triangles which have not vanished in the format of Driver.writeVertices,
+	 * Driver.writeEdges and Driver.writeTriangles. Edges are written in the given order.
+	 * @param order
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @throws IOException
+	 */
+	public void write(int[] order, String vertexFileName, String edgeFileName, String triangleFileName) throws IOException
+	{
+		BufferedWriter bw = new BufferedWriter(new FileWriter(vertexFileName));
+		for(int v = 0; v < this.complex.getVertexCount(); v++)
+		{
+			if(!this.vertexHasVanished(v))
+			{
+				bw.write(v + "\n");
+			}
+		}
+		bw.close();
+
+		bw = new BufferedWriter(new FileWriter(edgeFileName));
+		for(int e : order)
+		{
+			if(!this.edgeHasVanished(e))
+			{
+				int a = this.getVertex(this.complex.getFirstVertex(e));
+				int b = this.getVertex(this.complex.getSecondVertex(e));
+				bw.write(Math.min(a, b) + "," + Math.max(a, b) + "\n");
+			}
+		}
+		bw.close();
+
+		bw = new BufferedWriter(new FileWriter(triangleFileName));
+		for(int t = 0; t < this.complex.getTriangleCount(); t++)
+		{
+			if(!this.triangleHasVanished(t))
+			{
+				int a = this.getVertex(this.complex.getTriangleVertex(t, 0));
+				int b = this.getVertex(this.complex.getTriangleVertex(t, 1));
+				int c = this.getVertex(this.complex.getTriangleVertex(t, 2));
+				int lo = Math.min(a, Math.min(b, c));
+				int hi = Math.max(a, Math.max(b, c));
+				bw.write(lo + "," + (a + b + c - lo - hi) + "," + hi + "\n");
+			}
+		}
+		bw.close();
+	}
+
+	/**
+	 * Writes the vertices, edges and triangles which have not vanished to a binary mesh, in the format of
+	 * Driver.writeBinary. Edges are written in the given order.
+	 * @param order
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void writeBinary(int[] order, String filename) throws IOException
+	{
+		int[] newIndex = new int[this.complex.getVertexCount()];
+		int vertexCount = 0;
+		for(int v = 0; v < newIndex.length; v++)
+		{
+			if(!this.vertexHasVanished(v))
+			{
+				newIndex[v] = vertexCount++;
+			}
+		}
+		int edgeCount = 0;
+		for(int e : order)
+		{
+			if(!this.edgeHasVanished(e))
+			{
+				edgeCount++;
+			}
+		}
+		int triangleCount = 0;
+		for(int t = 0; t < this.complex.getTriangleCount(); t++)
+		{
+			if(!this.triangleHasVanished(t))
+			{
+				triangleCount++;
+			}
+		}
+		try(BinaryMeshWriter writer = new BinaryMeshWriter(filename, vertexCount, edgeCount, triangleCount,
+				BinaryMesh.VERTEX_IDS | BinaryMesh.EDGE_HEIGHTS | BinaryMesh.TRIANGLE_HEIGHTS)) {
+			for(int v = 0; v < newIndex.length; v++)
+			{
+				if(!this.vertexHasVanished(v))
+				{
+					writer.writeVertexHeight(this.complex.getVertexHeight(v));
+				}
+			}
+			for(int v = 0; v < newIndex.length; v++)
+			{
+				if(!this.vertexHasVanished(v))
+				{
+					writer.writeVertexId(v);
+				}
+			}
+			for(int e : order)
+			{
+				if(!this.edgeHasVanished(e))
+				{
+					int a = newIndex[this.getVertex(this.complex.getFirstVertex(e))];
+					int b = newIndex[this.getVertex(this.complex.getSecondVertex(e))];
+					writer.writeEdge(Math.min(a, b), Math.max(a, b));
+				}
+			}
+			for(int e : order)
+			{
+				if(!this.edgeHasVanished(e))
+				{
+					writer.writeEdgeHeight(this.complex.getEdgeHeight(e));
+				}
+			}
+			for(int t = 0; t < this.complex.getTriangleCount(); t++)
+			{
+				if(!this.triangleHasVanished(t))
+				{
+					int a = newIndex[this.getVertex(this.complex.getTriangleVertex(t, 0))];
+					int b = newIndex[this.getVertex(this.complex.getTriangleVertex(t, 1))];
+					int c = newIndex[this.getVertex(this.complex.getTriangleVertex(t, 2))];
+					int lo = Math.min(a, Math.min(b, c));
+					int hi = Math.max(a, Math.max(b, c));
+					writer.writeTriangle(lo, a + b + c - lo - hi, hi);
+				}
+			}
+			for(int t = 0; t < this.complex.getTriangleCount(); t++)
+			{
+				if(!this.triangleHasVanished(t))
+				{
+					writer.writeTriangleHeight(this.complex.getTriangleHeight(t));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package contract;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The simplices of a complex which have not vanished as primitive columns, with the surviving vertices indexed
+ * from 0 in the order of their original indices. Used to run H0Persistence and H1Persistence on the contracted
+ * complex of any of the contract methods.
+ */
+class ComplexColumns {
+
+	double[] vertexHeights;
+	/* Vertex indices, two per edge and three per triangle */
+	int[] edgeVertices;
+	double[] edgeHeights;
+	int[] triangleVertices;
+	double[] triangleHeights;
+
+	private ComplexColumns(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, int[] triangleVertices, double[] triangleHeights)
+	{
+		this.vertexHeights = vertexHeights;
+		this.edgeVertices = edgeVertices;
+		this.edgeHeights = edgeHeights;
+		this.triangleVertices = triangleVertices;
+		this.triangleHeights = triangleHeights;
+	}
+
+	/**
+	 * Collects the simplices in the lists which have not vanished.
+	 * @param vertices
+	 * @param edges
+	 * @param triangles null to leave out the triangles
+	 */
+	static ComplexColumns of(List<Vertex> vertices, List<Edge> edges, List<Triangle> triangles)
+	{
+		return ComplexColumns.of(new LiveSimplices(vertices, edges, triangles).update());
+	}
+
+	/**
+	 * Collects the live simplices, which have to be updated.
+	 * @param live
+	 */
+	static ComplexColumns of(LiveSimplices live)
+	{
+		int maxIndex = -1;
+		for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
+		{
+			maxIndex = Math.max(maxIndex, live.getVertex(i).getIndex());
+		}
+		/* Surviving vertices keep their original index, which is mapped to a dense one */
+		int[] denseIndex = new int[maxIndex + 1];
+		double[] vertexHeights = new double[live.getVertexCount()];
+		int vertexCount = 0;
+		for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
+		{
+			Vertex v = live.getVertex(i);
+			denseIndex[v.getIndex()] = vertexCount;
+			vertexHeights[vertexCount++] = v.getHeightValue();
+		}
+		int[] edgeVertices = new int[2*live.getEdgeCount()];
+		double[] edgeHeights = new double[live.getEdgeCount()];
+		int edgeCount = 0;
+		for(int i = live.nextEdge(0); i >= 0; i = live.nextEdge(i + 1))
+		{
+			Edge e = live.getEdge(i);
+			edgeVertices[2*edgeCount] = denseIndex[e.getFirstVertex().getIndex()];
+			edgeVertices[2*edgeCount+1] = denseIndex[e.getSecondVertex().getIndex()];
+			edgeHeights[edgeCount++] = e.getHeightValue();
+		}
+		int[] triangleVertices = new int[3*live.getTriangleCount()];
+		double[] triangleHeights = new double[live.getTriangleCount()];
+		int triangleCount = 0;
+		for(int i = live.nextTriangle(0); i >= 0; i = live.nextTriangle(i + 1))
+		{
+			Triangle t = live.getTriangle(i);
+			triangleVertices[3*triangleCount] = denseIndex[t.getFirstVertex().getIndex()];
+			triangleVertices[3*triangleCount+1] = denseIndex[t.getSecondVertex().getIndex()];
+			triangleVertices[3*triangleCount+2] = denseIndex[t.getThirdVertex().getIndex()];
+			triangleHeights[triangleCount++] = t.getHeightValue();
+		}
+		return new ComplexColumns(vertexHeights, edgeVertices, edgeHeights, triangleVertices, triangleHeights);
+	}
+
+	/**
+	 * Collects the simplices of the complex of the contraction which have not vanished.
+	 * @param contraction
+	 * @param complex the complex the contraction was constructed from
+	 */
+	static ComplexColumns of(CompactContraction contraction, CompactComplex complex)
+	{
+		int[] denseIndex = new int[complex.getVertexCount()];
+		double[] vertexHeights = new double[complex.getVertexCount()];
+		int vertexCount = 0;
+		for(int v = 0; v < denseIndex.length; v++)
+		{
+			if(!contraction.vertexHasVanished(v))
+			{
+				denseIndex[v] = vertexCount;
+				vertexHeights[vertexCount++] = complex.getVertexHeight(v);
+			}
+		}
+		int[] edgeVertices = new int[2*complex.getEdgeCount()];
+		double[] edgeHeights = new double[complex.getEdgeCount()];
+		int edgeCount = 0;
+		for(int e = 0; e < complex.getEdgeCount(); e++)
+		{
+			if(!contraction.edgeHasVanished(e))
+			{
+				edgeVertices[2*edgeCount] = denseIndex[contraction.getVertex(complex.getFirstVertex(e))];
+				edgeVertices[2*edgeCount+1] = denseIndex[contraction.getVertex(complex.getSecondVertex(e))];
+				edgeHeights[edgeCount++] = complex.getEdgeHeight(e);
+			}
+		}
+		int[] triangleVertices = new int[3*complex.getTriangleCount()];
+		double[] triangleHeights = new double[complex.getTriangleCount()];
+		int triangleCount = 0;
+		for(int t = 0; t < complex.getTriangleCount(); t++)
+		{
+			if(!contraction.triangleHasVanished(t))
+			{
+				for(int i = 0; i < 3; i++)
+				{
+					triangleVertices[3*triangleCount+i] = denseIndex[contraction.getVertex(complex.getTriangleVertex(t, i))];
+				}
+				triangleHeights[triangleCount++] = complex.getTriangleHeight(t);
+			}
+		}
+		return new ComplexColumns(Arrays.copyOf(vertexHeights, vertexCount), Arrays.copyOf(edgeVertices, 2*edgeCount), Arrays.copyOf(edgeHeights, edgeCount),
+				Arrays.copyOf(triangleVertices, 3*triangleCount), Arrays.copyOf(triangleHeights, triangleCount));
+	}
+
+	/**
+	 * Builds the CompactComplex of the columns, looking up the edges of the triangles by their vertices.
+	 * @param threads
+	 * @return CompactComplex
+	 */
+	CompactComplex toCompact(int threads)
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return new ParallelLoader(this.vertexHeights, this.edgeVertices, this.edgeHeights, this.triangleVertices, this.triangleHeights).buildCompact(pool);
+		}finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package contract;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one iteration of Driver.contract, with the counts of ContractionStatistics.Iteration.
+ */
+@Name("contract.Iteration")
+@Label("Contraction Iteration")
+@Category("Contraction")
+@Description("A pass of a contraction run over the scheduled edges")
+@StackTrace(false)
+class ContractionIterationEvent extends jdk.jfr.Event {
+
+	@Label("Iteration")
+	int iteration;
+
+	@Label("Candidates")
+	@Description("Edges tested for contractibility")
+	int candidates;
+
+	@Label("Vanished")
+	int vanished;
+
+	@Label("Not Viable")
+	int notViable;
+
+	@Label("Link Condition Failed")
+	int linkConditionFailed;
+
+	@Label("Epsilon Failed")
+	int epsilonFailed;
+
+	@Label("Contracted")
+	int contracted;
+
+	@Label("Mirror Edges Merged")
+	int mirrorEdges;
+
+	@Label("Mirror Triangles Merged")
+	int mirrorTriangles;
+}
@@ -0,0 +1,21 @@
+package contract;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one phase of Driver.contract, see ContractionStatistics.Phase.
+ */
+@Name("contract.Phase")
+@Label("Contraction Phase")
+@Category("Contraction")
+@Description("A phase of a contraction run: load, sort, contract, compact or write")
+@StackTrace(false)
+class ContractionPhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+}
@@ -0,0 +1,145 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * Worklist of the edges that still need to be examined by the contraction loop. Edges are identified by
+ * their rank in the persistence sorted edge list, and every pass visits its edges in rank order, just as
+ * a full scan of the list would.
+ *
+ * An edge that was examined and found not contractible is deactivated until a contraction changes its
+ * neighbourhood, because isContractible only depends on the simplices around the edge. Active edges are
+ * kept in a max segment tree over their starting times, so that a pass jumps directly to the next edge
+ * which passes the window rule instead of stepping over the edges the window rule would skip.
+ */
+public class ContractionScheduler {
+
+	private int size;
+	private int active;
+	/* tree[size + rank] is the starting time of an active edge, or negative infinity */
+	private double[] tree;
+
+	/**
+	 * Constructs a scheduler in which every edge is active.
+	 * @param startingTimes the starting time of every edge, indexed by rank
+	 */
+	public ContractionScheduler(double[] startingTimes)
+	{
+		this.size = 1;
+		while(this.size < startingTimes.length)
+		{
+			this.size <<= 1;
+		}
+		this.tree = new double[2*this.size];
+		Arrays.fill(this.tree, Double.NEGATIVE_INFINITY);
+		this.active = 0;
+		for(int r = 0; r < startingTimes.length; r++)
+		{
+			this.tree[this.size + r] = startingTimes[r];
+			if(startingTimes[r] != Double.NEGATIVE_INFINITY)
+			{
+				this.active++;
+			}
+		}
+		for(int i = this.size - 1; i > 0; i--)
+		{
+			this.tree[i] = Math.max(this.tree[2*i], this.tree[2*i+1]);
+		}
+	}
+
+	/**
+	 * Returns the first active edge with rank at least the parameter whose starting time exceeds the current
+	 * time, that is, the next edge a full scan would examine.
+	 * @param rank
+	 * @param currentTime
+	 * @return the rank of the edge, or -1 if the pass is complete
+	 */
+	public int next(int rank, double currentTime)
+	{
+		if(rank >= this.size)
+		{
+			return -1;
+		}
+		int i = rank + this.size;
+		while(this.tree[i] <= currentTime)
+		{
+			/* Move to the subtree covering the ranks right after the ones covered by i */
+			while((i & 1) == 1)
+			{
+				i >>= 1;
+				if(i == 0)
+				{
+					return -1;
+				}
+			}
+			i++;
+		}
+		while(i < this.size)
+		{
+			i <<= 1;
+			if(this.tree[i] <= currentTime)
+			{
+				i++;
+			}
+		}
+		return i - this.size;
+	}
+
+	/**
+	 * Removes the edge from the worklist, after it has been examined.
+	 * @param rank
+	 */
+	public void deactivate(int rank)
+	{
+		this.set(rank, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Records that the neighbourhood of the edge changed, so that it is examined again. Edges ahead of
+	 * the rank the current pass has reached are examined in this pass, the others in the next.
+	 * @param rank
+	 * @param startingTime the current starting time of the edge
+	 */
+	public void touch(int rank, double startingTime)
+	{
+		this.set(rank, startingTime);
+	}
+
+	private void set(int rank, double value)
+	{
+		int i = rank + this.size;
+		if(this.tree[i] == Double.NEGATIVE_INFINITY && value != Double.NEGATIVE_INFINITY)
+		{
+			this.active++;
+		}else if(this.tree[i] != Double.NEGATIVE_INFINITY && value == Double.NEGATIVE_INFINITY) {
+			this.active--;
+		}
+		this.tree[i] = value;
+		for(i >>= 1; i > 0; i >>= 1)
+		{
+			double max = Math.max(this.tree[2*i], this.tree[2*i+1]);
+			if(this.tree[i] == max)
+			{
+				break;
+			}
+			this.tree[i] = max;
+		}
+	}
+
+	/**
+	 * @param rank
+	 * @return whether the edge is waiting to be examined
+	 */
+	public boolean isActive(int rank)
+	{
+		return this.tree[this.size + rank] != Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * @return the number of edges waiting to be examined
+	 */
+	public int pending()
+	{
+		return this.active;
+	}
+}
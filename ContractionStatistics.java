@@ -0,0 +1,395 @@
+package contract;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instruments a run of Driver.contract: the time spent in every phase, per iteration the number of edges tested
+ * and why they were rejected, the contractions and the mirror edges and triangles merged by Vertex.union, and a
+ * histogram of the time taken by the contractions. The statistics are also committed as the JFR events
+ * ContractionPhaseEvent, ContractionIterationEvent and ContractionUnionEvent.
+ *
+ * Driver.contract only instruments a run if it is given a ContractionStatistics or a JFR recording has the
+ * iteration event enabled. Otherwise it only pays a null check per tested edge and per contraction.
+ */
+public class ContractionStatistics {
+
+	public enum Phase { LOAD, SORT, CONTRACT, COMPACT, WRITE }
+
+	/* Buckets of the union latency histogram, bucket b holding latencies of less than 2^b nanoseconds */
+	private static final int BUCKETS = 64;
+
+	/* The statistics of the contraction in progress on this thread, for Vertex.union */
+	private static final ThreadLocal<ContractionStatistics> RECORDING = new ThreadLocal<ContractionStatistics>();
+
+	private long[] phaseNanos;
+	private ArrayList<Iteration> iterations;
+	private Iteration current;
+	private long iterationStart;
+	private ContractionIterationEvent iterationEvent;
+	private long phaseStart;
+	private ContractionPhaseEvent phaseEvent;
+	private long[] unionHistogram;
+	private long unionCount;
+	private long unionNanos;
+	private long maxUnionNanos;
+	private int unionMirrorEdges;
+	private int unionMirrorTriangles;
+
+	public ContractionStatistics()
+	{
+		this.phaseNanos = new long[Phase.values().length];
+		this.iterations = new ArrayList<Iteration>();
+		this.unionHistogram = new long[BUCKETS];
+	}
+
+	/**
+	 * Counts of one iteration of the contraction.
+	 */
+	public static class Iteration {
+
+		private int iteration;
+		private long nanos;
+		private int candidates;
+		private int vanished;
+		private int notViable;
+		private int linkConditionFailed;
+		private int epsilonFailed;
+		private int contracted;
+		private int mirrorEdges;
+		private int mirrorTriangles;
+
+		Iteration(int iteration)
+		{
+			this.iteration = iteration;
+		}
+
+		public int getIteration()
+		{
+			return this.iteration;
+		}
+
+		public long getNanos()
+		{
+			return this.nanos;
+		}
+
+		/**
+		 * @return the number of edges tested for contractibility
+		 */
+		public int getCandidates()
+		{
+			return this.candidates;
+		}
+
+		/**
+		 * @return the number of tested edges which had vanished
+		 */
+		public int getVanished()
+		{
+			return this.vanished;
+		}
+
+		/**
+		 * @return the number of tested edges rejected by Edge.isViable
+		 */
+		public int getNotViable()
+		{
+			return this.notViable;
+		}
+
+		/**
+		 * @return the number of tested edges rejected by Edge.linkCondition
+		 */
+		public int getLinkConditionFailed()
+		{
+			return this.linkConditionFailed;
+		}
+
+		/**
+		 * @return the number of tested edges rejected by Edge.isEpsilonSat
+		 */
+		public int getEpsilonFailed()
+		{
+			return this.epsilonFailed;
+		}
+
+		public int getContracted()
+		{
+			return this.contracted;
+		}
+
+		/**
+		 * @return the number of edges which vanished into a mirror edge in Vertex.union
+		 */
+		public int getMirrorEdges()
+		{
+			return this.mirrorEdges;
+		}
+
+		/**
+		 * @return the number of triangles which vanished into a mirror triangle in Vertex.union
+		 */
+		public int getMirrorTriangles()
+		{
+			return this.mirrorTriangles;
+		}
+	}
+
+	/**
+	 * Returns whether a JFR recording takes the iteration events, in which case Driver.contract instruments
+	 * the run even if it is not given a ContractionStatistics.
+	 */
+	static boolean isRecorded()
+	{
+		return new ContractionIterationEvent().isEnabled();
+	}
+
+	void startPhase()
+	{
+		this.phaseEvent = new ContractionPhaseEvent();
+		this.phaseEvent.begin();
+		this.phaseStart = System.nanoTime();
+	}
+
+	void endPhase(Phase phase)
+	{
+		this.phaseNanos[phase.ordinal()] += System.nanoTime() - this.phaseStart;
+		this.phaseEvent.end();
+		if(this.phaseEvent.shouldCommit())
+		{
+			this.phaseEvent.phase = phase.name();
+			this.phaseEvent.commit();
+		}
+		this.phaseEvent = null;
+	}
+
+	void startIteration(int iteration)
+	{
+		this.current = new Iteration(iteration);
+		this.iterationEvent = new ContractionIterationEvent();
+		this.iterationEvent.begin();
+		this.iterationStart = System.nanoTime();
+	}
+
+	void endIteration()
+	{
+		Iteration it = this.current;
+		it.nanos = System.nanoTime() - this.iterationStart;
+		this.iterations.add(it);
+		this.current = null;
+		ContractionIterationEvent event = this.iterationEvent;
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.iteration = it.iteration;
+			event.candidates = it.candidates;
+			event.vanished = it.vanished;
+			event.notViable = it.notViable;
+			event.linkConditionFailed = it.linkConditionFailed;
+			event.epsilonFailed = it.epsilonFailed;
+			event.contracted = it.contracted;
+			event.mirrorEdges = it.mirrorEdges;
+			event.mirrorTriangles = it.mirrorTriangles;
+			event.commit();
+		}
+		this.iterationEvent = null;
+	}
+
+	/**
+	 * Tests the edge as Edge.isContractible does, counting the test that rejects it.
+	 */
+	boolean isContractible(Edge e, double epsilon)
+	{
+		Iteration it = this.current;
+		it.candidates++;
+		if(e.hasVanished())
+		{
+			it.vanished++;
+			return false;
+		}
+		if(!e.isViable())
+		{
+			it.notViable++;
+			return false;
+		}
+		if(!e.linkCondition())
+		{
+			it.linkConditionFailed++;
+			return false;
+		}
+		if(!e.isEpsilonSat(epsilon))
+		{
+			it.epsilonFailed++;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Contracts the edge, timing the contraction and counting the mirrors merged.
+	 */
+	void contract(Edge e)
+	{
+		ContractionUnionEvent event = new ContractionUnionEvent();
+		this.unionMirrorEdges = 0;
+		this.unionMirrorTriangles = 0;
+		RECORDING.set(this);
+		event.begin();
+		long start = System.nanoTime();
+		try {
+			e.contract();
+		}finally {
+			long nanos = System.nanoTime() - start;
+			event.end();
+			RECORDING.remove();
+			this.unionHistogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))]++;
+			this.unionCount++;
+			this.unionNanos += nanos;
+			this.maxUnionNanos = Math.max(this.maxUnionNanos, nanos);
+			this.current.contracted++;
+			this.current.mirrorEdges += this.unionMirrorEdges;
+			this.current.mirrorTriangles += this.unionMirrorTriangles;
+			if(event.shouldCommit())
+			{
+				event.position = e.getPosition();
+				event.mirrorEdges = this.unionMirrorEdges;
+				event.mirrorTriangles = this.unionMirrorTriangles;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Called by Vertex.union when an edge vanishes into its mirror.
+	 */
+	static void mirrorEdgeMerged()
+	{
+		ContractionStatistics statistics = RECORDING.get();
+		if(statistics != null)
+		{
+			statistics.unionMirrorEdges++;
+		}
+	}
+
+	/**
+	 * Called by Vertex.union when a triangle vanishes into its mirror.
+	 */
+	static void mirrorTriangleMerged()
+	{
+		ContractionStatistics statistics = RECORDING.get();
+		if(statistics != null)
+		{
+			statistics.unionMirrorTriangles++;
+		}
+	}
+
+	/**
+	 * @param phase
+	 * @return the time spent in the phase, in nanoseconds
+	 */
+	public long getPhaseNanos(Phase phase)
+	{
+		return this.phaseNanos[phase.ordinal()];
+	}
+
+	public List<Iteration> getIterations()
+	{
+		return Collections.unmodifiableList(this.iterations);
+	}
+
+	/**
+	 * Returns the histogram of the contraction latencies, where bucket b counts the contractions which took at
+	 * least 2^(b-1) and less than 2^b nanoseconds.
+	 * @return long[]
+	 */
+	public long[] getUnionHistogram()
+	{
+		return this.unionHistogram.clone();
+	}
+
+	public long getUnionCount()
+	{
+		return this.unionCount;
+	}
+
+	/**
+	 * @return the total time of the contractions, in nanoseconds
+	 */
+	public long getUnionNanos()
+	{
+		return this.unionNanos;
+	}
+
+	public long getMaxUnionNanos()
+	{
+		return this.maxUnionNanos;
+	}
+
+	/**
+	 * Returns an upper bound on the given quantile of the contraction latencies, the upper end of the histogram
+	 * bucket which holds it.
+	 * @param q in [0, 1]
+	 * @return nanoseconds
+	 */
+	public long getUnionQuantileNanos(double q)
+	{
+		long rank = (long)Math.ceil(q * this.unionCount);
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++)
+		{
+			seen += this.unionHistogram[b];
+			if(seen >= rank && seen > 0)
+			{
+				return Math.min(1L << b, this.maxUnionNanos);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes the iterations as comma separated lines, after a header line naming the columns.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void writeTrace(String filename) throws IOException
+	{
+		BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
+		bw.write("iteration,nanos,candidates,vanished,notViable,linkConditionFailed,epsilonFailed,contracted,mirrorEdges,mirrorTriangles\n");
+		for(Iteration it : this.iterations)
+		{
+			bw.write(it.iteration + "," + it.nanos + "," + it.candidates + "," + it.vanished + "," + it.notViable + "," + it.linkConditionFailed
+					+ "," + it.epsilonFailed + "," + it.contracted + "," + it.mirrorEdges + "," + it.mirrorTriangles + "\n");
+		}
+		bw.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for(Phase phase : Phase.values())
+		{
+			sb.append(phase.name().toLowerCase()).append(": ").append(this.getPhaseNanos(phase) / 1000000).append(" ms\t");
+		}
+		long candidates = 0;
+		long linkConditionFailed = 0;
+		long epsilonFailed = 0;
+		for(Iteration it : this.iterations)
+		{
+			candidates += it.candidates;
+			linkConditionFailed += it.linkConditionFailed;
+			epsilonFailed += it.epsilonFailed;
+		}
+		sb.append("iterations: ").append(this.iterations.size()).append("\tcandidates: ").append(candidates)
+			.append("\tlink condition failed: ").append(linkConditionFailed).append("\tepsilon failed: ").append(epsilonFailed)
+			.append("\tcontractions: ").append(this.unionCount)
+			.append("\tunion p50/p99/max: ").append(this.getUnionQuantileNanos(0.5)).append("/").append(this.getUnionQuantileNanos(0.99))
+			.append("/").append(this.maxUnionNanos).append(" ns");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,28 @@
+package contract;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one contraction, which is one Vertex.union. There is one per contracted edge, so it is
+ * disabled unless enabled in the recording settings, for instance with a threshold.
+ */
+@Name("contract.Union")
+@Label("Edge Contraction")
+@Category("Contraction")
+@Enabled(false)
+@StackTrace(false)
+class ContractionUnionEvent extends jdk.jfr.Event {
+
+	@Label("Edge Position")
+	int position;
+
+	@Label("Mirror Edges Merged")
+	int mirrorEdges;
+
+	@Label("Mirror Triangles Merged")
+	int mirrorTriangles;
+}
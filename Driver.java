@@ -1,41 +1,236 @@
 package contract;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Driver {
 	
 	private static int positionCounter = 0;
+	private static int loaderThreads = 1;
+	private static boolean binaryInput = false;
+	private static boolean binaryOutput = false;
+	private static boolean h0Diagrams = false;
+	private static boolean h1Diagrams = false;
+	private static boolean bottleneckCheck = false;
+	private static boolean collapseLog = false;
+	
+	/**
+	 * Sets the number of threads the contract methods use to read their input files, see ParallelLoader.
+	 * With a single thread the files are read one after another by getUnstructuredVertices,
+	 * getUnstructuredEdges and getUnstructuredTriangles, or by CompactComplex.read.
+	 * @param threads
+	 */
+	public static void setLoaderThreads(int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		Driver.loaderThreads = threads;
+	}
+	
+	/**
+	 * Sets whether the contract methods read their input from the binary mesh (name).mesh, see BinaryMesh,
+	 * instead of the Data, Edges and Triangles text files.
+	 * @param binary
+	 */
+	public static void setBinaryInput(boolean binary)
+	{
+		Driver.binaryInput = binary;
+	}
+	
+	/**
+	 * Sets whether the contract methods write the contracted complex to the binary mesh (name)Contracted.mesh,
+	 * see writeBinary, instead of the ContractedData, ContractedEdges and ContractedTriangles text files.
+	 * @param binary
+	 */
+	public static void setBinaryOutput(boolean binary)
+	{
+		Driver.binaryOutput = binary;
+	}
+	
+	/**
+	 * Sets whether the contract methods compute the persistence diagrams in dimension zero of the complex they
+	 * read and of the contracted complex, see H0Persistence, and write them to (name)H0.txt and
+	 * (name)ContractedH0.txt, see PersistenceDiagram.write. The diagrams are computed on the loader threads.
+	 * @param diagrams
+	 */
+	public static void setH0Diagrams(boolean diagrams)
+	{
+		Driver.h0Diagrams = diagrams;
+	}
+	
+	/**
+	 * Sets whether the contract methods compute the persistence diagrams in dimension one of the complex they
+	 * read and of the contracted complex with the cohomology reduction of H1Persistence, and write them to
+	 * (name)H1.txt and (name)ContractedH1.txt.
+	 * @param diagrams
+	 */
+	public static void setH1Diagrams(boolean diagrams)
+	{
+		Driver.h1Diagrams = diagrams;
+	}
+	
+	/**
+	 * Sets whether the contract methods measure the bottleneck distances between the diagrams in dimension zero
+	 * and one of the complex they read and of the contracted complex, see BottleneckDistance. The distances are
+	 * reported by ResultPair.getBottleneckReport. A run whose distances exceed epsilon times the number of
+	 * iterations run, the theoretical bound, throws an IllegalStateException after its files are written.
+	 * @param check
+	 */
+	public static void setBottleneckCheck(boolean check)
+	{
+		Driver.bottleneckCheck = check;
+	}
+	
+	/**
+	 * Sets whether contract logs every contraction to (name)Collapses.log, see CollapseLog, from which replay
+	 * rebuilds the complex after any prefix of the run.
+	 * @param log
+	 */
+	public static void setCollapseLog(boolean log)
+	{
+		Driver.collapseLog = log;
+	}
+	
+	/**
+	 * Reserves positions for the given number of edges, which are created in order.
+	 * @param count
+	 * @return the position of the first edge
+	 */
+	static int reservePositions(int count)
+	{
+		int first = Driver.positionCounter;
+		Driver.positionCounter += count;
+		return first;
+	}
+	
+	/**
+	 * Reads the vertices, edges and triangles of the complex with the given name, appending them to the lists
+	 * in the order of the files.
+	 */
+	private static void readComplex(String path, String name, ArrayList<Vertex> vertices, ArrayList<Edge> edges, ArrayList<Triangle> triangles) throws IOException
+	{
+		if(Driver.binaryInput)
+		{
+			BinaryMesh.readObjects(path + name + "/" + name + ".mesh", Driver.loaderThreads, vertices, edges, triangles);
+			return;
+		}
+		String vertexFileName = path + name + "/" + name + "Data.txt";
+		String edgeFileName = path + name + "/" + name + "Edges.txt";
+		String triangleFileName = path + name + "/" + name + "Triangles.txt";
+		if(Driver.loaderThreads > 1)
+		{
+			ParallelLoader.readObjects(vertexFileName, edgeFileName, triangleFileName, Driver.loaderThreads, vertices, edges, triangles);
+			return;
+		}
+		vertices.addAll(Driver.getUnstructuredVertices(vertexFileName));
+		LongMap<Edge> edgeMap = Driver.getUnstructuredEdges(edgeFileName, vertices, edges);
+		triangles.addAll(Driver.getUnstructuredTriangles(triangleFileName, edgeMap));
+	}
+	
+	/**
+	 * Computes the diagrams of a complex needed by setH0Diagrams, setH1Diagrams and setBottleneckCheck, and
+	 * writes the ones asked for to (name)(suffix)H0.txt and (name)(suffix)H1.txt.
+	 * @return the diagrams in dimension zero and one, null where they are not needed
+	 */
+	private static PersistenceDiagram[] diagrams(String path, String name, String suffix, Supplier<PersistenceDiagram> h0, Supplier<PersistenceDiagram> h1) throws IOException
+	{
+		PersistenceDiagram[] diagrams = new PersistenceDiagram[2];
+		if(Driver.h0Diagrams || Driver.bottleneckCheck)
+		{
+			diagrams[0] = h0.get();
+			if(Driver.h0Diagrams)
+			{
+				diagrams[0].write(path + name + "/" + name + suffix + "H0.txt");
+			}
+		}
+		if(Driver.h1Diagrams || Driver.bottleneckCheck)
+		{
+			diagrams[1] = h1.get();
+			if(Driver.h1Diagrams)
+			{
+				diagrams[1].write(path + name + "/" + name + suffix + "H1.txt");
+			}
+		}
+		return diagrams;
+	}
+	
+	/**
+	 * Computes the diagrams of the live simplices, which have to be updated, see diagrams.
+	 */
+	private static PersistenceDiagram[] diagrams(String path, String name, String suffix, LiveSimplices live) throws IOException
+	{
+		return Driver.diagrams(path, name, suffix, () -> H0Persistence.compute(live, Driver.loaderThreads),
+				() -> H1Persistence.compute(live, Driver.loaderThreads, true));
+	}
+	
+	/**
+	 * Reports the bottleneck distances between the diagrams of the complex read and of the contracted complex
+	 * in the result if setBottleneckCheck is set, and throws an IllegalStateException if they exceed the bound.
+	 * @param start the time the diagrams of the contracted complex were started at
+	 */
+	private static void checkBottleneck(ResultPair result, PersistenceDiagram[] initial, PersistenceDiagram[] contracted, double epsilon, long start)
+	{
+		if(!Driver.bottleneckCheck)
+		{
+			return;
+		}
+		double h0 = BottleneckDistance.compute(initial[0], contracted[0]);
+		double h1 = BottleneckDistance.compute(initial[1], contracted[1]);
+		BottleneckReport report = new BottleneckReport(epsilon * result.getItCount(), h0, h1, System.currentTimeMillis() - start);
+		result.setBottleneckReport(report);
+		if(!report.isWithinBound())
+		{
+			throw new IllegalStateException("The bottleneck distance " + report.getDistance() + " exceeds the bound " + report.getBound() + "!");
+		}
+	}
+	
+	/**
+	 * Writes the live simplices of the contracted complex with the given name.
+	 */
+	private static void writeComplex(String path, String name, LiveSimplices live) throws IOException
+	{
+		Driver.writeComplex(path, name, "Contracted", live);
+	}
+	
+	/**
+	 * Writes the live simplices, which have to be updated, to (name)(suffix).mesh, or to the (name)(suffix) Data,
+	 * Edges and Triangles files.
+	 */
+	private static void writeComplex(String path, String name, String suffix, LiveSimplices live) throws IOException
+	{
+		if(Driver.binaryOutput)
+		{
+			Driver.writeBinary(live, path + name + "/" + name + suffix + ".mesh");
+			return;
+		}
+		Driver.writeVertices(live, path + name + "/" + name + suffix + "Data.txt");
+		Driver.writeEdges(live, path + name + "/" + name + suffix + "Edges.txt");
+		Driver.writeTriangles(live, path + name + "/" + name + suffix + "Triangles.txt");
+	}
 	
 	public static ArrayList<Vertex> getUnstructuredVertices(String filename)
 	{
 		ArrayList<Vertex> al = new ArrayList<Vertex>();
-		File file = new File(filename);
 		try
 		{
-			FileReader fileReader = new FileReader(file);
-			BufferedReader bR = new BufferedReader(fileReader);
-			String line;
+			MappedTextReader reader = new MappedTextReader(filename);
+			VertexForest forest = new VertexForest(1024);
 			int count = 0;
-			while((line = bR.readLine()) != null)
+			while(reader.nextLine())
 			{
-				String[] splat = line.split(",");
-				Vertex v = new Vertex(count,Double.parseDouble(splat[splat.length-1]));
+				Vertex v = new Vertex(count,reader.getDouble(reader.fieldCount()-1),forest);
 				al.add(v);
 				count++;
 			}
-			bR.close();
-			fileReader.close();
+			reader.close();
 		}catch(FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -44,34 +239,42 @@ public class Driver {
 		return al;
 	}
 	
-	public static HashMap<String,Edge> getUnstructuredEdges(String filename, ArrayList<Vertex> vertices)
+	public static LongMap<Edge> getUnstructuredEdges(String filename, ArrayList<Vertex> vertices)
+	{
+		return Driver.getUnstructuredEdges(filename, vertices, null);
+	}
+	
+	/**
+	 * Reads the edge file, keying every edge by Edge.key of its vertex indices. If edgeList is not null,
+	 * the edges are also appended to it in the order of the file.
+	 */
+	public static LongMap<Edge> getUnstructuredEdges(String filename, ArrayList<Vertex> vertices, ArrayList<Edge> edgeList)
 	{
-		HashMap<String,Edge> el = new HashMap<String,Edge>();
-		File file = new File(filename);
+		LongMap<Edge> el = new LongMap<Edge>(vertices.size() * 3);
 		try
 		{
-			FileReader fileReader = new FileReader(file);
-			BufferedReader bR = new BufferedReader(fileReader);
-			String line;
-			while((line = bR.readLine()) != null)
+			MappedTextReader reader = new MappedTextReader(filename);
+			while(reader.nextLine())
 			{
-				String[] splat = line.split(",");
-				int firstIndex = Integer.parseInt(splat[0]);
-				int secondIndex = Integer.parseInt(splat[1]);
+				int firstIndex = reader.getInt(0);
+				int secondIndex = reader.getInt(1);
 				Vertex firstVert = vertices.get(firstIndex);
 				Vertex secondVert = vertices.get(secondIndex);
 				Edge newEdge;
-				if(splat.length < 3)
+				if(reader.fieldCount() < 3)
 				{
 					newEdge = new Edge(firstVert, secondVert, Driver.positionCounter);
 				}else {
-					newEdge = new Edge(firstVert, secondVert, Double.parseDouble(splat[3]), Driver.positionCounter);
+					newEdge = new Edge(firstVert, secondVert, reader.getDouble(2), Driver.positionCounter);
+				}
+				el.put(newEdge.getKey(), newEdge);
+				if(edgeList != null)
+				{
+					edgeList.add(newEdge);
 				}
-				el.put(newEdge.toString(), newEdge);
 				Driver.positionCounter++;
 			}
-			bR.close();
-			fileReader.close();
+			reader.close();
 		}catch(FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -81,46 +284,38 @@ public class Driver {
 		return el;
 	}
 	
-	public static ArrayList<Triangle> getUnstructuredTriangles(String filename, HashMap<String,Edge> edges)
+	public static ArrayList<Triangle> getUnstructuredTriangles(String filename, LongMap<Edge> edges)
 	{
 		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
-		File file = new File(filename);
 		try
 		{
-			FileReader fileReader = new FileReader(file);
-			BufferedReader bR = new BufferedReader(fileReader);
-			String line;
-			while((line = bR.readLine()) != null)
+			MappedTextReader reader = new MappedTextReader(filename);
+			int[] ints = new int[3];
+			while(reader.nextLine())
 			{
-				String[] splat = line.split(",");
-				int[] ints = new int[3];
-				ints[0] = Integer.parseInt(splat[0]);
-				ints[1] = Integer.parseInt(splat[1]);
-				ints[2] = Integer.parseInt(splat[2]);
+				ints[0] = reader.getInt(0);
+				ints[1] = reader.getInt(1);
+				ints[2] = reader.getInt(2);
 				
 				Arrays.sort(ints);
-				String firstString = ints[1] + "," + ints[2];
-				String secondString = ints[0] + "," + ints[2];
-				String thirdString = ints[0] + "," + ints[1];
 				
-				Edge firstEdge = edges.get(firstString);
-				Edge secondEdge = edges.get(secondString);
-				Edge thirdEdge = edges.get(thirdString);
+				Edge firstEdge = edges.get(Edge.key(ints[1], ints[2]));
+				Edge secondEdge = edges.get(Edge.key(ints[0], ints[2]));
+				Edge thirdEdge = edges.get(Edge.key(ints[0], ints[1]));
 				
 				Triangle t;
-				if(splat.length < 4)
+				if(reader.fieldCount() < 4)
 				{
 					t = new Triangle(firstEdge,secondEdge,thirdEdge);
 				}else {
-					t = new Triangle(firstEdge,secondEdge,thirdEdge,Double.parseDouble(splat[3]));
+					t = new Triangle(firstEdge,secondEdge,thirdEdge,reader.getDouble(3));
 				}
 				firstEdge.addIncidentTriangle(t);
 				secondEdge.addIncidentTriangle(t);
 				thirdEdge.addIncidentTriangle(t);
 				triangles.add(t);
 			}
-			bR.close();
-			fileReader.close();
+			reader.close();
 		}catch(FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -130,44 +325,117 @@ public class Driver {
 	}
 	
 	public static void writeVertices(List<Vertex> vertices, String filename) throws IOException
+	{
+		Driver.writeVertices(new LiveSimplices(vertices, null, null).update(), filename);
+	}
+	
+	static void writeVertices(LiveSimplices live, String filename) throws IOException
 	{
 		BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
-		for(Vertex v : vertices)
+		for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
 		{
-			if(!v.hasVanished())
-			{
-				bw.write(v.toString()+"\n");
-			}
+			bw.write(live.getVertex(i).toString()+"\n");
 		}
 		bw.close();
 	}
 	
 	public static void writeEdges(List<Edge> edges, String filename) throws IOException
+	{
+		Driver.writeEdges(new LiveSimplices(null, edges, null).update(), filename);
+	}
+	
+	static void writeEdges(LiveSimplices live, String filename) throws IOException
 	{
 		BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
-		for(Edge e : edges)
+		for(int i = live.nextEdge(0); i >= 0; i = live.nextEdge(i + 1))
 		{
-			if(!e.hasVanished())
-			{
-				bw.write(e.toString()+"\n");
-			}
+			bw.write(live.getEdge(i).toString()+"\n");
 		}
 		bw.close();
 	}
 	
 	public static void writeTriangles(List<Triangle> triangles, String filename) throws IOException
+	{
+		Driver.writeTriangles(new LiveSimplices(null, null, triangles).update(), filename);
+	}
+	
+	static void writeTriangles(LiveSimplices live, String filename) throws IOException
 	{
 		BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
-		for(Triangle t : triangles)
+		for(int i = live.nextTriangle(0); i >= 0; i = live.nextTriangle(i + 1))
 		{
-			if(!t.hasVanished())
-			{
-				bw.write(t.toString()+"\n");
-			}
+			bw.write(live.getTriangle(i).toString()+"\n");
 		}
 		bw.close();
 	}
 					
+	/**
+	 * Writes the vertices, edges and triangles which have not vanished to a binary mesh, see writeBinary.
+	 * @param vertices
+	 * @param edges
+	 * @param triangles
+	 * @param filename
+	 * @throws IOException
+	 */
+	public static void writeBinary(List<Vertex> vertices, List<Edge> edges, List<Triangle> triangles, String filename) throws IOException
+	{
+		Driver.writeBinary(new LiveSimplices(vertices, edges, triangles).update(), filename);
+	}
+	
+	/**
+	 * Writes the live vertices, edges and triangles to a binary mesh, see BinaryMesh. The vertices are indexed
+	 * from 0 in list order, and their indices in the complex they were read from are written as their ids. Edges
+	 * and triangles are written in list order with their heights.
+	 * @param live
+	 * @param filename
+	 * @throws IOException
+	 */
+	static void writeBinary(LiveSimplices live, String filename) throws IOException
+	{
+		int maxIndex = -1;
+		for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
+		{
+			maxIndex = Math.max(maxIndex, live.getVertex(i).getIndex());
+		}
+		int[] newIndex = new int[maxIndex + 1];
+		try(BinaryMeshWriter writer = new BinaryMeshWriter(filename, live.getVertexCount(), live.getEdgeCount(), live.getTriangleCount(),
+				BinaryMesh.VERTEX_IDS | BinaryMesh.EDGE_HEIGHTS | BinaryMesh.TRIANGLE_HEIGHTS)) {
+			int next = 0;
+			for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
+			{
+				Vertex v = live.getVertex(i);
+				newIndex[v.getIndex()] = next++;
+				writer.writeVertexHeight(v.getHeightValue());
+			}
+			for(int i = live.nextVertex(0); i >= 0; i = live.nextVertex(i + 1))
+			{
+				writer.writeVertexId(live.getVertex(i).getIndex());
+			}
+			for(int i = live.nextEdge(0); i >= 0; i = live.nextEdge(i + 1))
+			{
+				Edge e = live.getEdge(i);
+				int a = newIndex[e.getFirstVertex().getIndex()];
+				int b = newIndex[e.getSecondVertex().getIndex()];
+				writer.writeEdge(Math.min(a, b), Math.max(a, b));
+			}
+			for(int i = live.nextEdge(0); i >= 0; i = live.nextEdge(i + 1))
+			{
+				writer.writeEdgeHeight(live.getEdge(i).getHeightValue());
+			}
+			for(int i = live.nextTriangle(0); i >= 0; i = live.nextTriangle(i + 1))
+			{
+				Triangle t = live.getTriangle(i);
+				t.computeIndexRep();
+				int[] index = t.getIndex();
+				writer.writeTriangle(newIndex[index[0]], newIndex[index[1]], newIndex[index[2]]);
+			}
+			for(int i = live.nextTriangle(0); i >= 0; i = live.nextTriangle(i + 1))
+			{
+				writer.writeTriangleHeight(live.getTriangle(i).getHeightValue());
+			}
+		}
+	}
+	
 	public static ArrayList<Vertex> removeVertexVanished(ArrayList<Vertex> vertexList)
 	{
 		int count = 0;
@@ -231,20 +499,68 @@ public class Driver {
 		return toReturn;
 	}
 			
+	/**
+	 * Schedules every edge which has an endpoint in the closed star of the parameter, which are the edges whose
+	 * contractibility may have changed when the parameter survived a contraction. Also recomputes the windows of
+	 * those edges the contraction invalidated, so that ParallelContraction and SpeculativeContraction never
+	 * compute a window on their worker threads.
+	 */
+	static void touchStar(Vertex survivor, ContractionScheduler scheduler, int[] rankOfPosition, int basePosition)
+	{
+		/* Walks the maps by slot, which allocates nothing */
+		LongMap<Edge> star = survivor.edgeMap();
+		for(int i = 0; i < star.slots(); i++)
+		{
+			Edge e = star.valueAt(i);
+			if(e != null && !e.hasVanished())
+			{
+				e.getEndingTime();
+				scheduler.touch(rankOfPosition[e.getPosition() - basePosition], e.getStartingTime());
+				LongMap<Edge> neighbours = e.getOtherVertex(survivor).edgeMap();
+				for(int j = 0; j < neighbours.slots(); j++)
+				{
+					Edge f = neighbours.valueAt(j);
+					if(f != null && !f.hasVanished())
+					{
+						f.getEndingTime();
+						scheduler.touch(rankOfPosition[f.getPosition() - basePosition], f.getStartingTime());
+					}
+				}
+			}
+		}
+	}
+	
 	public static ResultPair contract(String path, String name, double epsilon, int maxIts, int maxContractions) throws IOException
 	{
-		String vertexFileName = path + name + "/" + name + "Data.txt";
-		String initialEdgeFileName = path + name + "/" + name + "Edges.txt";
-		String initialTriangleFileName = path + name + "/" + name + "Triangles.txt";
-		String contractedVertexFileName = path + name + "/" + name + "ContractedData.txt";
-		String contractedEdgeFileName = path + name + "/" + name + "ContractedEdges.txt";
-		String contractedTriangleFileName = path + name + "/" + name + "ContractedTriangles.txt";		
-		
-		ArrayList<Vertex> vertices = Driver.getUnstructuredVertices(vertexFileName);
-		HashMap<String,Edge> edgeMap = Driver.getUnstructuredEdges(initialEdgeFileName, vertices);
+		return Driver.contract(path, name, epsilon, maxIts, maxContractions, null);
+	}
+	
+	/**
+	 * Performs contract, recording the phases, the iterations and the contractions of the run in the given
+	 * statistics, see ContractionStatistics. Without statistics the run is only instrumented while a JFR
+	 * recording takes the contract.Iteration event.
+	 */
+	public static ResultPair contract(String path, String name, double epsilon, int maxIts, int maxContractions, ContractionStatistics statistics) throws IOException
+	{
+		if(statistics == null && ContractionStatistics.isRecorded())
+		{
+			statistics = new ContractionStatistics();
+		}
+		if(statistics != null)
+		{
+			statistics.startPhase();
+		}
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
 		ArrayList<Edge> edges = new ArrayList<Edge>();
-		edges.addAll(edgeMap.values());
-		ArrayList<Triangle> triangles = Driver.getUnstructuredTriangles(initialTriangleFileName, edgeMap);
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		LiveSimplices live = new LiveSimplices(vertices, edges, triangles);
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", live);
+		if(statistics != null)
+		{
+			statistics.endPhase(ContractionStatistics.Phase.LOAD);
+			statistics.startPhase();
+		}
 				
 		int initialVertices = vertices.size();
 		int initialEdges = edges.size();
@@ -253,7 +569,281 @@ public class Driver {
 		int initialSimplices = initialVertices + initialEdges + initialTriangles;
 		
 		Edge.setPersistenceSort();
-		Collections.sort(edges);
+		PersistenceSort.sort(edges);
+		
+		/* Edges are scheduled by their rank in the sorted list */
+		int basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			basePosition = Math.min(basePosition, e.getPosition());
+		}
+		int[] rankOfPosition = new int[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			rankOfPosition[edges.get(i).getPosition() - basePosition] = i;
+		}
+		double[] startingTimes = new double[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			startingTimes[i] = edges.get(i).getStartingTime();
+		}
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
+		if(statistics != null)
+		{
+			statistics.endPhase(ContractionStatistics.Phase.SORT);
+			statistics.startPhase();
+		}
+		
+		CollapseLog log = Driver.collapseLog ? new CollapseLog(path + name + "/" + name + "Collapses.log", initialVertices, initialEdges, initialTriangles) : null;
+		int edgesContracted = 0;
+		int formerCount = -1; 
+		long initial = System.currentTimeMillis();
+		int itCount = 0;
+		boolean flag = true;
+		try {
+			while(edgesContracted - formerCount > 0 && itCount != maxIts && flag)
+			{
+				itCount++;
+				formerCount = edgesContracted;
+				if(statistics != null)
+				{
+					statistics.startIteration(itCount);
+				}
+				double currentTime = Double.NEGATIVE_INFINITY;
+				/* Only visits the edges that pass the window rule and may have become contractible */
+				for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+				{
+					Edge e = edges.get(i);
+					scheduler.deactivate(i);
+					if(statistics == null ? e.isContractible(epsilon) : statistics.isContractible(e, epsilon))
+					{
+						currentTime = e.getEndingTime();					
+						if(log != null)
+						{
+							log.begin(e, itCount);
+						}
+						if(statistics == null)
+						{
+							e.contract();
+						}else {
+							statistics.contract(e);
+						}
+						if(log != null)
+						{
+							log.end();
+						}
+						edgesContracted++;
+						Driver.touchStar(e.getFirstVertex(), scheduler, rankOfPosition, basePosition);
+					}
+				
+					if(edgesContracted == maxContractions)
+					{
+						flag = false;
+						break;
+					}
+				}
+				if(statistics != null)
+				{
+					statistics.endIteration();
+				}
+			}
+		}finally {
+			if(log != null)
+			{
+				log.close();
+			}
+		}
+		long millis = System.currentTimeMillis() - initial;
+		if(statistics != null)
+		{
+			statistics.endPhase(ContractionStatistics.Phase.CONTRACT);
+			statistics.startPhase();
+		}
+		
+		live.update();
+		if(statistics != null)
+		{
+			statistics.endPhase(ContractionStatistics.Phase.COMPACT);
+			statistics.startPhase();
+		}
+		
+		long check = System.currentTimeMillis();
+		PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, "Contracted", live);
+		Driver.writeComplex(path, name, live);
+		if(statistics != null)
+		{
+			statistics.endPhase(ContractionStatistics.Phase.WRITE);
+		}
+		ResultPair result = new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+		Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+		return result;
+	}
+	
+	/**
+	 * Performs contract for each of the given epsilons in increasing order, reading and sorting the complex once.
+	 * Every level starts from the complex contracted by the level before, which is valid because every
+	 * contraction admitted for an epsilon is admitted for a larger one, so the complex of a level may differ from
+	 * the one a separate run of contract would write, but is bounded the same way. The complex of every level is
+	 * written to (name)Contracted(epsilon).mesh or the Contracted(epsilon) Data, Edges and Triangles files, with
+	 * its diagrams if they are asked for. With setCollapseLog, the levels are logged to one log whose iterations
+	 * continue from level to level, so replay rebuilds a level by its last iteration.
+	 * @param epsilons in increasing order
+	 * @param maxIts the maximum number of iterations of each level, or -1 for no limit
+	 * @return for every level, the time, contractions and iterations from the complex read up to that level, so
+	 * that the bound of a level is at most its epsilon times its iterations
+	 */
+	public static List<ResultPair> contractSweep(String path, String name, double[] epsilons, int maxIts) throws IOException
+	{
+		for(int level = 1; level < epsilons.length; level++)
+		{
+			if(!(epsilons[level] >= epsilons[level-1]))
+			{
+				throw new IllegalArgumentException("The epsilons of a sweep must increase, " + epsilons[level] + " follows " + epsilons[level-1] + "!");
+			}
+		}
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		LiveSimplices live = new LiveSimplices(vertices, edges, triangles);
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", live);
+		
+		int initialVertices = vertices.size();
+		int initialEdges = edges.size();
+		int initialTriangles = triangles.size();
+		int initialSimplices = initialVertices + initialEdges + initialTriangles;
+		
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		
+		int basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			basePosition = Math.min(basePosition, e.getPosition());
+		}
+		int[] rankOfPosition = new int[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			rankOfPosition[edges.get(i).getPosition() - basePosition] = i;
+		}
+		double[] startingTimes = new double[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			startingTimes[i] = edges.get(i).getStartingTime();
+		}
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
+		
+		List<ResultPair> results = new ArrayList<ResultPair>(epsilons.length);
+		CollapseLog log = Driver.collapseLog ? new CollapseLog(path + name + "/" + name + "Collapses.log", initialVertices, initialEdges, initialTriangles) : null;
+		int edgesContracted = 0;
+		int itCount = 0;
+		long millis = 0;
+		try {
+			for(int level = 0; level < epsilons.length; level++)
+			{
+				double epsilon = epsilons[level];
+				long initial = System.currentTimeMillis();
+				if(level > 0)
+				{
+					/* Edges the level before left but found not contractible may be contractible now */
+					for(int i = live.nextEdge(0); i >= 0; i = live.nextEdge(i + 1))
+					{
+						scheduler.touch(i, edges.get(i).getStartingTime());
+					}
+				}
+				int levelContracted = 0;
+				int formerCount = -1;
+				int levelIts = 0;
+				while(levelContracted - formerCount > 0 && levelIts != maxIts)
+				{
+					levelIts++;
+					itCount++;
+					formerCount = levelContracted;
+					double currentTime = Double.NEGATIVE_INFINITY;
+					for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+					{
+						Edge e = edges.get(i);
+						scheduler.deactivate(i);
+						if(e.isContractible(epsilon))
+						{
+							currentTime = e.getEndingTime();
+							if(log != null)
+							{
+								log.begin(e, itCount);
+							}
+							e.contract();
+							if(log != null)
+							{
+								log.end();
+							}
+							levelContracted++;
+							Driver.touchStar(e.getFirstVertex(), scheduler, rankOfPosition, basePosition);
+						}
+					}
+				}
+				edgesContracted += levelContracted;
+				millis += System.currentTimeMillis() - initial;
+				
+				/* Only visits the simplices the level before left */
+				live.update();
+				
+				long check = System.currentTimeMillis();
+				String suffix = "Contracted" + epsilon;
+				PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, suffix, live);
+				Driver.writeComplex(path, name, suffix, live);
+				ResultPair result = new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+				Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+				results.add(result);
+			}
+		}finally {
+			if(log != null)
+			{
+				log.close();
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Performs the same contraction as contract, but on a CompactComplex rather than on Vertex, Edge and
+	 * Triangle objects. The contracted files are identical to the ones written by contract.
+	 */
+	public static ResultPair contractCompact(String path, String name, double epsilon, int maxIts, int maxContractions) throws IOException
+	{
+		String vertexFileName = path + name + "/" + name + "Data.txt";
+		String initialEdgeFileName = path + name + "/" + name + "Edges.txt";
+		String initialTriangleFileName = path + name + "/" + name + "Triangles.txt";
+		String contractedVertexFileName = path + name + "/" + name + "ContractedData.txt";
+		String contractedEdgeFileName = path + name + "/" + name + "ContractedEdges.txt";
+		String contractedTriangleFileName = path + name + "/" + name + "ContractedTriangles.txt";
+		
+		CompactComplex complex;
+		if(Driver.binaryInput)
+		{
+			complex = BinaryMesh.readCompact(path + name + "/" + name + ".mesh", Driver.loaderThreads);
+		}else if(Driver.loaderThreads > 1) {
+			complex = ParallelLoader.readCompact(vertexFileName, initialEdgeFileName, initialTriangleFileName, Driver.loaderThreads);
+		}else {
+			complex = CompactComplex.read(vertexFileName, initialEdgeFileName, initialTriangleFileName);
+		}
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", () -> H0Persistence.compute(complex, Driver.loaderThreads),
+				() -> H1Persistence.compute(complex, Driver.loaderThreads, true));
+		CompactContraction contraction = new CompactContraction(complex);
+		
+		int initialSimplices = complex.getVertexCount() + complex.getEdgeCount() + complex.getTriangleCount();
+		
+		int[] edges = contraction.getPersistenceOrder();
+		int[] rankOf = new int[edges.length];
+		for(int i = 0; i < edges.length; i++)
+		{
+			rankOf[edges[i]] = i;
+		}
+		double[] startingTimes = new double[edges.length];
+		for(int i = 0; i < edges.length; i++)
+		{
+			startingTimes[i] = contraction.getStartingTime(edges[i]);
+		}
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
 		
 		int edgesContracted = 0;
 		int formerCount = -1; 
@@ -265,13 +855,16 @@ public class Driver {
 			itCount++;
 			formerCount = edgesContracted;
 			double currentTime = Double.NEGATIVE_INFINITY;
-			for(Edge e : edges)
+			for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
 			{
-				if(e.getStartingTime() > currentTime && e.isContractible(epsilon))
+				int e = edges[i];
+				scheduler.deactivate(i);
+				if(contraction.isContractible(e, epsilon))
 				{
-					currentTime = e.getEndingTime();					
-					e.contract();
+					currentTime = contraction.getEndingTime(e);
+					contraction.contract(e);
 					edgesContracted++;
+					contraction.touchStar(e, scheduler, rankOf);
 				}
 				
 				if(edgesContracted == maxContractions)
@@ -283,16 +876,206 @@ public class Driver {
 		}
 		long millis = System.currentTimeMillis() - initial;
 		
-		edges = Driver.removeEdgeVanished(edges);
-		vertices = Driver.removeVertexVanished(vertices);
-		triangles = Driver.removeTriangleVanished(triangles);
+		long check = System.currentTimeMillis();
+		PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, "Contracted", () -> H0Persistence.compute(contraction, complex, Driver.loaderThreads),
+				() -> H1Persistence.compute(contraction, complex, Driver.loaderThreads, true));
+		if(Driver.binaryOutput)
+		{
+			contraction.writeBinary(edges, path + name + "/" + name + "Contracted.mesh");
+		}else {
+			contraction.write(edges, contractedVertexFileName, contractedEdgeFileName, contractedTriangleFileName);
+		}
+		ResultPair result = new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+		Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+		return result;
+	}
+	
+	/**
+	 * Performs the same passes as contract, with the contractions of every pass spread over the given number
+	 * of threads, see ParallelContraction. The contracted files are deterministic for a given thread count.
+	 */
+	public static ResultPair contractParallel(String path, String name, double epsilon, int maxIts, int maxContractions, int threads) throws IOException
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		LiveSimplices live = new LiveSimplices(vertices, edges, triangles);
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", live);
+		
+		int initialSimplices = vertices.size() + edges.size() + triangles.size();
+		
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		ParallelContraction contraction = new ParallelContraction(vertices.size(), edges, threads);
+		
+		int edgesContracted = 0;
+		int formerCount = -1; 
+		long initial = System.currentTimeMillis();
+		int itCount = 0;
+		try {
+			while(edgesContracted - formerCount > 0 && itCount != maxIts && edgesContracted != maxContractions)
+			{
+				itCount++;
+				formerCount = edgesContracted;
+				edgesContracted += contraction.pass(epsilon, maxContractions < 0 ? -1 : maxContractions - edgesContracted);
+			}
+		}finally {
+			contraction.shutdown();
+		}
+		long millis = System.currentTimeMillis() - initial;
+		
+		live.update();
+		
+		long check = System.currentTimeMillis();
+		PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, "Contracted", live);
+		Driver.writeComplex(path, name, live);
+		ResultPair result = new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+		Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+		return result;
+	}
+	
+	/**
+	 * Performs the same passes as contract with speculative workers, see SpeculativeContraction. The result also
+	 * reports how many of the attempted contractions were aborted because of conflicts between the workers.
+	 */
+	public static SpeculativeResult contractSpeculative(String path, String name, double epsilon, int maxIts, int maxContractions, int threads) throws IOException
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		LiveSimplices live = new LiveSimplices(vertices, edges, triangles);
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", live);
+		
+		int initialSimplices = vertices.size() + edges.size() + triangles.size();
+		
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		SpeculativeContraction contraction = new SpeculativeContraction(vertices.size(), edges, threads);
+		
+		int edgesContracted = 0;
+		int formerCount = -1; 
+		long initial = System.currentTimeMillis();
+		int itCount = 0;
+		try {
+			while(edgesContracted - formerCount > 0 && itCount != maxIts && edgesContracted != maxContractions)
+			{
+				itCount++;
+				formerCount = edgesContracted;
+				edgesContracted += contraction.pass(epsilon, maxContractions < 0 ? -1 : maxContractions - edgesContracted);
+			}
+		}finally {
+			contraction.shutdown();
+		}
+		long millis = System.currentTimeMillis() - initial;
+		
+		live.update();
 		
-		Driver.writeVertices(vertices, contractedVertexFileName);
-		Driver.writeEdges(edges, contractedEdgeFileName);
-		Driver.writeTriangles(triangles,contractedTriangleFileName);
-		return new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+		long check = System.currentTimeMillis();
+		PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, "Contracted", live);
+		Driver.writeComplex(path, name, live);
+		SpeculativeResult result = new SpeculativeResult(millis,edgesContracted,initialSimplices,itCount,contraction.getAttempts(),contraction.getAborts());
+		Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+		return result;
 	}
 	
+	/**
+	 * Performs the iterations of contract on tiles of the complex in parallel, with the seams between them frozen,
+	 * and then on the seams, see TiledContraction. The contracted files are deterministic for a given number of
+	 * tiles when there is no limit on the contractions.
+	 */
+	public static ResultPair contractTiled(String path, String name, double epsilon, int maxIts, int maxContractions, int tiles, int threads) throws IOException
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		LiveSimplices live = new LiveSimplices(vertices, edges, triangles);
+		PersistenceDiagram[] initialDiagrams = Driver.diagrams(path, name, "", live);
+		
+		int initialSimplices = vertices.size() + edges.size() + triangles.size();
+		
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		TiledContraction contraction = new TiledContraction(vertices, edges, tiles, threads);
+		
+		long initial = System.currentTimeMillis();
+		int edgesContracted;
+		try {
+			edgesContracted = contraction.contractTiles(epsilon, maxIts, maxContractions);
+		}finally {
+			contraction.shutdown();
+		}
+		edgesContracted += contraction.contractSeams(epsilon, maxIts, maxContractions < 0 ? -1 : maxContractions - edgesContracted);
+		int itCount = contraction.getIterations();
+		long millis = System.currentTimeMillis() - initial;
+		
+		live.update();
+		
+		long check = System.currentTimeMillis();
+		PersistenceDiagram[] contractedDiagrams = Driver.diagrams(path, name, "Contracted", live);
+		Driver.writeComplex(path, name, live);
+		ResultPair result = new ResultPair(millis,edgesContracted,initialSimplices,itCount);
+		Driver.checkBottleneck(result, initialDiagrams, contractedDiagrams, epsilon, check);
+		return result;
+	}
+	
+	/**
+	 * Performs the iterations of contract on (name).mesh, which does not have to fit in memory, in blocks of the
+	 * given number of vertices, see OutOfCoreContraction. As for contract, maxIts bounds the iterations of the
+	 * whole run, added up over the blocks. The contracted complex is written to the text files while it is
+	 * contracted, so neither binary output nor diagrams are supported.
+	 */
+	public static ResultPair contractOutOfCore(String path, String name, double epsilon, int maxIts, int maxContractions, int blockSize) throws IOException
+	{
+		if(Driver.binaryOutput || Driver.h0Diagrams || Driver.h1Diagrams || Driver.bottleneckCheck)
+		{
+			throw new IllegalStateException("The out of core contraction writes text files and computes no diagrams!");
+		}
+		long initial = System.currentTimeMillis();
+		try(OutOfCoreContraction contraction = new OutOfCoreContraction(path + name + "/" + name + ".mesh", blockSize)) {
+			int edgesContracted = contraction.contract(epsilon, maxIts, maxContractions, path + name + "/" + name + "ContractedData.txt",
+					path + name + "/" + name + "ContractedEdges.txt", path + name + "/" + name + "ContractedTriangles.txt");
+			long millis = System.currentTimeMillis() - initial;
+			return new ResultPair(millis,edgesContracted,contraction.getInitialSimplices(),contraction.getIterations());
+		}
+	}
+
+	/**
+	 * Rebuilds the complex after a prefix of a run of contract from the log setCollapseLog made it write, see
+	 * CollapseReplay, and writes it to (name)Replayed.mesh or the ReplayedData, ReplayedEdges and ReplayedTriangles
+	 * files. The complex is read as it was for the run, and its edges are sorted as contract sorts them, so
+	 * replaying a whole log writes the same files as the run, and replaying up to the last iteration of a level
+	 * of contractSweep the same files as that level.
+	 * @param maxRecords the number of contractions to replay, or -1 for all of them
+	 * @param maxIteration the last iteration to replay, or -1 for all of them
+	 * @return the time taken by the replay, the contractions replayed and the last iteration replayed
+	 */
+	public static ResultPair replay(String path, String name, int maxRecords, int maxIteration) throws IOException
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		Driver.readComplex(path, name, vertices, edges, triangles);
+		int initialSimplices = vertices.size() + edges.size() + triangles.size();
+		/* The edges are written in the order contract writes them */
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+
+		long initial = System.currentTimeMillis();
+		int replayed;
+		int itCount;
+		try(CollapseReplay replay = new CollapseReplay(vertices, edges, triangles, path + name + "/" + name + "Collapses.log")) {
+			replayed = replay.advance(maxRecords, maxIteration);
+			itCount = replay.getIteration();
+		}
+		long millis = System.currentTimeMillis() - initial;
+
+		Driver.writeComplex(path, name, "Replayed", new LiveSimplices(vertices, edges, triangles).update());
+		return new ResultPair(millis,replayed,initialSimplices,itCount);
+	}
+
 	public static void main(String[] args) throws IOException {
 		String path = "/home/slechta.3/Documents/ContractionExperiments/PaperData/";
 		/* The directory given by the path must contain a directory with the name given in the "name" variable" */
@@ -316,9 +1099,17 @@ public class Driver {
 		/* Distance corresponding to the persistence diagrams/modules of the original and contracted filtrations. */
 		/* Theoretical bound is then epsilon*maxIts. Set -1 for unlimited iterations. */
 		int maxContractions = -1;
+		/* Set to true to measure the actual bottleneck distances against the bound, failing the run if it is exceeded. */
+		/* It computes the persistence diagrams of the original and the contracted complex, which may take longer than the run. */
+		boolean bottleneckCheck = false;
+		Driver.setBottleneckCheck(bottleneckCheck);
 		ResultPair ret = Driver.contract(path, name, epsilon, maxIts, maxContractions);
 		/* New filtration are written to 3 new files: (name)ContractedData.txt, (name)ContractedEdges.txt, (name)ContractedTriangles.txt*/
 		System.out.println(name + "\tTime: " + ret.getMillis() + " ms\tContracted: " + ret.getContracted() + " edges\tIterations: " + ret.getItCount());
+		if(ret.getBottleneckReport() != null)
+		{
+			System.out.println(ret.getBottleneckReport());
+		}
 		System.out.println("Program Completed");
 	}
 
@@ -1,20 +1,23 @@
 package contract;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Edge implements Simplex,Comparable<Edge>{
 	
 	private static boolean persistenceSort = false; 
 	private Vertex firstVertex;
 	private Vertex secondVertex;
-	private Map<String,Triangle> incidentTriangles;
+	private LongMap<Triangle> incidentTriangles;
 	private int[] index;
 	private double heightValue;
 	private int position;
 	private boolean hasVanished;
+	/* Cached ending time of the edge, recomputed when windowValid is unset */
+	private double endingTime;
+	private boolean windowValid;
+	/* Cached epsilon slack of the edge, recomputed when slackValid is unset */
+	private double slack;
+	private boolean slackValid;
 	
 	/**
 	 * Constructs an edge from the input vertices. The position parameter is
@@ -58,7 +61,7 @@ public class Edge implements Simplex,Comparable<Edge>{
 		this.position = position;
 		this.hasVanished = false;
 		
-		this.incidentTriangles = new HashMap<String,Triangle>();
+		this.incidentTriangles = new LongMap<Triangle>();
 	}
 	
 	public Edge(Vertex firstVertex, Vertex secondVertex, double heightvalue, int position)
@@ -94,7 +97,7 @@ public class Edge implements Simplex,Comparable<Edge>{
 		this.position = position;
 		this.hasVanished = false;
 		
-		this.incidentTriangles = new HashMap<String,Triangle>();
+		this.incidentTriangles = new LongMap<Triangle>();
 	}
 		
 	/**
@@ -127,7 +130,18 @@ public class Edge implements Simplex,Comparable<Edge>{
 	 */
 	public Vertex getFirstVertex()
 	{
-		return this.firstVertex.getVertex();
+		/* The side of a union whose incidences are not moved keeps referring to the perished vertex until here, */
+		/* unless a trial of the forest could still restore it */
+		if(this.firstVertex.hasVanished())
+		{
+			Vertex v = this.firstVertex.getVertex();
+			if(!v.getForest().inTrial())
+			{
+				this.firstVertex = v;
+			}
+			return v;
+		}
+		return this.firstVertex;
 	}
 	
 	/**
@@ -136,7 +150,25 @@ public class Edge implements Simplex,Comparable<Edge>{
 	 */
 	public Vertex getSecondVertex()
 	{
-		return this.secondVertex.getVertex();
+		if(this.secondVertex.hasVanished())
+		{
+			Vertex v = this.secondVertex.getVertex();
+			if(!v.getForest().inTrial())
+			{
+				this.secondVertex = v;
+			}
+			return v;
+		}
+		return this.secondVertex;
+	}
+	
+	/**
+	 * Accessor method
+	 * @return the unique identifier given to this edge on construction
+	 */
+	public int getPosition()
+	{
+		return this.position;
 	}
 	
 	/**
@@ -180,8 +212,7 @@ public class Edge implements Simplex,Comparable<Edge>{
 	 */
 	public boolean incidentToTriangle(Triangle t)
 	{
-		t.computeIndexRep();
-		return this.incidentTriangles.containsKey(t.toString());
+		return this.incidentTriangles.containsKey(this.apexKey(t));
 	}
 		
 	/**
@@ -189,39 +220,205 @@ public class Edge implements Simplex,Comparable<Edge>{
 	 * @param t
 	 */
 	public void addIncidentTriangle(Triangle t)
+	{
+		this.incidentTriangles.put(this.apexKey(t), t);
+		this.windowValid = false;
+		this.slackValid = false;
+	}
+	
+	/**
+	 * Returns the incident triangles map, keyed by apex, for LinkCondition and the loops which walk it by slot.
+	 * @return LongMap
+	 */
+	LongMap<Triangle> triangleMap()
+	{
+		return this.incidentTriangles;
+	}
+	
+	/**
+	 * Forgets the triangles incident to this edge once it has vanished or is no longer held in memory. The
+	 * window is not recomputed afterwards.
+	 */
+	void clearIncidentTriangles()
+	{
+		this.incidentTriangles = new LongMap<Triangle>();
+	}
+	
+	/**
+	 * Returns the key of the parameter in the incident triangles map, the index of the vertex of the triangle
+	 * which is not in this edge.
+	 * @param t
+	 * @return long
+	 */
+	private long apexKey(Triangle t)
 	{
 		t.computeIndexRep();
-		this.incidentTriangles.put(t.toString(), t);
+		int first = this.getFirstVertex().getKey();
+		int second = this.getSecondVertex().getKey();
+		int a = t.getFirstVertex().getKey();
+		if(a != first && a != second)
+		{
+			return a;
+		}
+		int b = t.getSecondVertex().getKey();
+		if(b != first && b != second)
+		{
+			return b;
+		}
+		int c = t.getThirdVertex().getKey();
+		if(c != first && c != second)
+		{
+			return c;
+		}
+		throw new IllegalArgumentException("The triangle does not contain a vertex outside of this edge!");
 	}
 	
 	/**
-	 * Computes the ending time of this edges window.
-	 * @return
+	 * Determines if a triangle incident to this edge, which has not vanished, has the parameter as
+	 * its third vertex.
+	 * @param v
+	 * @return boolean
 	 */
-	public double getEndingTime()
+	public boolean hasApex(Vertex v)
 	{
-		double max = Double.NEGATIVE_INFINITY;
-		for(String s : this.incidentTriangles.keySet())
+		for(Triangle t : this.incidentTriangles.values())
 		{
-			if(this.incidentTriangles.get(s).getHeightValue() > max)
+			if(!t.hasVanished() && t.containsVertex(v))
 			{
-				max = this.incidentTriangles.get(s).getHeightValue();
+				return true;
 			}
 		}
-		return max;
+		return false;
+	}
+	
+	/**
+	 * Returns the key under which the edge between the two parameters is stored in the incidence maps.
+	 * @param v
+	 * @param w
+	 * @return long
+	 */
+	public static long key(Vertex v, Vertex w)
+	{
+		return Edge.key(v.getKey(), w.getKey());
 	}
 	
 	/**
-	 * Computes the starting time of this edges window. 
+	 * Packs the two vertex keys, see Vertex.getKey, into a single key, the smaller one in the upper half. The
+	 * key does not depend on the order of the parameters. Until the first union the vertex keys are the indices.
+	 * @param a
+	 * @param b
+	 * @return long
+	 */
+	public static long key(int a, int b)
+	{
+		if(a < b)
+		{
+			return ((long)a << 32) | (b & 0xffffffffL);
+		}
+		return ((long)b << 32) | (a & 0xffffffffL);
+	}
+	
+	/**
+	 * Returns the key of this edge in the incidence maps, the key of its vertices.
+	 * @return long
+	 */
+	public long getKey()
+	{
+		return Edge.key(this.getFirstVertex(), this.getSecondVertex());
+	}
+	
+	/**
+	 * Returns the ending time of this edges window, the maximum height value of the triangles that
+	 * have ever been incident to it.
+	 * @return
+	 */
+	public double getEndingTime()
+	{
+		if(!this.windowValid)
+		{
+			this.computeWindow();
+		}
+		return this.endingTime;
+	}
+	
+	/**
+	 * Returns the starting time of this edges window, the minimum height value of its vertices. It is not
+	 * cached, since a union changes the height of the vertices of every edge of the star it merges.
 	 * @return
 	 */
 	public double getStartingTime()
 	{
-		if(this.getFirstVertex().getHeightValue() < this.getSecondVertex().getHeightValue())
+		return Math.min(this.getFirstVertex().getHeightValue(), this.getSecondVertex().getHeightValue());
+	}
+	
+	/**
+	 * Discards the cached window of this edge. Must be called whenever the incident triangles of the edge
+	 * change.
+	 */
+	public void invalidateWindow()
+	{
+		this.windowValid = false;
+		this.slackValid = false;
+	}
+	
+	/**
+	 * Returns the epsilon slack of this edge, the greatest height difference isEpsilonSat compares against
+	 * epsilon: between this edge and its perishing vertex, and between every incident triangle which has not
+	 * vanished and its perishing mirror.
+	 * @return double
+	 */
+	public double getEpsilonSlack()
+	{
+		if(!this.slackValid)
+		{
+			this.computeSlack();
+		}
+		return this.slack;
+	}
+	
+	/**
+	 * Discards the cached epsilon slack of this edge. Must be called whenever its vertices or its incident
+	 * triangles change, or the window of an edge of one of those triangles, which decides the mirrors.
+	 */
+	public void invalidateSlack()
+	{
+		this.slackValid = false;
+	}
+	
+	private void computeSlack()
+	{
+		double max = this.getHeightValue() - this.getPerishingVertex().getHeightValue();
+		LongMap<Triangle> triangles = this.incidentTriangles;
+		for(int i = 0; i < triangles.slots(); i++)
+		{
+			Triangle t = triangles.valueAt(i);
+			if(t != null && !t.hasVanished())
+			{
+				double gap = t.getHeightValue() - t.getPerishingMirror(this).getHeightValue();
+				if(gap > max)
+				{
+					max = gap;
+				}
+			}
+		}
+		this.slack = max;
+		this.slackValid = true;
+	}
+	
+	private void computeWindow()
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		LongMap<Triangle> triangles = this.incidentTriangles;
+		for(int i = 0; i < triangles.slots(); i++)
 		{
-			return this.getFirstVertex().getHeightValue();
+			Triangle t = triangles.valueAt(i);
+			if(t != null && t.getHeightValue() > max)
+			{
+				max = t.getHeightValue();
+			}
 		}
-		return this.getSecondVertex().getHeightValue();
+		this.endingTime = max;
+		this.windowValid = true;
 	}
 		
 	@Override
@@ -232,6 +429,7 @@ public class Edge implements Simplex,Comparable<Edge>{
 	@Override
 	public String toString()
 	{
+		this.computeIndexRep();
 		return this.index[0] + "," + this.index[1];
 	}
 
@@ -246,13 +444,9 @@ public class Edge implements Simplex,Comparable<Edge>{
 				//return this.toString().compareTo(arg0.toString());
 			}
 		}else {
-			double retFlag = this.getEndingTime() - arg0.getEndingTime();
-			if(retFlag < 0)
-			{
-				return -1;
-			}else if(retFlag > 0) {
-				return 1;
-			}else {
+			if(this.getEndingTime() < arg0.getEndingTime()) {return -1;}
+			else if(this.getEndingTime() > arg0.getEndingTime()) {return 1;}
+			else {
 				return 0;
 			}
 		}
@@ -302,7 +496,7 @@ public class Edge implements Simplex,Comparable<Edge>{
 
 	/** 
 	 * Ensures that the edge to be contracted meets the link condition, thereby preserving the topology
-	 * of the manifold pre and post contraction.
+	 * of the manifold pre and post contraction, see LinkCondition.
 	 * 
 	 * It is assumed that this edge is viable, and thereby has two incident triangles.
 	 * 
@@ -310,91 +504,19 @@ public class Edge implements Simplex,Comparable<Edge>{
 	 */
 	public boolean linkCondition()
 	{
-		Vertex vert;
-		Vertex mirrorVert;
-		
-		if(this.getFirstVertex().numberOfEdges() < this.getSecondVertex().numberOfEdges())
-		{
-			vert = this.getFirstVertex().getVertex();
-			mirrorVert = this.getSecondVertex().getVertex();
-		}else {
-			vert = this.getSecondVertex().getVertex();
-			mirrorVert = this.getFirstVertex().getVertex();
-		}
-		
-		for(Edge e : vert.getIncidentEdges())
-		{
-			Vertex otherVert = e.getOtherVertex(vert).getVertex();
-			if(otherVert.equals(mirrorVert) || e.hasVanished())
-			{
-				// Vanishing one doesn't matter. 
-				continue;
-			}
-			
-			//So at this point we know that the other vert is not a mirror
-			//Need to check if the mirrored vert contains it. 
-			
-			if(mirrorVert.adjacentToEdge(otherVert.toString()))
-			{
-				return false;
-			}
-		}
-		
-		/* So at this point we know that there is not triangle that is getting filled in */
-		/* We don't know about mirrored triangles, however */
-		/* If there is a pair of mirrored triangles, then that means collapsing them */
-		/* Into a single triangle results in destroying a 2-cycle */
-		/* Hence, check for mirrored triangles */
-		
-		for(Triangle t : vert.getIncidentTriangles())
-		{
-			/* Skip vanishing triangles */
-			if(!t.containsVertex(mirrorVert))
-			{
-				int[] index = t.getIndex();
-				for(int i = 0; i<index.length; i++)
-				{
-					if(index[i] == vert.getVertex().getIndex())
-					{
-						index[i] = mirrorVert.getVertex().getIndex();
-					}
-				}
-				Arrays.sort(index);
-				String newKey = index[0] + "-" + index[1] + "-" + index[2];
-				if(mirrorVert.adjacentToTriangle(newKey))
-				{
-					return false;
-					/* Does not pass the link condition: destroying a 2-cycle! */
-				}
-			}
-		}
-		
-		/* At this point, there are no mirrored triangles which cause collapse */
-		
-		return true;
+		return LinkCondition.test(this);
 	}
-
+	
 	/**
 	 * Determines if this edge is epsilon admissible. Assumes that this edge meets the link condition for
-	 * two manifolds.
+	 * two manifolds. Compares against the cached epsilon slack, which is only recomputed after a union
+	 * around the edge.
 	 * @param epsilon
 	 * @return boolean
 	 */
 	public boolean isEpsilonSat(double epsilon)
 	{
-		if(this.getHeightValue() - this.getPerishingVertex().getHeightValue() > epsilon)
-		{
-			return false;
-		}
-		
-		for(Triangle t : this.incidentTriangles.values())
-		{
-			if(!t.hasVanished() && t.getHeightValue() - t.getPerishingMirror(this).getHeightValue() > epsilon)
-			{
-				return false;
-			}
-		}
-		return true;
+		return this.getEpsilonSlack() <= epsilon;
 	}
 	
 	/**
@@ -0,0 +1,396 @@
+package contract;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the persistence diagram in dimension zero of the filtration of a complex by height: every vertex is
+ * born at its height and every edge enters at its height, Edge.getHeightValue, which is at least the height of
+ * both of its vertices. The edges are processed in ascending order of height with a UnionFind, tracking the
+ * oldest vertex of every component. An edge joining two components kills the younger one, the one whose oldest
+ * vertex is higher, by the elder rule. Triangles do not affect dimension zero and are ignored.
+ *
+ * Only the edges of a minimum spanning forest can kill a component, so with several threads the vertices are
+ * split into blocks of consecutive indices and the forest of the edges inside every block is computed in
+ * parallel, on disjoint parts of the same UnionFind. The diagram is then computed from the edges of these partial
+ * forests and the edges between blocks alone. Meshes whose vertices are numbered row by row, as the ones of
+ * TerrainGenerator, have few edges between blocks. The diagram does not depend on the number of threads.
+ */
+public class H0Persistence {
+
+	/* Blocks per thread, to even out blocks with more edges than others */
+	private static final int BLOCKS_PER_THREAD = 4;
+	/* Below this number of vertices per block the forests are not worth computing in parallel */
+	private static final int MIN_BLOCK = 1 << 14;
+
+	private double[] vertexHeights;
+	private int[] edgeVertices;
+	private double[] edgeHeights;
+	private UnionFind components;
+	/* oldest[r] is the oldest vertex of the component with root r */
+	private int[] oldest;
+	/* Results of pair */
+	private PersistenceDiagram diagram;
+	private boolean[] negative;
+
+	/**
+	 * @param vertexHeights
+	 * @param edgeVertices the vertex indices of the edges, two per edge
+	 * @param edgeHeights the edge heights, NaN where the height is taken from the vertices
+	 */
+	private H0Persistence(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights)
+	{
+		if(edgeVertices.length != 2*edgeHeights.length)
+		{
+			throw new IllegalArgumentException("Every edge needs two vertices and a height!");
+		}
+		this.vertexHeights = vertexHeights;
+		this.edgeVertices = edgeVertices;
+		this.edgeHeights = edgeHeights;
+		for(int e = 0; e < edgeHeights.length; e++)
+		{
+			int a = edgeVertices[2*e];
+			int b = edgeVertices[2*e+1];
+			if(a < 0 || a >= vertexHeights.length || b < 0 || b >= vertexHeights.length)
+			{
+				throw new IndexOutOfBoundsException("Edge " + e + " has a vertex out of range!");
+			}
+			if(Double.isNaN(edgeHeights[e]))
+			{
+				if(this.edgeHeights == edgeHeights)
+				{
+					this.edgeHeights = edgeHeights.clone();
+				}
+				this.edgeHeights[e] = Math.max(vertexHeights[a], vertexHeights[b]);
+			}
+		}
+		this.components = new UnionFind(vertexHeights.length);
+		this.oldest = new int[vertexHeights.length];
+	}
+
+	/**
+	 * Computes the diagram of the vertices and edges given as columns, as read by BinaryMesh.
+	 * @param vertexHeights
+	 * @param edgeVertices the vertex indices of the edges, two per edge
+	 * @param edgeHeights the edge heights, NaN where the height is taken from the vertices
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, int threads)
+	{
+		return H0Persistence.run(vertexHeights, edgeVertices, edgeHeights, null, threads).diagram;
+	}
+
+	/**
+	 * Returns the edges which kill a component, including the ones of zero persistence. Ordered by height and
+	 * then by index, as PersistenceSort.order orders them, these are the edges of the unique minimum spanning
+	 * forest, so they do not depend on the number of threads. H1Persistence leaves them out of its reduction.
+	 * @param order the edges in that order if the caller has sorted them already, used on a single thread, or null
+	 */
+	static boolean[] negativeEdges(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, int[] order, int threads)
+	{
+		return H0Persistence.run(vertexHeights, edgeVertices, edgeHeights, order, threads).negative;
+	}
+
+	private static H0Persistence run(double[] vertexHeights, int[] edgeVertices, double[] edgeHeights, int[] order, int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		H0Persistence persistence = new H0Persistence(vertexHeights, edgeVertices, edgeHeights);
+		int blocks = (int)Math.min((long)threads * BLOCKS_PER_THREAD, vertexHeights.length / MIN_BLOCK);
+		if(threads == 1 || blocks < 2)
+		{
+			persistence.pair(order != null ? order : PersistenceSort.order(persistence.edgeHeights));
+			return persistence;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			persistence.pair(persistence.forestCandidates(pool, blocks));
+		}finally {
+			pool.shutdown();
+		}
+		return persistence;
+	}
+
+	/**
+	 * Computes the diagram of the vertices and edges in the lists which have not vanished, such as the complex
+	 * read by Driver before or after it is contracted.
+	 * @param vertices
+	 * @param edges
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(List<Vertex> vertices, List<Edge> edges, int threads)
+	{
+		return H0Persistence.compute(new LiveSimplices(vertices, edges, null).update(), threads);
+	}
+
+	/**
+	 * Computes the diagram of the live vertices and edges, which have to be updated.
+	 * @param live
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 */
+	static PersistenceDiagram compute(LiveSimplices live, int threads)
+	{
+		ComplexColumns columns = ComplexColumns.of(live);
+		return H0Persistence.compute(columns.vertexHeights, columns.edgeVertices, columns.edgeHeights, threads);
+	}
+
+	/**
+	 * Computes the diagram of a CompactComplex.
+	 * @param complex
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(CompactComplex complex, int threads)
+	{
+		double[] vertexHeights = new double[complex.getVertexCount()];
+		for(int v = 0; v < vertexHeights.length; v++)
+		{
+			vertexHeights[v] = complex.getVertexHeight(v);
+		}
+		int[] edgeVertices = new int[2*complex.getEdgeCount()];
+		double[] edgeHeights = new double[complex.getEdgeCount()];
+		for(int e = 0; e < edgeHeights.length; e++)
+		{
+			edgeVertices[2*e] = complex.getFirstVertex(e);
+			edgeVertices[2*e+1] = complex.getSecondVertex(e);
+			edgeHeights[e] = complex.getEdgeHeight(e);
+		}
+		return H0Persistence.compute(vertexHeights, edgeVertices, edgeHeights, threads);
+	}
+
+	/**
+	 * Computes the diagram of the part of the complex of a CompactContraction which has not vanished.
+	 * @param contraction
+	 * @param complex the complex the contraction was constructed from
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(CompactContraction contraction, CompactComplex complex, int threads)
+	{
+		ComplexColumns columns = ComplexColumns.of(contraction, complex);
+		return H0Persistence.compute(columns.vertexHeights, columns.edgeVertices, columns.edgeHeights, threads);
+	}
+
+	/**
+	 * Computes the diagram of a binary mesh, such as the input of Driver or the contracted complex it writes
+	 * with Driver.setBinaryOutput. The text files of a contracted complex hold no heights.
+	 * @param filename
+	 * @param threads the number of threads to compute the partial forests on
+	 * @return PersistenceDiagram
+	 * @throws IOException
+	 */
+	public static PersistenceDiagram compute(String filename, int threads) throws IOException
+	{
+		try(BinaryMesh mesh = new BinaryMesh(filename)) {
+			return H0Persistence.compute(mesh.readVertexHeights(), mesh.readEdges(), mesh.readEdgeHeights(), threads);
+		}
+	}
+
+	/**
+	 * Returns the oldest of two vertices, the lower one, or the one of smaller index if they are equally high.
+	 */
+	private int elder(int a, int b)
+	{
+		double ha = this.vertexHeights[a];
+		double hb = this.vertexHeights[b];
+		return ha < hb || (ha == hb && a < b) ? a : b;
+	}
+
+	/**
+	 * Runs the edges through the union find in the given order, which must be ascending by height, and pairs
+	 * the components they kill.
+	 */
+	private void pair(int[] order)
+	{
+		UnionFind components = this.components;
+		components.reset();
+		for(int v = 0; v < this.oldest.length; v++)
+		{
+			this.oldest[v] = v;
+		}
+		double[] births = new double[this.vertexHeights.length];
+		double[] deaths = new double[this.vertexHeights.length];
+		this.negative = new boolean[this.edgeHeights.length];
+		int pairs = 0;
+		for(int e : order)
+		{
+			int x = components.find(this.edgeVertices[2*e]);
+			int y = components.find(this.edgeVertices[2*e+1]);
+			if(x == y)
+			{
+				continue;
+			}
+			int elder = this.elder(this.oldest[x], this.oldest[y]);
+			int younger = elder == this.oldest[x] ? this.oldest[y] : this.oldest[x];
+			double height = this.edgeHeights[e];
+			if(height > this.vertexHeights[younger])
+			{
+				births[pairs] = this.vertexHeights[younger];
+				deaths[pairs++] = height;
+			}
+			this.oldest[components.union(x, y)] = elder;
+			this.negative[e] = true;
+		}
+		for(int v = 0; v < this.oldest.length; v++)
+		{
+			if(components.find(v) == v)
+			{
+				births[pairs] = this.vertexHeights[this.oldest[v]];
+				deaths[pairs++] = Double.POSITIVE_INFINITY;
+			}
+		}
+		this.diagram = new PersistenceDiagram(0, Arrays.copyOf(births, pairs), Arrays.copyOf(deaths, pairs));
+	}
+
+	/**
+	 * Computes the minimum spanning forests of the edges inside the blocks in parallel and returns these forest
+	 * edges together with the edges between blocks, ascending by height.
+	 */
+	private int[] forestCandidates(ForkJoinPool pool, int blocks)
+	{
+		int blockSize = (this.vertexHeights.length + blocks - 1) / blocks;
+		int edgeCount = this.edgeHeights.length;
+		/* Bucket the edges inside blocks by block, after the edges between blocks in bucket blocks */
+		int[] start = new int[blocks + 2];
+		for(int e = 0; e < edgeCount; e++)
+		{
+			start[this.blockOf(e, blockSize, blocks) + 1]++;
+		}
+		for(int b = 0; b <= blocks; b++)
+		{
+			start[b+1] += start[b];
+		}
+		int[] bucketed = new int[edgeCount];
+		int[] fill = start.clone();
+		for(int e = 0; e < edgeCount; e++)
+		{
+			bucketed[fill[this.blockOf(e, blockSize, blocks)]++] = e;
+		}
+		boolean[] candidate = new boolean[edgeCount];
+		for(int i = start[blocks]; i < edgeCount; i++)
+		{
+			candidate[bucketed[i]] = true;
+		}
+		this.components.reset();
+		pool.invoke(new Forest(this, 0, blocks, start, bucketed, candidate));
+
+		int candidates = 0;
+		for(boolean c : candidate)
+		{
+			if(c)
+			{
+				candidates++;
+			}
+		}
+		int[] edges = new int[candidates];
+		double[] keys = new double[candidates];
+		int i = 0;
+		for(int e = 0; e < edgeCount; e++)
+		{
+			if(candidate[e])
+			{
+				keys[i] = this.edgeHeights[e];
+				edges[i++] = e;
+			}
+		}
+		int[] order = PersistenceSort.order(keys);
+		for(int j = 0; j < order.length; j++)
+		{
+			order[j] = edges[order[j]];
+		}
+		return order;
+	}
+
+	/**
+	 * @return the block both vertices of the edge lie in, or blocks if they lie in different blocks
+	 */
+	private int blockOf(int e, int blockSize, int blocks)
+	{
+		int a = this.edgeVertices[2*e] / blockSize;
+		return a == this.edgeVertices[2*e+1] / blockSize ? a : blocks;
+	}
+
+	/**
+	 * Marks the edges of the minimum spanning forest of the given bucket of edges as candidates. The union find
+	 * is only touched at the vertices of the block, so blocks can be processed concurrently.
+	 */
+	private void forest(int[] bucketed, int from, int to, boolean[] candidate)
+	{
+		double[] keys = new double[to - from];
+		for(int i = from; i < to; i++)
+		{
+			keys[i - from] = this.edgeHeights[bucketed[i]];
+		}
+		for(int i : PersistenceSort.order(keys))
+		{
+			int e = bucketed[from + i];
+			if(this.components.union(this.edgeVertices[2*e], this.edgeVertices[2*e+1]) >= 0)
+			{
+				candidate[e] = true;
+			}
+		}
+	}
+
+	private static class Forest extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private H0Persistence persistence;
+		private int from;
+		private int to;
+		private int[] start;
+		private int[] bucketed;
+		private boolean[] candidate;
+
+		Forest(H0Persistence persistence, int from, int to, int[] start, int[] bucketed, boolean[] candidate)
+		{
+			this.persistence = persistence;
+			this.from = from;
+			this.to = to;
+			this.start = start;
+			this.bucketed = bucketed;
+			this.candidate = candidate;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to - this.from == 1)
+			{
+				this.persistence.forest(this.bucketed, this.start[this.from], this.start[this.from + 1], this.candidate);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new Forest(this.persistence, this.from, middle, this.start, this.bucketed, this.candidate),
+					new Forest(this.persistence, middle, this.to, this.start, this.bucketed, this.candidate));
+		}
+	}
+
+	/**
+	 * Prints the diagram of a binary mesh and optionally writes it, see PersistenceDiagram.write.
+	 * Arguments: mesh [diagram] [threads]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.out.println("Usage: H0Persistence mesh [diagram] [threads]");
+			return;
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long initial = System.currentTimeMillis();
+		PersistenceDiagram diagram = H0Persistence.compute(args[0], threads);
+		System.out.println(diagram + "\tTime: " + (System.currentTimeMillis() - initial) + " ms");
+		if(args.length > 1)
+		{
+			diagram.write(args[1]);
+		}
+	}
+}
@@ -0,0 +1,407 @@
+package contract;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the persistence diagram in dimension one of the filtration of a complex by height, where edges and
+ * triangles enter at their heights, Edge.getHeightValue and Triangle.getHeightValue. Edges are ordered by height
+ * and then by index, triangles likewise. An edge is born with a cycle unless it joins two components, and a
+ * triangle kills the youngest cycle its boundary completes.
+ *
+ * The pairs are found by reducing a boundary matrix over Z/2. The edges which join components are found first
+ * with H0Persistence, and since they can never be born with a cycle they are left out of the reduction: their
+ * rows are removed from the boundary matrix of the triangles (compression), or their columns are skipped in the
+ * coboundary matrix of the edges (clearing). The homology reduction processes the triangles in ascending order,
+ * adding reduced columns to a column until its lowest edge is not the pivot of an earlier column. The cohomology
+ * reduction processes the edges in descending order the same way, with the earliest triangle of a column as its
+ * pivot; its columns tend to need fewer additions. Both find the same pairs.
+ *
+ * A reduced column is only kept if it is the pivot of a pair, since no other column is ever added. Kept columns
+ * are stored back to back in one int array, compressed sparse columns, found by their pivot.
+ */
+public class H1Persistence {
+
+	private CompactComplex complex;
+	private int threads;
+	/* The edges and triangles in filtration order, and the rank of every edge and triangle in it */
+	private int[] edgeOrder;
+	private int[] edgeRank;
+	private int[] triangleOrder;
+	private int[] triangleRank;
+	private boolean[] negative;
+	/* Reduced columns by pivot: entries start[p] to start[p]+length[p]-1, or length[p] == 0 if p is no pivot */
+	private int[] start;
+	private int[] length;
+	private int[] entries;
+	private int used;
+	/* The column being reduced and scratch space to add a column to it */
+	private int[] column;
+	private int columnLength;
+	private int[] scratch;
+
+	private H1Persistence(CompactComplex complex, int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		this.complex = complex;
+		this.threads = threads;
+	}
+
+	/**
+	 * Computes the diagram of a CompactComplex.
+	 * @param complex
+	 * @param threads the number of threads to find the edges joining components on, see H0Persistence
+	 * @param cohomology whether to reduce the coboundary matrix instead of the boundary matrix
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(CompactComplex complex, int threads, boolean cohomology)
+	{
+		H1Persistence persistence = new H1Persistence(complex, threads);
+		return cohomology ? persistence.reduceCoboundary() : persistence.reduceBoundary();
+	}
+
+	/**
+	 * Computes the diagram of the simplices in the lists which have not vanished, such as the complex read by
+	 * Driver before or after it is contracted.
+	 * @param vertices
+	 * @param edges
+	 * @param triangles
+	 * @param threads the number of threads to build the complex on and to find the edges joining components on
+	 * @param cohomology whether to reduce the coboundary matrix instead of the boundary matrix
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(List<Vertex> vertices, List<Edge> edges, List<Triangle> triangles, int threads, boolean cohomology)
+	{
+		return H1Persistence.compute(ComplexColumns.of(vertices, edges, triangles).toCompact(threads), threads, cohomology);
+	}
+
+	/**
+	 * Computes the diagram of the live simplices, which have to be updated.
+	 * @param live
+	 * @param threads the number of threads to build the complex on and to find the edges joining components on
+	 * @param cohomology whether to reduce the coboundary matrix instead of the boundary matrix
+	 * @return PersistenceDiagram
+	 */
+	static PersistenceDiagram compute(LiveSimplices live, int threads, boolean cohomology)
+	{
+		return H1Persistence.compute(ComplexColumns.of(live).toCompact(threads), threads, cohomology);
+	}
+
+	/**
+	 * Computes the diagram of the part of the complex of a CompactContraction which has not vanished.
+	 * @param contraction
+	 * @param complex the complex the contraction was constructed from
+	 * @param threads the number of threads to build the complex on and to find the edges joining components on
+	 * @param cohomology whether to reduce the coboundary matrix instead of the boundary matrix
+	 * @return PersistenceDiagram
+	 */
+	public static PersistenceDiagram compute(CompactContraction contraction, CompactComplex complex, int threads, boolean cohomology)
+	{
+		return H1Persistence.compute(ComplexColumns.of(contraction, complex).toCompact(threads), threads, cohomology);
+	}
+
+	/**
+	 * Computes the diagram of a binary mesh, such as the input of Driver or the contracted complex it writes
+	 * with Driver.setBinaryOutput.
+	 * @param filename
+	 * @param threads the number of threads to read the mesh on and to find the edges joining components on
+	 * @param cohomology whether to reduce the coboundary matrix instead of the boundary matrix
+	 * @return PersistenceDiagram
+	 * @throws IOException
+	 */
+	public static PersistenceDiagram compute(String filename, int threads, boolean cohomology) throws IOException
+	{
+		return H1Persistence.compute(BinaryMesh.readCompact(filename, threads), threads, cohomology);
+	}
+
+	/**
+	 * Orders the edges and triangles and finds the edges joining components.
+	 */
+	private void prepare()
+	{
+		CompactComplex complex = this.complex;
+		double[] vertexHeights = new double[complex.getVertexCount()];
+		for(int v = 0; v < vertexHeights.length; v++)
+		{
+			vertexHeights[v] = complex.getVertexHeight(v);
+		}
+		int[] edgeVertices = new int[2*complex.getEdgeCount()];
+		double[] edgeHeights = new double[complex.getEdgeCount()];
+		for(int e = 0; e < edgeHeights.length; e++)
+		{
+			edgeVertices[2*e] = complex.getFirstVertex(e);
+			edgeVertices[2*e+1] = complex.getSecondVertex(e);
+			edgeHeights[e] = complex.getEdgeHeight(e);
+		}
+		this.edgeOrder = PersistenceSort.order(edgeHeights);
+		this.negative = H0Persistence.negativeEdges(vertexHeights, edgeVertices, edgeHeights, this.edgeOrder, this.threads);
+		this.edgeRank = H1Persistence.ranks(this.edgeOrder);
+		double[] triangleHeights = new double[complex.getTriangleCount()];
+		for(int t = 0; t < triangleHeights.length; t++)
+		{
+			triangleHeights[t] = complex.getTriangleHeight(t);
+		}
+		this.triangleOrder = PersistenceSort.order(triangleHeights);
+		this.triangleRank = H1Persistence.ranks(this.triangleOrder);
+	}
+
+	private static int[] ranks(int[] order)
+	{
+		int[] rank = new int[order.length];
+		for(int i = 0; i < order.length; i++)
+		{
+			rank[order[i]] = i;
+		}
+		return rank;
+	}
+
+	/**
+	 * Allocates the column store for the given number of pivots.
+	 */
+	private void allocate(int pivots)
+	{
+		this.start = new int[pivots];
+		this.length = new int[pivots];
+		this.entries = new int[Math.max(16, pivots)];
+		this.used = 0;
+		this.column = new int[16];
+		this.scratch = new int[16];
+	}
+
+	/**
+	 * Reduces the boundary matrix of the triangles, with the rows of the edges joining components removed.
+	 */
+	private PersistenceDiagram reduceBoundary()
+	{
+		this.prepare();
+		CompactComplex complex = this.complex;
+		int edgeCount = complex.getEdgeCount();
+		this.allocate(edgeCount);
+		DiagramBuilder diagram = new DiagramBuilder();
+		boolean[] paired = new boolean[edgeCount];
+		for(int t : this.triangleOrder)
+		{
+			this.columnLength = 0;
+			for(int i = 0; i < 3; i++)
+			{
+				int e = complex.getTriangleEdge(t, i);
+				if(!this.negative[e])
+				{
+					this.column[this.columnLength++] = this.edgeRank[e];
+				}
+			}
+			H1Persistence.sortSmall(this.column, this.columnLength);
+			/* The pivot is the latest edge of the column */
+			while(this.columnLength > 0 && this.length[this.column[this.columnLength - 1]] > 0)
+			{
+				this.add(this.column[this.columnLength - 1]);
+			}
+			if(this.columnLength > 0)
+			{
+				int pivot = this.column[this.columnLength - 1];
+				this.store(pivot);
+				int e = this.edgeOrder[pivot];
+				paired[e] = true;
+				diagram.add(complex.getEdgeHeight(e), complex.getTriangleHeight(t));
+			}
+		}
+		for(int e = 0; e < edgeCount; e++)
+		{
+			if(!this.negative[e] && !paired[e])
+			{
+				diagram.add(complex.getEdgeHeight(e), Double.POSITIVE_INFINITY);
+			}
+		}
+		return diagram.build();
+	}
+
+	/**
+	 * Reduces the coboundary matrix of the edges which do not join components, clearing the others.
+	 */
+	private PersistenceDiagram reduceCoboundary()
+	{
+		this.prepare();
+		CompactComplex complex = this.complex;
+		IntAdjacency edgeTriangles = complex.getEdgeTriangles();
+		this.allocate(complex.getTriangleCount());
+		DiagramBuilder diagram = new DiagramBuilder();
+		for(int r = this.edgeOrder.length - 1; r >= 0; r--)
+		{
+			int e = this.edgeOrder[r];
+			if(this.negative[e])
+			{
+				continue;
+			}
+			this.columnLength = 0;
+			for(int i = 0; i < edgeTriangles.size(e); i++)
+			{
+				this.ensureColumn(this.columnLength + 1);
+				this.column[this.columnLength++] = this.triangleRank[edgeTriangles.get(e, i)];
+			}
+			H1Persistence.sortSmall(this.column, this.columnLength);
+			/* The pivot is the earliest triangle of the column */
+			while(this.columnLength > 0 && this.length[this.column[0]] > 0)
+			{
+				this.add(this.column[0]);
+			}
+			if(this.columnLength > 0)
+			{
+				int pivot = this.column[0];
+				this.store(pivot);
+				diagram.add(complex.getEdgeHeight(e), complex.getTriangleHeight(this.triangleOrder[pivot]));
+			}else {
+				diagram.add(complex.getEdgeHeight(e), Double.POSITIVE_INFINITY);
+			}
+		}
+		return diagram.build();
+	}
+
+	/**
+	 * Insertion sort, for the few entries of an unreduced column.
+	 */
+	private static void sortSmall(int[] values, int length)
+	{
+		for(int i = 1; i < length; i++)
+		{
+			int value = values[i];
+			int j = i - 1;
+			while(j >= 0 && values[j] > value)
+			{
+				values[j+1] = values[j];
+				j--;
+			}
+			values[j+1] = value;
+		}
+	}
+
+	private void ensureColumn(int size)
+	{
+		if(this.column.length < size)
+		{
+			this.column = Arrays.copyOf(this.column, Math.max(size, 2*this.column.length));
+		}
+	}
+
+	/**
+	 * Adds the stored column with the given pivot to the column being reduced, merging the sorted entries and
+	 * cancelling the ones they share.
+	 */
+	private void add(int pivot)
+	{
+		int from = this.start[pivot];
+		int to = from + this.length[pivot];
+		if(this.scratch.length < this.columnLength + to - from)
+		{
+			this.scratch = new int[Math.max(this.columnLength + to - from, 2*this.scratch.length)];
+		}
+		int[] column = this.column;
+		int[] entries = this.entries;
+		int[] merged = this.scratch;
+		int i = 0;
+		int j = from;
+		int k = 0;
+		while(i < this.columnLength && j < to)
+		{
+			if(column[i] < entries[j])
+			{
+				merged[k++] = column[i++];
+			}else if(column[i] > entries[j]) {
+				merged[k++] = entries[j++];
+			}else {
+				i++;
+				j++;
+			}
+		}
+		while(i < this.columnLength)
+		{
+			merged[k++] = column[i++];
+		}
+		while(j < to)
+		{
+			merged[k++] = entries[j++];
+		}
+		this.scratch = column;
+		this.column = merged;
+		this.columnLength = k;
+	}
+
+	/**
+	 * Appends the reduced column to the store under its pivot.
+	 */
+	private void store(int pivot)
+	{
+		if(this.entries.length - this.used < this.columnLength)
+		{
+			long size = Math.max((long)this.used + this.columnLength, 2L*this.entries.length);
+			if(size > Integer.MAX_VALUE - 8)
+			{
+				size = Math.max((long)this.used + this.columnLength, Integer.MAX_VALUE - 8);
+				if(size > Integer.MAX_VALUE - 8)
+				{
+					throw new IllegalStateException("The reduced columns do not fit in an array!");
+				}
+			}
+			this.entries = Arrays.copyOf(this.entries, (int)size);
+		}
+		System.arraycopy(this.column, 0, this.entries, this.used, this.columnLength);
+		this.start[pivot] = this.used;
+		this.length[pivot] = this.columnLength;
+		this.used += this.columnLength;
+	}
+
+	/**
+	 * Collects the pairs of positive persistence.
+	 */
+	private static class DiagramBuilder {
+
+		private double[] births = new double[16];
+		private double[] deaths = new double[16];
+		private int size;
+
+		void add(double birth, double death)
+		{
+			if(death <= birth)
+			{
+				return;
+			}
+			if(this.size == this.births.length)
+			{
+				this.births = Arrays.copyOf(this.births, 2*this.size);
+				this.deaths = Arrays.copyOf(this.deaths, 2*this.size);
+			}
+			this.births[this.size] = birth;
+			this.deaths[this.size++] = death;
+		}
+
+		PersistenceDiagram build()
+		{
+			return new PersistenceDiagram(1, Arrays.copyOf(this.births, this.size), Arrays.copyOf(this.deaths, this.size));
+		}
+	}
+
+	/**
+	 * Prints the diagram of a binary mesh and optionally writes it, see PersistenceDiagram.write.
+	 * Arguments: mesh [diagram] [threads] [homology|cohomology]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1)
+		{
+			System.out.println("Usage: H1Persistence mesh [diagram] [threads] [homology|cohomology]");
+			return;
+		}
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		boolean cohomology = args.length <= 3 || args[3].equals("cohomology");
+		long initial = System.currentTimeMillis();
+		PersistenceDiagram diagram = H1Persistence.compute(args[0], threads, cohomology);
+		System.out.println(diagram + "\tTime: " + (System.currentTimeMillis() - initial) + " ms");
+		if(args.length > 1)
+		{
+			diagram.write(args[1]);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * Adjacency lists over integer ids. The lists read at load time are stored in compressed sparse row
+ * form and are never modified. Ids appended afterwards go into a small overflow array per row, so
+ * only the rows touched by a contraction allocate anything.
+ */
+class IntAdjacency {
+
+	private int[] offsets;
+	private int[] data;
+	private int[][] extra;
+	private int[] extraSize;
+
+	/**
+	 * Wraps an existing compressed sparse row structure. The arrays are shared, not copied.
+	 * @param offsets row i occupies data[offsets[i]] to data[offsets[i+1]-1]
+	 * @param data
+	 */
+	public IntAdjacency(int[] offsets, int[] data)
+	{
+		this.offsets = offsets;
+		this.data = data;
+		this.extra = new int[offsets.length - 1][];
+		this.extraSize = new int[offsets.length - 1];
+	}
+
+	/**
+	 * Builds the compressed sparse row structure mapping each row to the elements that reference it.
+	 * Element i/stride references row rows[i], so an edge array with stride 2 gives the edges incident
+	 * to every vertex.
+	 * @param rowCount
+	 * @param rows
+	 * @param length number of entries of rows that are in use
+	 * @param stride
+	 * @return IntAdjacency
+	 */
+	public static IntAdjacency build(int rowCount, int[] rows, int length, int stride)
+	{
+		int[] offsets = new int[rowCount + 1];
+		for(int i = 0; i < length; i++)
+		{
+			offsets[rows[i] + 1]++;
+		}
+		for(int i = 0; i < rowCount; i++)
+		{
+			offsets[i + 1] += offsets[i];
+		}
+		int[] fill = Arrays.copyOf(offsets, rowCount);
+		int[] data = new int[length];
+		for(int i = 0; i < length; i++)
+		{
+			data[fill[rows[i]]++] = i / stride;
+		}
+		return new IntAdjacency(offsets, data);
+	}
+
+	/**
+	 * Returns a structure sharing the compressed rows of this one, but with empty overflow lists.
+	 * @return IntAdjacency
+	 */
+	public IntAdjacency copy()
+	{
+		return new IntAdjacency(this.offsets, this.data);
+	}
+
+	/**
+	 * @param row
+	 * @return the number of ids stored for the row
+	 */
+	public int size(int row)
+	{
+		return this.offsets[row + 1] - this.offsets[row] + this.extraSize[row];
+	}
+
+	/**
+	 * @param row
+	 * @param i
+	 * @return the i'th id stored for the row
+	 */
+	public int get(int row, int i)
+	{
+		int base = this.offsets[row + 1] - this.offsets[row];
+		if(i < base)
+		{
+			return this.data[this.offsets[row] + i];
+		}
+		return this.extra[row][i - base];
+	}
+
+	/**
+	 * Appends an id to the row.
+	 * @param row
+	 * @param value
+	 */
+	public void add(int row, int value)
+	{
+		int[] list = this.extra[row];
+		if(list == null)
+		{
+			list = this.extra[row] = new int[4];
+		}else if(this.extraSize[row] == list.length) {
+			list = this.extra[row] = Arrays.copyOf(list, list.length * 2);
+		}
+		list[this.extraSize[row]++] = value;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int rows()
+	{
+		return this.extraSize.length;
+	}
+}
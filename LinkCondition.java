@@ -0,0 +1,124 @@
+package contract;
+
+/**
+ * The link condition of Edge.linkCondition, evaluated on the vertex keys and the slots of the incidence maps.
+ * Every common neighbour of the two vertices is found with one probe of the map of the vertex with more edges
+ * per edge of the other, and every test is made on the keys of the representatives, so a test takes time
+ * linear in the smaller degree, allocates nothing and never compares Vertex objects.
+ *
+ * The result is exactly that of the check on the vertices and their iterators it replaced, which
+ * LinkConditionBenchmark keeps as linkConditionReference, including on the vanished simplices that remain in the
+ * maps: an entry counts as an edge to a neighbour whenever its key is present, as adjacentToEdge has it, and
+ * only triangles which have not vanished count as apexes and mirrors.
+ */
+final class LinkCondition {
+
+	private LinkCondition()
+	{
+	}
+
+	/**
+	 * Determines if contracting the edge keeps the link condition.
+	 * @param edge
+	 * @return boolean
+	 */
+	static boolean test(Edge edge)
+	{
+		Vertex vert;
+		Vertex mirrorVert;
+		if(edge.getFirstVertex().numberOfEdges() < edge.getSecondVertex().numberOfEdges())
+		{
+			vert = edge.getFirstVertex();
+			mirrorVert = edge.getSecondVertex();
+		}else {
+			vert = edge.getSecondVertex();
+			mirrorVert = edge.getFirstVertex();
+		}
+		int v = vert.getKey();
+		int mirror = mirrorVert.getKey();
+		LongMap<Edge> mirrorEdges = mirrorVert.edgeMap();
+
+		/* A common neighbour is only allowed if it is the apex of a triangle incident to the edge */
+		LongMap<Edge> edges = vert.edgeMap();
+		for(int i = 0; i < edges.slots(); i++)
+		{
+			Edge e = edges.valueAt(i);
+			if(e == null || e.hasVanished())
+			{
+				continue;
+			}
+			int first = e.getFirstVertex().getKey();
+			int other = first == v ? e.getSecondVertex().getKey() : first;
+			if(other != mirror && mirrorEdges.containsKey(Edge.key(mirror, other)) && !LinkCondition.hasApex(edge, other))
+			{
+				return false;
+			}
+		}
+
+		/* A triangle of vert whose mirror is a triangle of mirrorVert would collapse a 2-cycle */
+		LongMap<Triangle> triangles = vert.triangleMap();
+		for(int i = 0; i < triangles.slots(); i++)
+		{
+			Triangle t = triangles.valueAt(i);
+			/* hasVanished moves the vertices of the triangle to their representatives */
+			if(t == null || t.hasVanished())
+			{
+				continue;
+			}
+			int a = t.getFirstVertex().getKey();
+			int b = t.getSecondVertex().getKey();
+			int c = t.getThirdVertex().getKey();
+			if(a == mirror || b == mirror || c == mirror)
+			{
+				continue;
+			}
+			int first = a == v ? b : a;
+			int second = c == v ? b : c;
+			if(mirrorEdges.containsKey(Edge.key(mirror, first)) && mirrorEdges.containsKey(Edge.key(mirror, second))
+					&& LinkCondition.hasTriangle(mirrorVert, first, second))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if a triangle of the edge which has not vanished contains the vertex with the given key.
+	 */
+	private static boolean hasApex(Edge edge, int apex)
+	{
+		LongMap<Triangle> triangles = edge.triangleMap();
+		for(int i = 0; i < triangles.slots(); i++)
+		{
+			Triangle t = triangles.valueAt(i);
+			if(t != null && !t.hasVanished() && LinkCondition.contains(t, apex))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if a triangle of the vertex which has not vanished contains the vertices with the given keys.
+	 */
+	private static boolean hasTriangle(Vertex vertex, int first, int second)
+	{
+		LongMap<Triangle> triangles = vertex.getVertex().triangleMap();
+		for(int i = 0; i < triangles.slots(); i++)
+		{
+			Triangle t = triangles.valueAt(i);
+			if(t != null && !t.hasVanished() && LinkCondition.contains(t, first) && LinkCondition.contains(t, second))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(Triangle t, int key)
+	{
+		return t.getFirstVertex().getKey() == key || t.getSecondVertex().getKey() == key || t.getThirdVertex().getKey() == key;
+	}
+}
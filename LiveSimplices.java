@@ -0,0 +1,122 @@
+package contract;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The simplices of the lists of a complex which have not vanished, as one bit per position in every list. Every
+ * bit starts set and update clears the bits of the simplices which have vanished since, visiting only the bits
+ * still set, so every level of Driver.contractSweep only pays for what is left of the complex. Driver writes the
+ * contracted complex and computes its diagrams straight from the bits, without copying the simplices left to
+ * lists of their own.
+ *
+ * The lists may be reordered, as PersistenceSort does with the edges, until the first update, but not after.
+ */
+class LiveSimplices {
+
+	private List<Vertex> vertices;
+	private List<Edge> edges;
+	private List<Triangle> triangles;
+	private BitSet liveVertices;
+	private BitSet liveEdges;
+	private BitSet liveTriangles;
+
+	/**
+	 * @param vertices null for none
+	 * @param edges null for none
+	 * @param triangles null for none
+	 */
+	LiveSimplices(List<Vertex> vertices, List<Edge> edges, List<Triangle> triangles)
+	{
+		this.vertices = vertices == null ? Collections.<Vertex>emptyList() : vertices;
+		this.edges = edges == null ? Collections.<Edge>emptyList() : edges;
+		this.triangles = triangles == null ? Collections.<Triangle>emptyList() : triangles;
+		this.liveVertices = new BitSet(this.vertices.size());
+		this.liveVertices.set(0, this.vertices.size());
+		this.liveEdges = new BitSet(this.edges.size());
+		this.liveEdges.set(0, this.edges.size());
+		this.liveTriangles = new BitSet(this.triangles.size());
+		this.liveTriangles.set(0, this.triangles.size());
+	}
+
+	/**
+	 * Clears the bits of the simplices which have vanished since the last update.
+	 * @return this
+	 */
+	LiveSimplices update()
+	{
+		LiveSimplices.clearVanished(this.vertices, this.liveVertices);
+		LiveSimplices.clearVanished(this.edges, this.liveEdges);
+		LiveSimplices.clearVanished(this.triangles, this.liveTriangles);
+		return this;
+	}
+
+	private static void clearVanished(List<? extends Simplex> simplices, BitSet live)
+	{
+		for(int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1))
+		{
+			if(simplices.get(i).hasVanished())
+			{
+				live.clear(i);
+			}
+		}
+	}
+
+	/**
+	 * @param from
+	 * @return the first position from the parameter on of a live vertex, or -1 if there is none
+	 */
+	int nextVertex(int from)
+	{
+		return this.liveVertices.nextSetBit(from);
+	}
+
+	/**
+	 * @param from
+	 * @return the first position from the parameter on of a live edge, or -1 if there is none
+	 */
+	int nextEdge(int from)
+	{
+		return this.liveEdges.nextSetBit(from);
+	}
+
+	/**
+	 * @param from
+	 * @return the first position from the parameter on of a live triangle, or -1 if there is none
+	 */
+	int nextTriangle(int from)
+	{
+		return this.liveTriangles.nextSetBit(from);
+	}
+
+	Vertex getVertex(int position)
+	{
+		return this.vertices.get(position);
+	}
+
+	Edge getEdge(int position)
+	{
+		return this.edges.get(position);
+	}
+
+	Triangle getTriangle(int position)
+	{
+		return this.triangles.get(position);
+	}
+
+	int getVertexCount()
+	{
+		return this.liveVertices.cardinality();
+	}
+
+	int getEdgeCount()
+	{
+		return this.liveEdges.cardinality();
+	}
+
+	int getTriangleCount()
+	{
+		return this.liveTriangles.cardinality();
+	}
+}
@@ -0,0 +1,279 @@
+package contract;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map from primitive long keys to non-null values. Uses open addressing with linear probing, so
+ * neither keys nor entries are boxed. Removal shifts the following entries back instead of leaving
+ * tombstones.
+ * @param <V>
+ */
+public class LongMap<V> {
+
+	private long[] keys;
+	/* A null value marks an empty slot */
+	private Object[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * Constructs an empty map with room for the given number of entries before it resizes.
+	 * @param expected
+	 */
+	public LongMap(int expected)
+	{
+		int capacity = 4;
+		while(capacity * 3 < expected * 4)
+		{
+			capacity <<= 1;
+		}
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		this.size = 0;
+	}
+
+	public LongMap()
+	{
+		this(3);
+	}
+
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+
+	private int slot(long key)
+	{
+		int i = LongMap.hash(key) & this.mask;
+		while(this.values[i] != null && this.keys[i] != key)
+		{
+			i = (i + 1) & this.mask;
+		}
+		return i;
+	}
+
+	/**
+	 * @param key
+	 * @return the value stored under the key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		return (V)this.values[this.slot(key)];
+	}
+
+	/**
+	 * @param key
+	 * @return if a value is stored under the key
+	 */
+	public boolean containsKey(long key)
+	{
+		return this.values[this.slot(key)] != null;
+	}
+
+	/**
+	 * Stores the value under the key, replacing any previous value.
+	 * @param key
+	 * @param value must not be null
+	 * @return the previous value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if(value == null)
+		{
+			throw new IllegalArgumentException("Cannot store a null value!");
+		}
+		int i = this.slot(key);
+		V old = (V)this.values[i];
+		this.keys[i] = key;
+		this.values[i] = value;
+		if(old == null && ++this.size * 4 > this.keys.length * 3)
+		{
+			this.resize(this.keys.length * 2);
+		}
+		return old;
+	}
+
+	/**
+	 * Removes the value stored under the key.
+	 * @param key
+	 * @return the removed value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int i = this.slot(key);
+		V old = (V)this.values[i];
+		if(old == null)
+		{
+			return null;
+		}
+		this.size--;
+		/* Shift back entries whose probe sequence passes through the freed slot */
+		int j = i;
+		while(true)
+		{
+			j = (j + 1) & this.mask;
+			if(this.values[j] == null)
+			{
+				break;
+			}
+			int home = LongMap.hash(this.keys[j]) & this.mask;
+			if(((j - home) & this.mask) >= ((j - i) & this.mask))
+			{
+				this.keys[i] = this.keys[j];
+				this.values[i] = this.values[j];
+				i = j;
+			}
+		}
+		this.values[i] = null;
+		return old;
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		for(int i = 0; i < oldKeys.length; i++)
+		{
+			if(oldValues[i] != null)
+			{
+				int j = this.slot(oldKeys[i]);
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * A test of the entries of a map, see removeIf.
+	 * @param <V>
+	 */
+	public interface EntryFilter<V> {
+		boolean test(long key, V value);
+	}
+
+	/**
+	 * Removes every entry which satisfies the filter, keeping the keys of the others.
+	 * @param filter
+	 * @return the number of entries removed
+	 */
+	public int removeIf(EntryFilter<? super V> filter)
+	{
+		long[] removed = new long[this.size];
+		int count = 0;
+		for(int i = 0; i < this.values.length; i++)
+		{
+			@SuppressWarnings("unchecked")
+			V value = (V)this.values[i];
+			if(value != null && filter.test(this.keys[i], value))
+			{
+				removed[count++] = this.keys[i];
+			}
+		}
+		for(int i = 0; i < count; i++)
+		{
+			this.remove(removed[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of slots, which together with keyAt and valueAt visits the entries without an iterator.
+	 * @return int
+	 */
+	int slots()
+	{
+		return this.values.length;
+	}
+
+	long keyAt(int slot)
+	{
+		return this.keys[slot];
+	}
+
+	/**
+	 * @param slot
+	 * @return the value in the slot, or null if it is empty
+	 */
+	@SuppressWarnings("unchecked")
+	V valueAt(int slot)
+	{
+		return (V)this.values[slot];
+	}
+
+	/**
+	 * Returns an unmodifiable view of the values of the map. The view must not be used while the map is modified.
+	 * @return Collection
+	 */
+	public Collection<V> values()
+	{
+		return new AbstractCollection<V>() {
+			@Override
+			public int size()
+			{
+				return LongMap.this.size;
+			}
+
+			@Override
+			public Iterator<V> iterator()
+			{
+				return LongMap.this.iterator();
+			}
+		};
+	}
+
+	private Iterator<V> iterator()
+	{
+		return new Iterator<V>() {
+			private int next = this.advance(0);
+
+			private int advance(int i)
+			{
+				while(i < LongMap.this.values.length && LongMap.this.values[i] == null)
+				{
+					i++;
+				}
+				return i;
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return this.next < LongMap.this.values.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public V next()
+			{
+				if(!this.hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				V value = (V)LongMap.this.values[this.next];
+				this.next = this.advance(this.next + 1);
+				return value;
+			}
+		};
+	}
+}
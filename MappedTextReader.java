@@ -0,0 +1,396 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a comma separated text file line by line from a memory mapping of the file, parsing integer and
+ * double fields directly from the mapped bytes. Unlike BufferedReader.readLine and String.split, no String
+ * is created per line or per field; a String is only built for a double which the fast path below cannot
+ * convert exactly, such as one with more than 15 significant digits.
+ *
+ * Fields are split as String.split(",") splits a line, so trailing empty fields are dropped. Blank lines are
+ * skipped, and a carriage return before the line feed is ignored. Files larger than the mapping window are
+ * mapped one window at a time, each ending at a line feed. A reader may also be limited to part of a file,
+ * so that the parts of a large file can be parsed concurrently.
+ */
+public class MappedTextReader implements Closeable {
+
+	private static final long WINDOW = 1L << 30;
+	/* Powers of ten which are exactly representable as doubles */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long fileSize;
+	private long windowStart;
+	private MappedByteBuffer buffer;
+	/* Bytes of the window that end in a complete line */
+	private int limit;
+	private int position;
+	private int[] fieldStart;
+	private int[] fieldEnd;
+	private int fieldCount;
+
+	/**
+	 * Opens the file for reading. The file must not be modified while it is read.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public MappedTextReader(String filename) throws IOException
+	{
+		this(filename, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Opens the part of the file between the given offsets for reading, see chunkBoundaries. The start must be
+	 * the start of a line and the end either the start of a line or past the end of the file.
+	 * @param filename
+	 * @param start
+	 * @param end
+	 * @throws IOException
+	 */
+	public MappedTextReader(String filename, long start, long end) throws IOException
+	{
+		this.file = new RandomAccessFile(filename, "r");
+		this.channel = this.file.getChannel();
+		this.fileSize = Math.min(end, this.channel.size());
+		this.windowStart = start;
+		this.limit = 0;
+		this.position = 0;
+		this.fieldStart = new int[8];
+		this.fieldEnd = new int[8];
+		this.fieldCount = 0;
+	}
+
+	/**
+	 * Splits the file into the given number of parts of about equal size, each starting at the start of a
+	 * line. Some parts may be empty.
+	 * @param filename
+	 * @param chunks
+	 * @return the chunks + 1 offsets delimiting the parts, the last one being the size of the file
+	 * @throws IOException
+	 */
+	public static long[] chunkBoundaries(String filename, int chunks) throws IOException
+	{
+		long[] boundaries = new long[chunks + 1];
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		FileChannel channel = file.getChannel();
+		long size = channel.size();
+		byte[] scan = new byte[4096];
+		for(int i = 1; i < chunks; i++)
+		{
+			long offset = Math.max(boundaries[i - 1], size / chunks * i);
+			/* Move to the start of the line containing the byte after offset - 1 */
+			boolean found = offset == 0;
+			while(!found && offset < size)
+			{
+				file.seek(offset - 1);
+				int read = file.read(scan);
+				if(read <= 0)
+				{
+					offset = size;
+					break;
+				}
+				for(int j = 0; j < read; j++)
+				{
+					if(scan[j] == '\n')
+					{
+						offset += j;
+						found = true;
+						break;
+					}
+				}
+				if(!found)
+				{
+					offset += read;
+				}
+			}
+			boundaries[i] = Math.min(offset, size);
+		}
+		boundaries[chunks] = size;
+		channel.close();
+		file.close();
+		return boundaries;
+	}
+
+	/**
+	 * Maps the window which follows the current one.
+	 * @return false at the end of the file
+	 */
+	private boolean nextWindow() throws IOException
+	{
+		long start = this.windowStart + this.limit;
+		if(start >= this.fileSize)
+		{
+			return false;
+		}
+		long size = Math.min(WINDOW, this.fileSize - start);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		this.windowStart = start;
+		this.limit = (int)size;
+		if(start + size < this.fileSize)
+		{
+			/* End the window after its last line feed, the rest is mapped again with the next window */
+			while(this.limit > 0 && this.buffer.get(this.limit - 1) != '\n')
+			{
+				this.limit--;
+			}
+			if(this.limit == 0)
+			{
+				throw new IOException("Line longer than " + WINDOW + " bytes at offset " + start + "!");
+			}
+		}
+		this.position = 0;
+		return true;
+	}
+
+	/**
+	 * Advances to the next line which is not blank.
+	 * @return false at the end of the file
+	 * @throws IOException
+	 */
+	public boolean nextLine() throws IOException
+	{
+		do {
+			if(this.position >= this.limit && !this.nextWindow())
+			{
+				this.fieldCount = 0;
+				return false;
+			}
+			int end = this.position;
+			while(end < this.limit && this.buffer.get(end) != '\n')
+			{
+				end++;
+			}
+			int next = end + 1;
+			if(end > this.position && this.buffer.get(end - 1) == '\r')
+			{
+				end--;
+			}
+			this.fieldCount = 0;
+			int start = this.position;
+			for(int i = start; i <= end; i++)
+			{
+				if(i == end || this.buffer.get(i) == ',')
+				{
+					this.addField(start, i);
+					start = i + 1;
+				}
+			}
+			while(this.fieldCount > 0 && this.fieldStart[this.fieldCount - 1] == this.fieldEnd[this.fieldCount - 1])
+			{
+				this.fieldCount--;
+			}
+			this.position = next;
+		}while(this.fieldCount == 0);
+		return true;
+	}
+
+	private void addField(int start, int end)
+	{
+		if(this.fieldCount == this.fieldStart.length)
+		{
+			this.fieldStart = Arrays.copyOf(this.fieldStart, 2*this.fieldCount);
+			this.fieldEnd = Arrays.copyOf(this.fieldEnd, 2*this.fieldCount);
+		}
+		this.fieldStart[this.fieldCount] = start;
+		this.fieldEnd[this.fieldCount] = end;
+		this.fieldCount++;
+	}
+
+	/**
+	 * @return the number of fields of the current line
+	 */
+	public int fieldCount()
+	{
+		return this.fieldCount;
+	}
+
+	/**
+	 * Parses a field of the current line as Integer.parseInt would.
+	 * @param field
+	 * @return int
+	 */
+	public int getInt(int field)
+	{
+		int start = this.trimStart(field);
+		int end = this.trimEnd(field, start);
+		int i = start;
+		boolean negative = false;
+		if(i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+'))
+		{
+			negative = this.buffer.get(i) == '-';
+			i++;
+		}
+		if(i == end)
+		{
+			throw this.formatError(field);
+		}
+		long value = 0;
+		for(; i < end; i++)
+		{
+			int digit = this.buffer.get(i) - '0';
+			if(digit < 0 || digit > 9)
+			{
+				throw this.formatError(field);
+			}
+			value = 10*value + digit;
+			if(value > (long)Integer.MAX_VALUE + 1)
+			{
+				throw this.formatError(field);
+			}
+		}
+		if(negative)
+		{
+			value = -value;
+		}
+		if(value > Integer.MAX_VALUE)
+		{
+			throw this.formatError(field);
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Parses a field of the current line as Double.parseDouble would.
+	 * @param field
+	 * @return double
+	 */
+	public double getDouble(int field)
+	{
+		int start = this.trimStart(field);
+		int end = this.trimEnd(field, start);
+		int i = start;
+		boolean negative = false;
+		if(i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+'))
+		{
+			negative = this.buffer.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int significant = 0;
+		int exponent = 0;
+		boolean point = false;
+		for(; i < end; i++)
+		{
+			byte b = this.buffer.get(i);
+			if(b >= '0' && b <= '9')
+			{
+				digits++;
+				if(mantissa != 0 || b != '0')
+				{
+					significant++;
+					mantissa = 10*mantissa + (b - '0');
+				}
+				if(point)
+				{
+					exponent--;
+				}
+			}else if(b == '.' && !point) {
+				point = true;
+			}else {
+				break;
+			}
+		}
+		if(digits > 0 && i < end && (this.buffer.get(i) == 'e' || this.buffer.get(i) == 'E'))
+		{
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+'))
+			{
+				negativeExponent = this.buffer.get(i) == '-';
+				i++;
+			}
+			int exponentStart = i;
+			int explicit = 0;
+			for(; i < end && this.buffer.get(i) >= '0' && this.buffer.get(i) <= '9' && explicit < 10000; i++)
+			{
+				explicit = 10*explicit + (this.buffer.get(i) - '0');
+			}
+			if(i == exponentStart)
+			{
+				return this.slowDouble(field, start, end);
+			}
+			exponent += negativeExponent ? -explicit : explicit;
+		}
+		if(i != end || digits == 0 || significant > 15)
+		{
+			return this.slowDouble(field, start, end);
+		}
+		double value;
+		if(mantissa == 0)
+		{
+			value = 0.0;
+		}else if(exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			/* Both factors are exact, so the product is correctly rounded */
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}else if(exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		}else {
+			return this.slowDouble(field, start, end);
+		}
+		return negative ? -value : value;
+	}
+
+	private double slowDouble(int field, int start, int end)
+	{
+		return Double.parseDouble(this.text(start, end));
+	}
+
+	private int trimStart(int field)
+	{
+		if(field < 0 || field >= this.fieldCount)
+		{
+			throw new IndexOutOfBoundsException("Line has no field " + field + "!");
+		}
+		int start = this.fieldStart[field];
+		while(start < this.fieldEnd[field] && (this.buffer.get(start) & 0xff) <= ' ')
+		{
+			start++;
+		}
+		return start;
+	}
+
+	private int trimEnd(int field, int start)
+	{
+		int end = this.fieldEnd[field];
+		while(end > start && (this.buffer.get(end - 1) & 0xff) <= ' ')
+		{
+			end--;
+		}
+		return end;
+	}
+
+	private String text(int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		for(int i = start; i < end; i++)
+		{
+			bytes[i - start] = this.buffer.get(i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	private NumberFormatException formatError(int field)
+	{
+		return new NumberFormatException("For input string: \"" + this.text(this.fieldStart[field], this.fieldEnd[field]) + "\"");
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		this.buffer = null;
+		this.channel.close();
+		this.file.close();
+	}
+}
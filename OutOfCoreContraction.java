@@ -0,0 +1,610 @@
+package contract;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Performs the iterations of Driver.contract on a binary mesh which does not have to fit in memory, streaming it
+ * in blocks of consecutive vertices. The meshes this is meant for, such as the ones TerrainGenerator writes, index
+ * their vertices so that consecutive vertices are close in the mesh, which keeps every block a band of the mesh
+ * with few edges to later blocks.
+ *
+ * The mesh is first read twice in chunks. The first pass finds the last block of every vertex, the greatest block
+ * of its neighbours and its own. The second pass sorts the edges and triangles into buckets by the block of their
+ * greatest vertex. Both are kept in RecordFiles, outside of the heap. A vertex has all its edges and triangles in
+ * memory once the bucket of its last block is loaded, and is complete from then on.
+ *
+ * Every step loads the vertices of the next block and the simplices of its bucket into the resident complex,
+ * which holds the simplices of earlier blocks that have not been written yet. The vertices that are not complete
+ * form the front; they are marked with Vertex.setBoundary, so Edge.isViable rejects every edge touching them and
+ * every contraction only changes complete simplices, as with the seams of TiledContraction. The resident edges
+ * are then contracted by the iterations of Driver.contract. Afterwards, the vertices more than HALO edges away
+ * from the front are evicted: they, and the edges and triangles that contain them, are appended to the
+ * contracted files and dropped from memory. The resident vertices next to an evicted one are sealed with
+ * Vertex.setBoundary for good, so no later contraction changes a simplex that was written. The last step evicts
+ * everything.
+ *
+ * The memory held is that of the resident complex, a few blocks and the band behind the front, and apart from
+ * the VertexForest of the mesh, a few bytes per vertex, does not depend on the size of the mesh. With a block at
+ * least as large as the mesh, the only step contracts exactly the edges Driver.contract does. Otherwise, the
+ * steps overlap in the band, so their iterations are added up and the bound of epsilon*iterations holds for the
+ * sum. The maximum number of iterations is a budget for the sum, as with Driver.contract: every step runs at
+ * most the iterations the steps before it left, and once they are spent the remaining blocks are only loaded
+ * and written.
+ */
+public class OutOfCoreContraction implements Closeable {
+
+	/* The number of edges between the front and the evicted vertices */
+	private static final int HALO = 2;
+	/* The number of simplices read from the mesh at once */
+	private static final int CHUNK = 1 << 20;
+	/* Edge records are two vertex indices and a height, triangle records three indices and a height */
+	private static final int EDGE_RECORD = 16;
+	private static final int TRIANGLE_RECORD = 20;
+
+	private BinaryMesh mesh;
+	private int blockSize;
+	private int blockCount;
+	/* Last block of every vertex, by index, or -1 once it has perished */
+	private RecordFile lastBlock;
+	/* Edge and triangle records by bucket, the bucket of block b starting at record edgeStart[b] */
+	private RecordFile edgeRecords;
+	private RecordFile triangleRecords;
+	private long[] edgeStart;
+	private long[] triangleStart;
+
+	/* The resident complex */
+	private VertexForest forest;
+	private ArrayList<Vertex> vertices;
+	private ArrayList<Edge> edges;
+	private ArrayList<Triangle> triangles;
+	/* The vertices which are not complete, by index */
+	private LongMap<Vertex> front;
+	private int iterations;
+	private int peakResident;
+
+	/**
+	 * Opens the mesh and sorts its edges and triangles into the buckets of the blocks.
+	 * @param filename a binary mesh, see BinaryMesh
+	 * @param blockSize the number of vertices of a block
+	 * @throws IOException
+	 */
+	public OutOfCoreContraction(String filename, int blockSize) throws IOException
+	{
+		if(blockSize < 1)
+		{
+			throw new IllegalArgumentException("A block must contain at least one vertex!");
+		}
+		this.mesh = new BinaryMesh(filename);
+		try {
+			this.blockSize = blockSize;
+			this.blockCount = Math.max(1, (int)(((long)this.mesh.getVertexCount() + blockSize - 1) / blockSize));
+			this.findLastBlocks();
+			this.fillBuckets();
+		}catch(IOException | RuntimeException e) {
+			this.close();
+			throw e;
+		}
+		this.forest = new VertexForest(this.mesh.getVertexCount());
+		this.vertices = new ArrayList<Vertex>();
+		this.edges = new ArrayList<Edge>();
+		this.triangles = new ArrayList<Triangle>();
+		this.front = new LongMap<Vertex>();
+	}
+
+	/**
+	 * The first pass: finds the last block of every vertex and counts the simplices of every bucket.
+	 */
+	private void findLastBlocks() throws IOException
+	{
+		int vertexCount = this.mesh.getVertexCount();
+		this.lastBlock = new RecordFile(vertexCount, 4);
+		for(int v = 0; v < vertexCount; v++)
+		{
+			this.lastBlock.putInt(v, 0, v / this.blockSize);
+		}
+		this.edgeStart = new long[this.blockCount + 1];
+		for(int from = 0; from < this.mesh.getEdgeCount(); from += CHUNK)
+		{
+			int[] ends = this.mesh.readEdges(from, Math.min(this.mesh.getEdgeCount(), from + CHUNK));
+			for(int i = 0; i < ends.length; i += 2)
+			{
+				int first = this.block(ends[i]);
+				int second = this.block(ends[i+1]);
+				this.edgeStart[Math.max(first, second) + 1]++;
+				if(this.lastBlock.getInt(ends[i], 0) < second)
+				{
+					this.lastBlock.putInt(ends[i], 0, second);
+				}
+				if(this.lastBlock.getInt(ends[i+1], 0) < first)
+				{
+					this.lastBlock.putInt(ends[i+1], 0, first);
+				}
+			}
+		}
+		this.triangleStart = new long[this.blockCount + 1];
+		for(int from = 0; from < this.mesh.getTriangleCount(); from += CHUNK)
+		{
+			int[] corners = this.mesh.readTriangles(from, Math.min(this.mesh.getTriangleCount(), from + CHUNK));
+			for(int i = 0; i < corners.length; i += 3)
+			{
+				this.triangleStart[this.block(Math.max(corners[i], Math.max(corners[i+1], corners[i+2]))) + 1]++;
+			}
+		}
+		for(int b = 0; b < this.blockCount; b++)
+		{
+			this.edgeStart[b+1] += this.edgeStart[b];
+			this.triangleStart[b+1] += this.triangleStart[b];
+		}
+	}
+
+	/**
+	 * The second pass: writes the records of the simplices into their buckets, in file order within a bucket.
+	 */
+	private void fillBuckets() throws IOException
+	{
+		this.edgeRecords = new RecordFile(this.mesh.getEdgeCount(), EDGE_RECORD);
+		long[] next = Arrays.copyOf(this.edgeStart, this.blockCount);
+		for(int from = 0; from < this.mesh.getEdgeCount(); from += CHUNK)
+		{
+			int to = Math.min(this.mesh.getEdgeCount(), from + CHUNK);
+			int[] ends = this.mesh.readEdges(from, to);
+			double[] heights = this.mesh.readEdgeHeights(from, to);
+			for(int e = 0; e < heights.length; e++)
+			{
+				long record = next[this.block(Math.max(ends[2*e], ends[2*e+1]))]++;
+				this.edgeRecords.putInt(record, 0, ends[2*e]);
+				this.edgeRecords.putInt(record, 4, ends[2*e+1]);
+				this.edgeRecords.putDouble(record, 8, heights[e]);
+			}
+		}
+		this.triangleRecords = new RecordFile(this.mesh.getTriangleCount(), TRIANGLE_RECORD);
+		next = Arrays.copyOf(this.triangleStart, this.blockCount);
+		for(int from = 0; from < this.mesh.getTriangleCount(); from += CHUNK)
+		{
+			int to = Math.min(this.mesh.getTriangleCount(), from + CHUNK);
+			int[] corners = this.mesh.readTriangles(from, to);
+			double[] heights = this.mesh.readTriangleHeights(from, to);
+			for(int t = 0; t < heights.length; t++)
+			{
+				long record = next[this.block(Math.max(corners[3*t], Math.max(corners[3*t+1], corners[3*t+2])))]++;
+				this.triangleRecords.putInt(record, 0, corners[3*t]);
+				this.triangleRecords.putInt(record, 4, corners[3*t+1]);
+				this.triangleRecords.putInt(record, 8, corners[3*t+2]);
+				this.triangleRecords.putDouble(record, 12, heights[t]);
+			}
+		}
+	}
+
+	private int block(int vertex)
+	{
+		if(vertex < 0 || vertex >= this.mesh.getVertexCount())
+		{
+			throw new IllegalStateException("The mesh refers to vertex " + vertex + " of " + this.mesh.getVertexCount() + "!");
+		}
+		return vertex / this.blockSize;
+	}
+
+	/**
+	 * Contracts the mesh block by block, writing the contracted complex to the text files as Driver.writeVertices,
+	 * writeEdges and writeTriangles do, though not in the order of the mesh.
+	 * @param epsilon
+	 * @param maxIts the maximum number of iterations, added up over the steps, or -1 for no limit
+	 * @param maxContractions the maximum number of edges to contract, or -1 for no limit
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @return the number of edges contracted
+	 * @throws IOException
+	 */
+	public int contract(double epsilon, int maxIts, int maxContractions, String vertexFileName, String edgeFileName, String triangleFileName) throws IOException
+	{
+		Edge.setPersistenceSort();
+		int contracted = 0;
+		try(BufferedWriter vertexWriter = new BufferedWriter(new FileWriter(vertexFileName));
+				BufferedWriter edgeWriter = new BufferedWriter(new FileWriter(edgeFileName));
+				BufferedWriter triangleWriter = new BufferedWriter(new FileWriter(triangleFileName))) {
+			for(int b = 0; b < this.blockCount; b++)
+			{
+				this.load(b);
+				this.peakResident = Math.max(this.peakResident, this.vertices.size() + this.edges.size() + this.triangles.size());
+				/* The iterations never exceed the budget, so they are only equal to it once it is spent */
+				if(contracted != maxContractions && this.iterations != maxIts)
+				{
+					contracted += this.contractResident(epsilon, maxIts < 0 ? -1 : maxIts - this.iterations,
+							maxContractions < 0 ? -1 : maxContractions - contracted);
+				}
+				this.evict(b == this.blockCount - 1, vertexWriter, edgeWriter, triangleWriter);
+			}
+		}
+		return contracted;
+	}
+
+	/**
+	 * Loads the vertices of the block and the simplices of its bucket, and updates the front.
+	 */
+	private void load(int b) throws IOException
+	{
+		int from = b * this.blockSize;
+		int to = Math.min(this.mesh.getVertexCount(), from + this.blockSize);
+		double[] heights = this.mesh.readVertexHeights(from, to);
+		Vertex[] block = new Vertex[to - from];
+		for(int v = from; v < to; v++)
+		{
+			block[v - from] = new Vertex(v, heights[v - from], this.forest);
+			this.vertices.add(block[v - from]);
+			if(this.lastBlock.getInt(v, 0) > b)
+			{
+				block[v - from].setBoundary();
+				this.front.put(v, block[v - from]);
+			}
+		}
+
+		long first = this.edgeStart[b];
+		int count = (int)(this.edgeStart[b+1] - first);
+		int position = Driver.reservePositions(count);
+		this.edges.ensureCapacity(this.edges.size() + count);
+		for(int e = 0; e < count; e++)
+		{
+			Vertex firstVertex = this.vertex(this.edgeRecords.getInt(first + e, 0), from, block);
+			Vertex secondVertex = this.vertex(this.edgeRecords.getInt(first + e, 4), from, block);
+			double height = this.edgeRecords.getDouble(first + e, 8);
+			if(Double.isNaN(height))
+			{
+				this.edges.add(new Edge(firstVertex, secondVertex, position + e));
+			}else {
+				this.edges.add(new Edge(firstVertex, secondVertex, height, position + e));
+			}
+		}
+
+		first = this.triangleStart[b];
+		count = (int)(this.triangleStart[b+1] - first);
+		int[] ints = new int[3];
+		this.triangles.ensureCapacity(this.triangles.size() + count);
+		for(int t = 0; t < count; t++)
+		{
+			ints[0] = this.triangleRecords.getInt(first + t, 0);
+			ints[1] = this.triangleRecords.getInt(first + t, 4);
+			ints[2] = this.triangleRecords.getInt(first + t, 8);
+			Arrays.sort(ints);
+			Vertex v0 = this.vertex(ints[0], from, block);
+			Vertex v1 = this.vertex(ints[1], from, block);
+			Vertex v2 = this.vertex(ints[2], from, block);
+			Edge firstEdge = OutOfCoreContraction.edge(v1, v2);
+			Edge secondEdge = OutOfCoreContraction.edge(v0, v2);
+			Edge thirdEdge = OutOfCoreContraction.edge(v0, v1);
+			double height = this.triangleRecords.getDouble(first + t, 12);
+			Triangle triangle;
+			if(Double.isNaN(height))
+			{
+				triangle = new Triangle(firstEdge, secondEdge, thirdEdge);
+			}else {
+				triangle = new Triangle(firstEdge, secondEdge, thirdEdge, height);
+			}
+			firstEdge.addIncidentTriangle(triangle);
+			secondEdge.addIncidentTriangle(triangle);
+			thirdEdge.addIncidentTriangle(triangle);
+			this.triangles.add(triangle);
+		}
+
+		/* The front vertices of earlier blocks whose last block this is are now complete */
+		ArrayList<Vertex> completed = new ArrayList<Vertex>();
+		for(Vertex v : this.front.values())
+		{
+			if(this.lastBlock.getInt(v.getIndex(), 0) == b)
+			{
+				completed.add(v);
+			}
+		}
+		for(Vertex v : completed)
+		{
+			this.front.remove(v.getIndex());
+			v.clearBoundary();
+		}
+	}
+
+	/**
+	 * Returns the vertex with the given index, which is either in the block starting at from or in the front.
+	 */
+	private Vertex vertex(int index, int from, Vertex[] block)
+	{
+		if(index >= from && index - from < block.length)
+		{
+			return block[index - from];
+		}
+		Vertex v = this.front.get(index);
+		if(v == null)
+		{
+			throw new IllegalStateException("Vertex " + index + " is not resident, its simplices are not in the buckets of its last block!");
+		}
+		return v;
+	}
+
+	/**
+	 * Returns the edge between two resident vertices. Neither has perished, since both are in the block or in
+	 * the front, so the edge has not vanished either.
+	 */
+	private static Edge edge(Vertex v, Vertex w)
+	{
+		long key = Edge.key(v, w);
+		for(Edge e : v.getIncidentEdges())
+		{
+			if(!e.hasVanished() && e.getKey() == key)
+			{
+				return e;
+			}
+		}
+		throw new IllegalStateException("There is no edge between " + v + " and " + w + "!");
+	}
+
+	/**
+	 * Runs the iterations of Driver.contract on the resident edges.
+	 * @param maxIts the iterations left of the budget, or -1 for no limit
+	 * @return the number of edges contracted
+	 */
+	private int contractResident(double epsilon, int maxIts, int limit)
+	{
+		PersistenceSort.sort(this.edges);
+		/* Edges are scheduled by their rank in the sorted list, looked up by position with a binary search */
+		/* The positions may span most of the mesh, since a vertex can stay next to the front for many steps */
+		long[] rankByPosition = new long[this.edges.size()];
+		double[] startingTimes = new double[this.edges.size()];
+		for(int i = 0; i < this.edges.size(); i++)
+		{
+			rankByPosition[i] = (long)this.edges.get(i).getPosition() << 32 | i;
+			startingTimes[i] = this.edges.get(i).getStartingTime();
+		}
+		Arrays.sort(rankByPosition);
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
+
+		int edgesContracted = 0;
+		int formerCount = -1;
+		int itCount = 0;
+		boolean flag = true;
+		while(edgesContracted - formerCount > 0 && itCount != maxIts && flag)
+		{
+			itCount++;
+			formerCount = edgesContracted;
+			double currentTime = Double.NEGATIVE_INFINITY;
+			for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+			{
+				Edge e = this.edges.get(i);
+				scheduler.deactivate(i);
+				if(e.isContractible(epsilon))
+				{
+					currentTime = e.getEndingTime();
+					int first = e.getFirstVertex().getIndex();
+					int second = e.getSecondVertex().getIndex();
+					e.contract();
+					edgesContracted++;
+					this.lastBlock.putInt(e.getFirstVertex().getIndex() == first ? second : first, 0, -1);
+					OutOfCoreContraction.touchStar(e.getFirstVertex(), scheduler, rankByPosition);
+				}
+
+				if(edgesContracted == limit)
+				{
+					flag = false;
+					break;
+				}
+			}
+		}
+		this.iterations += itCount;
+		return edgesContracted;
+	}
+
+	/**
+	 * Schedules every edge which has an endpoint in the closed star of the survivor, as Driver.touchStar does.
+	 * @param rankByPosition the position of every resident edge in the upper half and its rank in the lower
+	 * half, sorted
+	 */
+	private static void touchStar(Vertex survivor, ContractionScheduler scheduler, long[] rankByPosition)
+	{
+		for(Edge e : survivor.getIncidentEdges())
+		{
+			if(!e.hasVanished())
+			{
+				scheduler.touch(OutOfCoreContraction.rank(e, rankByPosition), e.getStartingTime());
+				for(Edge f : e.getOtherVertex(survivor).getIncidentEdges())
+				{
+					if(!f.hasVanished())
+					{
+						scheduler.touch(OutOfCoreContraction.rank(f, rankByPosition), f.getStartingTime());
+					}
+				}
+			}
+		}
+	}
+
+	private static int rank(Edge e, long[] rankByPosition)
+	{
+		int i = Arrays.binarySearch(rankByPosition, (long)e.getPosition() << 32);
+		/* Unless the rank is 0, the search ends just before the entry of the edge */
+		return (int)rankByPosition[i >= 0 ? i : -i - 1];
+	}
+
+	/**
+	 * Writes and drops the vertices more than HALO edges away from the front, or all of them after the last
+	 * block, together with the simplices containing them, and seals the resident vertices next to them.
+	 */
+	private void evict(boolean last, BufferedWriter vertexWriter, BufferedWriter edgeWriter, BufferedWriter triangleWriter) throws IOException
+	{
+		LongMap<Vertex> kept = new LongMap<Vertex>();
+		if(!last)
+		{
+			ArrayList<Vertex> layer = new ArrayList<Vertex>();
+			for(Vertex v : this.front.values())
+			{
+				kept.put(v.getIndex(), v);
+				layer.add(v);
+			}
+			for(int depth = 0; depth < HALO; depth++)
+			{
+				ArrayList<Vertex> next = new ArrayList<Vertex>();
+				for(Vertex v : layer)
+				{
+					for(Edge e : v.getIncidentEdges())
+					{
+						if(!e.hasVanished())
+						{
+							Vertex w = e.getOtherVertex(v);
+							if(!kept.containsKey(w.getIndex()))
+							{
+								kept.put(w.getIndex(), w);
+								next.add(w);
+							}
+						}
+					}
+				}
+				layer = next;
+			}
+		}
+
+		LongMap<Vertex> evicted = new LongMap<Vertex>();
+		ArrayList<Vertex> residentVertices = new ArrayList<Vertex>(kept.size());
+		for(Vertex v : this.vertices)
+		{
+			if(v.hasVanished())
+			{
+				/* A perished vertex is never asked for its simplices again */
+				v.removeIncident((key, s) -> true);
+				v.release();
+			}else if(kept.containsKey(v.getIndex())) {
+				residentVertices.add(v);
+			}else {
+				evicted.put(v.getIndex(), v);
+				vertexWriter.write(v.toString()+"\n");
+			}
+		}
+
+		LongMap<Vertex> sealed = new LongMap<Vertex>();
+		ArrayList<Edge> residentEdges = new ArrayList<Edge>();
+		for(Edge e : this.edges)
+		{
+			if(!e.hasVanished() && !OutOfCoreContraction.touches(e, evicted))
+			{
+				residentEdges.add(e);
+				continue;
+			}
+			if(!e.hasVanished())
+			{
+				edgeWriter.write(e.toString()+"\n");
+				for(Vertex v : new Vertex[] {e.getFirstVertex(), e.getSecondVertex()})
+				{
+					if(!evicted.containsKey(v.getIndex()))
+					{
+						v.setBoundary();
+						sealed.put(v.getIndex(), v);
+					}
+				}
+			}
+			e.clearIncidentTriangles();
+		}
+
+		ArrayList<Triangle> residentTriangles = new ArrayList<Triangle>();
+		for(Triangle t : this.triangles)
+		{
+			if(t.hasVanished())
+			{
+				continue;
+			}
+			if(OutOfCoreContraction.touches(t, evicted))
+			{
+				triangleWriter.write(t.toString()+"\n");
+			}else {
+				residentTriangles.add(t);
+			}
+		}
+
+		/* Cuts every reference from the resident complex into the written one */
+		/* A sealed vertex is never contracted again, so it only needs its live simplices. Any other vertex keeps */
+		/* the vanished ones under live keys, the keys of resident vertices, which still mark mirrors for Vertex.union */
+		for(Vertex v : evicted.values())
+		{
+			v.removeIncident((key, s) -> true);
+		}
+		LongMap<Vertex> liveKeys = new LongMap<Vertex>(residentVertices.size());
+		for(Vertex v : residentVertices)
+		{
+			liveKeys.put(v.getKey(), v);
+		}
+		for(Vertex v : residentVertices)
+		{
+			if(sealed.containsKey(v.getIndex()))
+			{
+				v.removeIncident((key, s) -> s.hasVanished() || OutOfCoreContraction.touches(s, evicted));
+			}else {
+				v.removeIncident((key, s) -> s.hasVanished() && (!liveKeys.containsKey(key >>> 32) || !liveKeys.containsKey((int)key)));
+			}
+		}
+		/* Nothing resident refers to the evicted vertices any more */
+		for(Vertex v : evicted.values())
+		{
+			v.release();
+		}
+		this.vertices = residentVertices;
+		this.edges = residentEdges;
+		this.triangles = residentTriangles;
+	}
+
+	/**
+	 * Determines if the simplex, an edge or a triangle, has an evicted vertex.
+	 */
+	private static boolean touches(Simplex s, LongMap<Vertex> evicted)
+	{
+		if(s.getDimension() == 1)
+		{
+			Edge e = (Edge)s;
+			return evicted.containsKey(e.getFirstVertex().getIndex()) || evicted.containsKey(e.getSecondVertex().getIndex());
+		}
+		Triangle t = (Triangle)s;
+		return evicted.containsKey(t.getFirstVertex().getIndex()) || evicted.containsKey(t.getSecondVertex().getIndex())
+				|| evicted.containsKey(t.getThirdVertex().getIndex());
+	}
+
+	/**
+	 * @return the number of iterations, added up over the steps
+	 */
+	public int getIterations()
+	{
+		return this.iterations;
+	}
+
+	/**
+	 * @return the number of simplices of the mesh
+	 */
+	public int getInitialSimplices()
+	{
+		return this.mesh.getVertexCount() + this.mesh.getEdgeCount() + this.mesh.getTriangleCount();
+	}
+
+	/**
+	 * @return the greatest number of simplices held in memory after loading a block
+	 */
+	public int getPeakResident()
+	{
+		return this.peakResident;
+	}
+
+	/**
+	 * Closes the mesh and deletes the temporary files.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			this.mesh.close();
+		}finally {
+			for(RecordFile records : new RecordFile[] {this.lastBlock, this.edgeRecords, this.triangleRecords})
+			{
+				if(records != null)
+				{
+					records.close();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Performs the passes of Driver.contract with the contractions of a pass spread over a fork-join pool.
+ *
+ * A pass visits the edges in persistence order under the same window rule as Driver.contract. It proceeds in
+ * rounds. A round gathers the scheduled edges the pass would visit next if each of them were contracted, which
+ * is the next chain of edges each starting after the window of the previous one, and tests them with
+ * Edge.isContractible in parallel. From the contractible ones it picks, in rank order, a maximal set whose
+ * closed stars are pairwise disjoint, and contracts the picked edges in parallel. Two contractions whose closed
+ * stars share no vertex neither touch the same simplices nor change each others link or window, so they
+ * commute, and a round has the same effect as contracting its edges one after the other.
+ *
+ * The picked edges of a pass form a chain of disjoint windows in persistence order, so every pass is an
+ * epsilon perturbation just as an iteration of Driver.contract is, and the bound of epsilon*maxIts holds. The
+ * picks only depend on the batch size, which is fixed by the number of threads, so the output is deterministic
+ * for a given thread count. It generally differs from the output of Driver.contract, since an edge in the
+ * closed star of a picked edge which the gather passed over before the contraction waits for the next pass,
+ * instead of being tested right after the contraction.
+ *
+ * The edges that wait make a pass contract fewer edges than an iteration of Driver.contract, so a run takes
+ * more passes to converge: on the 316 x 316 terrain of the benchmarks with epsilon 5, about 7000 passes for any
+ * thread count against about 3100 iterations of Driver.contract. As the bound is epsilon times the passes run, a
+ * run to convergence is bounded about twice as loosely as one of Driver.contract, and with a limit on the
+ * passes the bound is the same but fewer edges are contracted. ParallelBenchmark reports the iterations and the
+ * bound of every run next to its time.
+ */
+public class ParallelContraction {
+
+	/* Candidates tested per round for every thread of the pool */
+	private static final int BATCH_PER_THREAD = 64;
+	/* Below this many edges a task is not split further */
+	private static final int GRAIN = 16;
+
+	private ArrayList<Edge> edges;
+	private int[] rankOfPosition;
+	private int basePosition;
+	private ContractionScheduler scheduler;
+	private ForkJoinPool pool;
+	private int batchSize;
+	/* Round in which each vertex, by index, was claimed by a picked edge */
+	private int[] claimed;
+	private int round;
+	private Edge[] candidates;
+	private int[] candidateRanks;
+	private boolean[] contractible;
+	private Edge[] picked;
+
+	/**
+	 * Constructs the parallel contraction of a complex.
+	 * @param vertexCount the number of vertices of the complex, which are indexed from 0
+	 * @param edges the edges of the complex, sorted with PersistenceSort
+	 * @param threads the parallelism of the fork-join pool
+	 */
+	public ParallelContraction(int vertexCount, ArrayList<Edge> edges, int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		this.edges = edges;
+		this.basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			this.basePosition = Math.min(this.basePosition, e.getPosition());
+		}
+		this.rankOfPosition = new int[edges.size()];
+		double[] startingTimes = new double[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			this.rankOfPosition[edges.get(i).getPosition() - this.basePosition] = i;
+			startingTimes[i] = edges.get(i).getStartingTime();
+		}
+		this.scheduler = new ContractionScheduler(startingTimes);
+		this.pool = new ForkJoinPool(threads);
+		this.batchSize = BATCH_PER_THREAD * threads;
+		this.claimed = new int[vertexCount];
+		this.round = 0;
+		this.candidates = new Edge[this.batchSize];
+		this.candidateRanks = new int[this.batchSize];
+		this.contractible = new boolean[this.batchSize];
+		this.picked = new Edge[this.batchSize];
+	}
+
+	/**
+	 * Performs one pass over the scheduled edges.
+	 * @param epsilon
+	 * @param limit the maximum number of edges to contract, or a negative value for no limit
+	 * @return the number of edges contracted
+	 */
+	public int pass(double epsilon, int limit)
+	{
+		int contracted = 0;
+		double currentTime = Double.NEGATIVE_INFINITY;
+		int rank = 0;
+		while(contracted != limit)
+		{
+			/* Gather the edges the pass would visit if every one of them turned out to be contractible */
+			int count = 0;
+			double windowEnd = currentTime;
+			for(int i = this.scheduler.next(rank, windowEnd); i >= 0 && count < this.batchSize; i = this.scheduler.next(i + 1, windowEnd))
+			{
+				Edge e = this.edges.get(i);
+				/* The slack is cached in the edge, so it is filled here rather than by the threads testing the edge */
+				if(!e.hasVanished() && e.isViable())
+				{
+					e.getEpsilonSlack();
+				}
+				this.candidates[count] = e;
+				this.candidateRanks[count] = i;
+				count++;
+				windowEnd = e.getEndingTime();
+			}
+			if(count == 0)
+			{
+				break;
+			}
+			this.pool.invoke(new Test(0, count, epsilon));
+
+			/* Every candidate starts after the window of the previous one, so any subset of them is a chain of windows */
+			this.round++;
+			int pickedCount = 0;
+			for(int c = 0; c < count && contracted + pickedCount != limit; c++)
+			{
+				Edge e = this.candidates[c];
+				if(!this.contractible[c])
+				{
+					this.scheduler.deactivate(this.candidateRanks[c]);
+					continue;
+				}
+				if(!this.claim(e))
+				{
+					/* The edge is in the closed star of a picked edge, which schedules it again */
+					continue;
+				}
+				this.scheduler.deactivate(this.candidateRanks[c]);
+				this.picked[pickedCount++] = e;
+				currentTime = e.getEndingTime();
+				/* Edges the gather skipped after this one may still pass the window rule */
+				rank = this.candidateRanks[c] + 1;
+			}
+			if(pickedCount == 0)
+			{
+				continue;
+			}
+
+			this.pool.invoke(new Contract(0, pickedCount));
+			for(int p = 0; p < pickedCount; p++)
+			{
+				/* Also recomputes the windows the contractions invalidated, before the next test reads them in parallel */
+				Driver.touchStar(this.picked[p].getFirstVertex(), this.scheduler, this.rankOfPosition, this.basePosition);
+				this.picked[p] = null;
+			}
+			contracted += pickedCount;
+		}
+		return contracted;
+	}
+
+	/**
+	 * Claims the closed star of the edge for the current round.
+	 * @param e
+	 * @return false, claiming nothing, if part of the closed star is already claimed
+	 */
+	private boolean claim(Edge e)
+	{
+		Vertex first = e.getFirstVertex();
+		Vertex second = e.getSecondVertex();
+		if(this.isClaimed(first) || this.isClaimed(second))
+		{
+			return false;
+		}
+		this.mark(first);
+		this.mark(second);
+		return true;
+	}
+
+	private boolean isClaimed(Vertex v)
+	{
+		if(this.claimed[v.getIndex()] == this.round)
+		{
+			return true;
+		}
+		for(Edge f : v.getIncidentEdges())
+		{
+			if(!f.hasVanished() && this.claimed[f.getOtherVertex(v).getIndex()] == this.round)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void mark(Vertex v)
+	{
+		this.claimed[v.getIndex()] = this.round;
+		for(Edge f : v.getIncidentEdges())
+		{
+			if(!f.hasVanished())
+			{
+				this.claimed[f.getOtherVertex(v).getIndex()] = this.round;
+			}
+		}
+	}
+
+	/**
+	 * Releases the threads of the pool.
+	 */
+	public void shutdown()
+	{
+		this.pool.shutdown();
+	}
+
+	/**
+	 * Tests candidates from..to-1 for contractibility. Only reads the complex.
+	 */
+	private class Test extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+		private double epsilon;
+
+		Test(int from, int to, double epsilon)
+		{
+			this.from = from;
+			this.to = to;
+			this.epsilon = epsilon;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to - this.from <= GRAIN)
+			{
+				for(int c = this.from; c < this.to; c++)
+				{
+					ParallelContraction.this.contractible[c] = ParallelContraction.this.candidates[c].isContractible(this.epsilon);
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new Test(this.from, middle, this.epsilon), new Test(middle, this.to, this.epsilon));
+		}
+	}
+
+	/**
+	 * Contracts picked edges from..to-1, whose closed stars are pairwise disjoint.
+	 */
+	private class Contract extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+
+		Contract(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to - this.from <= GRAIN)
+			{
+				for(int p = this.from; p < this.to; p++)
+				{
+					ParallelContraction.this.picked[p].contract();
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new Contract(this.from, middle), new Contract(middle, this.to));
+		}
+	}
+}
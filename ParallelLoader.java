@@ -0,0 +1,423 @@
+package contract;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads the Data, Edges and Triangles files on a thread pool. Every file is split at line boundaries into
+ * chunks, and the chunks of all three files are parsed concurrently with MappedTextReader, since parsing a
+ * line does not depend on the other files. The parsed columns are then assembled in file order, so that the
+ * loaded complex is identical to the one read by Driver.getUnstructuredVertices, getUnstructuredEdges and
+ * getUnstructuredTriangles, or by CompactComplex.read.
+ *
+ * Constructing an Edge or a Triangle registers it with its vertices and edges, so these objects are built on
+ * one thread in file order, which also assigns the edge positions in the order Driver gives them. The compact
+ * store is built in parallel throughout. BinaryMesh builds complexes from the columns of a binary mesh the same way.
+ */
+public class ParallelLoader {
+
+	/* Chunks per thread, so that threads finishing early take over the remaining chunks */
+	private static final int CHUNKS_PER_THREAD = 4;
+	/* Files are not split into chunks smaller than this many bytes */
+	private static final long MIN_CHUNK = 1 << 20;
+	/* Simplices per task when building the compact store */
+	private static final int GRAIN = 1 << 14;
+
+	private double[] vertexHeights;
+	/* Integer columns as given in the files, stride two for edges and three for triangles */
+	private int[] edgeColumns;
+	private int[] triangleColumns;
+	/* Optional height columns, NaN where the height is omitted */
+	private double[] edgeHeights;
+	private double[] triangleHeights;
+
+	/**
+	 * Constructs a loader from parsed columns. A NaN edge or triangle height means that the height is omitted.
+	 */
+	ParallelLoader(double[] vertexHeights, int[] edgeColumns, double[] edgeHeights, int[] triangleColumns, double[] triangleHeights)
+	{
+		this.vertexHeights = vertexHeights;
+		this.edgeColumns = edgeColumns;
+		this.edgeHeights = edgeHeights;
+		this.triangleColumns = triangleColumns;
+		this.triangleHeights = triangleHeights;
+	}
+
+	/**
+	 * Parses the three files on the pool.
+	 */
+	static ParallelLoader parse(ForkJoinPool pool, String vertexFileName, String edgeFileName, String triangleFileName) throws IOException
+	{
+		int chunksPerFile = pool.getParallelism() * CHUNKS_PER_THREAD;
+		List<Chunk> vertexChunks = ParallelLoader.split(vertexFileName, 0, chunksPerFile);
+		List<Chunk> edgeChunks = ParallelLoader.split(edgeFileName, 2, chunksPerFile);
+		List<Chunk> triangleChunks = ParallelLoader.split(triangleFileName, 3, chunksPerFile);
+		List<Chunk> all = new ArrayList<Chunk>();
+		all.addAll(vertexChunks);
+		all.addAll(edgeChunks);
+		all.addAll(triangleChunks);
+		for(Future<Void> f : pool.invokeAll(all))
+		{
+			ParallelLoader.await(f);
+		}
+		double[] vertexHeights = new double[ParallelLoader.count(vertexChunks)];
+		ParallelLoader.concatenate(vertexChunks, null, vertexHeights);
+		double[] edgeHeights = new double[ParallelLoader.count(edgeChunks)];
+		int[] edgeColumns = new int[2*edgeHeights.length];
+		ParallelLoader.concatenate(edgeChunks, edgeColumns, edgeHeights);
+		double[] triangleHeights = new double[ParallelLoader.count(triangleChunks)];
+		int[] triangleColumns = new int[3*triangleHeights.length];
+		ParallelLoader.concatenate(triangleChunks, triangleColumns, triangleHeights);
+		return new ParallelLoader(vertexHeights, edgeColumns, edgeHeights, triangleColumns, triangleHeights);
+	}
+
+	/**
+	 * Reads the complex into Vertex, Edge and Triangle objects, appending them to the lists in file order.
+	 * The files are parsed on the given number of threads.
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @param threads
+	 * @param vertices
+	 * @param edges
+	 * @param triangles
+	 * @throws IOException
+	 */
+	public static void readObjects(String vertexFileName, String edgeFileName, String triangleFileName, int threads,
+			ArrayList<Vertex> vertices, ArrayList<Edge> edges, ArrayList<Triangle> triangles) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			ParallelLoader.parse(pool, vertexFileName, edgeFileName, triangleFileName).buildObjects(pool, vertices, edges, triangles);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds the Vertex, Edge and Triangle objects of the columns, appending them to the lists in order.
+	 */
+	void buildObjects(ForkJoinPool pool, ArrayList<Vertex> vertexList, ArrayList<Edge> edges, ArrayList<Triangle> triangles)
+	{
+		double[] heights = this.vertexHeights;
+		Vertex[] vertices = new Vertex[heights.length];
+		VertexForest forest = new VertexForest(heights.length);
+		pool.invoke(new Range(0, vertices.length, (from, to) -> {
+			for(int v = from; v < to; v++)
+			{
+				vertices[v] = new Vertex(v, heights[v], forest);
+			}
+		}));
+		vertexList.addAll(Arrays.asList(vertices));
+
+		int edgeCount = this.edgeHeights.length;
+		int position = Driver.reservePositions(edgeCount);
+		LongMap<Edge> edgeMap = new LongMap<Edge>(edgeCount);
+		edges.ensureCapacity(edges.size() + edgeCount);
+		for(int e = 0; e < edgeCount; e++)
+		{
+			Vertex first = vertices[this.edgeColumns[2*e]];
+			Vertex second = vertices[this.edgeColumns[2*e+1]];
+			Edge newEdge;
+			if(Double.isNaN(this.edgeHeights[e]))
+			{
+				newEdge = new Edge(first, second, position + e);
+			}else {
+				newEdge = new Edge(first, second, this.edgeHeights[e], position + e);
+			}
+			edgeMap.put(newEdge.getKey(), newEdge);
+			edges.add(newEdge);
+		}
+
+		int[] ints = new int[3];
+		triangles.ensureCapacity(triangles.size() + this.triangleHeights.length);
+		for(int t = 0; t < this.triangleHeights.length; t++)
+		{
+			ints[0] = this.triangleColumns[3*t];
+			ints[1] = this.triangleColumns[3*t+1];
+			ints[2] = this.triangleColumns[3*t+2];
+			Arrays.sort(ints);
+			Edge firstEdge = edgeMap.get(Edge.key(ints[1], ints[2]));
+			Edge secondEdge = edgeMap.get(Edge.key(ints[0], ints[2]));
+			Edge thirdEdge = edgeMap.get(Edge.key(ints[0], ints[1]));
+			Triangle triangle;
+			if(Double.isNaN(this.triangleHeights[t]))
+			{
+				triangle = new Triangle(firstEdge, secondEdge, thirdEdge);
+			}else {
+				triangle = new Triangle(firstEdge, secondEdge, thirdEdge, this.triangleHeights[t]);
+			}
+			firstEdge.addIncidentTriangle(triangle);
+			secondEdge.addIncidentTriangle(triangle);
+			thirdEdge.addIncidentTriangle(triangle);
+			triangles.add(triangle);
+		}
+	}
+
+	/**
+	 * Reads the complex into a CompactComplex, identical to the one CompactComplex.read returns. The files
+	 * are parsed and the complex is built on the given number of threads.
+	 * @param vertexFileName
+	 * @param edgeFileName
+	 * @param triangleFileName
+	 * @param threads
+	 * @return CompactComplex
+	 * @throws IOException
+	 */
+	public static CompactComplex readCompact(String vertexFileName, String edgeFileName, String triangleFileName, int threads) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return ParallelLoader.parse(pool, vertexFileName, edgeFileName, triangleFileName).buildCompact(pool);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds the CompactComplex of the columns.
+	 */
+	CompactComplex buildCompact(ForkJoinPool pool)
+	{
+		double[] vertexHeights = this.vertexHeights;
+		int[] columns = this.edgeColumns;
+		double[] heights = this.edgeHeights;
+		int[] edgeVertices = new int[columns.length];
+		double[] edgeHeights = new double[heights.length];
+		pool.invoke(new Range(0, edgeHeights.length, (from, to) -> {
+			for(int e = from; e < to; e++)
+			{
+				CompactComplex.setEdge(edgeVertices, edgeHeights, e, columns[2*e], columns[2*e+1], heights[e], vertexHeights);
+			}
+		}));
+		IntAdjacency vertexEdges = IntAdjacency.build(vertexHeights.length, edgeVertices, edgeVertices.length, 2);
+
+		int[] corners = this.triangleColumns;
+		double[] cornerHeights = this.triangleHeights;
+		int[] triangleVertices = new int[corners.length];
+		int[] triangleEdges = new int[corners.length];
+		double[] triangleHeights = new double[cornerHeights.length];
+		pool.invoke(new Range(0, triangleHeights.length, (from, to) -> {
+			for(int t = from; t < to; t++)
+			{
+				CompactComplex.setTriangle(triangleVertices, triangleEdges, triangleHeights, t, corners[3*t], corners[3*t+1], corners[3*t+2], cornerHeights[t],
+						vertexHeights, edgeVertices, edgeHeights, vertexEdges);
+			}
+		}));
+		return new CompactComplex(vertexHeights, edgeVertices, edgeHeights, triangleVertices, triangleEdges, triangleHeights);
+	}
+
+	/**
+	 * Writes the columns to a binary mesh, see BinaryMesh.convert.
+	 */
+	void writeBinary(String filename) throws IOException
+	{
+		int flags = 0;
+		if(ParallelLoader.anyKnown(this.edgeHeights))
+		{
+			flags |= BinaryMesh.EDGE_HEIGHTS;
+		}
+		if(ParallelLoader.anyKnown(this.triangleHeights))
+		{
+			flags |= BinaryMesh.TRIANGLE_HEIGHTS;
+		}
+		try(BinaryMeshWriter writer = new BinaryMeshWriter(filename, this.vertexHeights.length, this.edgeHeights.length, this.triangleHeights.length, flags)) {
+			for(double h : this.vertexHeights)
+			{
+				writer.writeVertexHeight(h);
+			}
+			for(int e = 0; e < this.edgeHeights.length; e++)
+			{
+				writer.writeEdge(this.edgeColumns[2*e], this.edgeColumns[2*e+1]);
+			}
+			if((flags & BinaryMesh.EDGE_HEIGHTS) != 0)
+			{
+				for(double h : this.edgeHeights)
+				{
+					writer.writeEdgeHeight(h);
+				}
+			}
+			for(int t = 0; t < this.triangleHeights.length; t++)
+			{
+				writer.writeTriangle(this.triangleColumns[3*t], this.triangleColumns[3*t+1], this.triangleColumns[3*t+2]);
+			}
+			if((flags & BinaryMesh.TRIANGLE_HEIGHTS) != 0)
+			{
+				for(double h : this.triangleHeights)
+				{
+					writer.writeTriangleHeight(h);
+				}
+			}
+		}
+	}
+
+	private static boolean anyKnown(double[] heights)
+	{
+		for(double h : heights)
+		{
+			if(!Double.isNaN(h))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Chunk> split(String filename, int stride, int chunks) throws IOException
+	{
+		long size = new File(filename).length();
+		chunks = (int)Math.max(1, Math.min(chunks, size / MIN_CHUNK));
+		long[] boundaries = MappedTextReader.chunkBoundaries(filename, chunks);
+		List<Chunk> list = new ArrayList<Chunk>(chunks);
+		for(int i = 0; i < chunks; i++)
+		{
+			list.add(new Chunk(filename, boundaries[i], boundaries[i+1], stride));
+		}
+		return list;
+	}
+
+	private static void await(Future<Void> f) throws IOException
+	{
+		try {
+			f.get();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading!", e);
+		}catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+			{
+				throw (IOException)e.getCause();
+			}else if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static int count(List<Chunk> chunks)
+	{
+		int count = 0;
+		for(Chunk c : chunks)
+		{
+			count += c.count;
+		}
+		return count;
+	}
+
+	private static void concatenate(List<Chunk> chunks, int[] columns, double[] heights)
+	{
+		int offset = 0;
+		for(Chunk c : chunks)
+		{
+			System.arraycopy(c.heights, 0, heights, offset, c.count);
+			if(columns != null)
+			{
+				System.arraycopy(c.columns, 0, columns, offset * c.stride, c.count * c.stride);
+			}
+			offset += c.count;
+		}
+	}
+
+	/**
+	 * Parses the lines of one part of a file. For the Data file only the height, the last field, is kept.
+	 * For the Edges and Triangles files the leading vertex indices and the optional height are kept.
+	 */
+	private static class Chunk implements Callable<Void> {
+
+		private String filename;
+		private long start;
+		private long end;
+		private int stride;
+		private int count;
+		private int[] columns;
+		private double[] heights;
+
+		Chunk(String filename, long start, long end, int stride)
+		{
+			this.filename = filename;
+			this.start = start;
+			this.end = end;
+			this.stride = stride;
+		}
+
+		@Override
+		public Void call() throws IOException
+		{
+			/* Guess the line count from the size of the chunk, the arrays grow if needed */
+			int capacity = (int)Math.min(Integer.MAX_VALUE / 4, Math.max(16, (this.end - this.start) / (8 * (this.stride + 1))));
+			this.heights = new double[capacity];
+			this.columns = new int[capacity * this.stride];
+			this.count = 0;
+			MappedTextReader reader = new MappedTextReader(this.filename, this.start, this.end);
+			try {
+				while(reader.nextLine())
+				{
+					if(this.count == this.heights.length)
+					{
+						this.heights = Arrays.copyOf(this.heights, 2*this.count);
+						this.columns = Arrays.copyOf(this.columns, 2*this.count*this.stride);
+					}
+					if(this.stride == 0)
+					{
+						this.heights[this.count] = reader.getDouble(reader.fieldCount() - 1);
+					}else {
+						for(int i = 0; i < this.stride; i++)
+						{
+							this.columns[this.count*this.stride + i] = reader.getInt(i);
+						}
+						this.heights[this.count] = reader.fieldCount() > this.stride ? reader.getDouble(this.stride) : Double.NaN;
+					}
+					this.count++;
+				}
+			}finally {
+				reader.close();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Body of a loop over a range of indices.
+	 */
+	private interface RangeBody {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Runs a loop body over from..to-1, split into tasks of at most GRAIN indices.
+	 */
+	private static class Range extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+		private RangeBody body;
+
+		Range(int from, int to, RangeBody body)
+		{
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to - this.from <= GRAIN)
+			{
+				this.body.run(this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new Range(this.from, middle, this.body), new Range(middle, this.to, this.body));
+		}
+	}
+}
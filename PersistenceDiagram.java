@@ -0,0 +1,125 @@
+package contract;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * The persistence pairs of one dimension, sorted by birth and then by death. Essential classes die at positive
+ * infinity. Pairs of zero persistence are not stored.
+ */
+public class PersistenceDiagram {
+
+	private int dimension;
+	private double[] births;
+	private double[] deaths;
+
+	/**
+	 * Constructs the diagram of the given pairs, which are sorted in place.
+	 * @param dimension
+	 * @param births
+	 * @param deaths
+	 */
+	public PersistenceDiagram(int dimension, double[] births, double[] deaths)
+	{
+		if(births.length != deaths.length)
+		{
+			throw new IllegalArgumentException("Every pair needs a birth and a death!");
+		}
+		this.dimension = dimension;
+		this.births = births;
+		this.deaths = deaths;
+		int[] order = PersistenceSort.order(deaths);
+		double[] byDeath = new double[births.length];
+		for(int i = 0; i < order.length; i++)
+		{
+			byDeath[i] = births[order[i]];
+		}
+		/* Stable, so pairs of equal birth stay ordered by death */
+		int[] byBirth = PersistenceSort.order(byDeath);
+		for(int i = 0; i < byBirth.length; i++)
+		{
+			this.births[i] = byDeath[byBirth[i]];
+		}
+		double[] sortedDeaths = new double[deaths.length];
+		for(int i = 0; i < byBirth.length; i++)
+		{
+			sortedDeaths[i] = deaths[order[byBirth[i]]];
+		}
+		this.deaths = sortedDeaths;
+	}
+
+	public int getDimension()
+	{
+		return this.dimension;
+	}
+
+	public int size()
+	{
+		return this.births.length;
+	}
+
+	public double getBirth(int i)
+	{
+		return this.births[i];
+	}
+
+	public double getDeath(int i)
+	{
+		return this.deaths[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the death minus the birth of the pair
+	 */
+	public double getPersistence(int i)
+	{
+		return this.deaths[i] - this.births[i];
+	}
+
+	/**
+	 * @return the number of pairs which never die
+	 */
+	public int getEssentialCount()
+	{
+		int count = 0;
+		for(double death : this.deaths)
+		{
+			if(death == Double.POSITIVE_INFINITY)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the pairs as lines birth,death, with Infinity as the death of essential classes.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void write(String filename) throws IOException
+	{
+		BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
+		for(int i = 0; i < this.births.length; i++)
+		{
+			bw.write(this.births[i] + "," + this.deaths[i] + "\n");
+		}
+		bw.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		double max = 0;
+		for(int i = 0; i < this.births.length; i++)
+		{
+			if(this.deaths[i] != Double.POSITIVE_INFINITY)
+			{
+				max = Math.max(max, this.getPersistence(i));
+			}
+		}
+		return "H" + this.dimension + "\tPairs: " + this.size() + "\tEssential: " + this.getEssentialCount() + "\tMax finite persistence: " + max;
+	}
+}
@@ -0,0 +1,108 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sorts edges by the ending times of their windows, the order Edge.compareTo defines under
+ * Edge.setPersistenceSort(). The ending times are computed once and sorted as primitive keys with a
+ * stable radix sort, instead of being recomputed by the comparator on every comparison. Edges with
+ * equal ending times keep their relative order, as they do under Collections.sort.
+ */
+public class PersistenceSort {
+
+	private static final int DIGIT_BITS = 16;
+	private static final int RADIX = 1 << DIGIT_BITS;
+
+	/**
+	 * Sorts the edges in place by ending time.
+	 * @param edges
+	 */
+	public static void sort(ArrayList<Edge> edges)
+	{
+		double[] keys = new double[edges.size()];
+		for(int i = 0; i < keys.length; i++)
+		{
+			keys[i] = edges.get(i).getEndingTime();
+		}
+		int[] order = PersistenceSort.order(keys);
+		Edge[] sorted = new Edge[order.length];
+		for(int i = 0; i < order.length; i++)
+		{
+			sorted[i] = edges.get(order[i]);
+		}
+		for(int i = 0; i < sorted.length; i++)
+		{
+			edges.set(i, sorted[i]);
+		}
+	}
+
+	/**
+	 * Returns the indices of the keys in ascending order of key. Equal keys keep ascending index order.
+	 * The keys must not be NaN.
+	 * @param keys
+	 * @return int[]
+	 */
+	public static int[] order(double[] keys)
+	{
+		int n = keys.length;
+		long[] bits = new long[n];
+		for(int i = 0; i < n; i++)
+		{
+			bits[i] = PersistenceSort.sortableBits(keys[i]);
+		}
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			order[i] = i;
+		}
+		int[] buffer = new int[n];
+		int[] counts = new int[RADIX];
+		for(int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS)
+		{
+			Arrays.fill(counts, 0);
+			for(int i = 0; i < n; i++)
+			{
+				counts[PersistenceSort.digit(bits[i], shift)]++;
+			}
+			if(n == 0 || counts[PersistenceSort.digit(bits[0], shift)] == n)
+			{
+				/* Every key has the same digit, the pass would not move anything */
+				continue;
+			}
+			int total = 0;
+			for(int d = 0; d < RADIX; d++)
+			{
+				int count = counts[d];
+				counts[d] = total;
+				total += count;
+			}
+			for(int i = 0; i < n; i++)
+			{
+				int index = order[i];
+				buffer[counts[PersistenceSort.digit(bits[index], shift)]++] = index;
+			}
+			int[] swap = order;
+			order = buffer;
+			buffer = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * Maps a double to a long whose unsigned order is the numeric order of the doubles. Both zeros map
+	 * to the same value, since they compare equal.
+	 * @param key
+	 * @return long
+	 */
+	private static long sortableBits(double key)
+	{
+		long bits = Double.doubleToRawLongBits(key + 0.0);
+		return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+	}
+
+	private static int digit(long bits, int shift)
+	{
+		return (int)(bits >>> shift) & (RADIX - 1);
+	}
+}
@@ -0,0 +1,183 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * A static two dimensional tree over points of a persistence diagram, answering which points lie within a
+ * given distance of a query point in the maximum norm. The tree is implicit: the points are stored in an array
+ * such that the median of every range, alternately by x and by y, is at the middle of the range, with the
+ * smaller points before it and the greater ones after it.
+ */
+class PointIndex {
+
+	private double[] xs;
+	private double[] ys;
+	/* The index the point at every position was given under */
+	private int[] ids;
+	private int[] found;
+	private int foundCount;
+	private int[] stack;
+
+	/**
+	 * Builds the tree over the points (x[i], y[i]), which are identified by i.
+	 * @param x
+	 * @param y
+	 */
+	PointIndex(double[] x, double[] y)
+	{
+		int n = x.length;
+		this.ids = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			this.ids[i] = i;
+		}
+		this.build(x, y, 0, n, 0);
+		this.xs = new double[n];
+		this.ys = new double[n];
+		for(int i = 0; i < n; i++)
+		{
+			this.xs[i] = x[this.ids[i]];
+			this.ys[i] = y[this.ids[i]];
+		}
+		this.found = new int[16];
+		/* Every range on the stack is at most half of the one below it */
+		this.stack = new int[4*(Integer.SIZE + 1)];
+	}
+
+	private void build(double[] x, double[] y, int from, int to, int depth)
+	{
+		while(to - from > 1)
+		{
+			int middle = (from + to) >>> 1;
+			this.select(depth % 2 == 0 ? x : y, from, to, middle);
+			this.build(x, y, from, middle, depth + 1);
+			from = middle + 1;
+			depth++;
+		}
+	}
+
+	/**
+	 * Moves the ids in the range so that the one at position k has the k'th smallest key, with no greater key
+	 * before it and no smaller key after it.
+	 */
+	private void select(double[] keys, int from, int to, int k)
+	{
+		int[] ids = this.ids;
+		int lo = from;
+		int hi = to - 1;
+		while(lo < hi)
+		{
+			double pivot = keys[ids[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while(i <= j)
+			{
+				while(keys[ids[i]] < pivot)
+				{
+					i++;
+				}
+				while(keys[ids[j]] > pivot)
+				{
+					j--;
+				}
+				if(i <= j)
+				{
+					int temp = ids[i];
+					ids[i] = ids[j];
+					ids[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if(k <= j)
+			{
+				hi = j;
+			}else if(k >= i) {
+				lo = i;
+			}else {
+				return;
+			}
+		}
+	}
+
+	int size()
+	{
+		return this.ids.length;
+	}
+
+	/**
+	 * Finds the points within the given distance of the query point in the maximum norm, see getFound.
+	 * @param x
+	 * @param y
+	 * @param r
+	 * @return the number of points found
+	 */
+	int query(double x, double y, double r)
+	{
+		this.foundCount = 0;
+		int top = 0;
+		if(this.ids.length > 0)
+		{
+			this.stack[top++] = 0;
+			this.stack[top++] = this.ids.length;
+			this.stack[top++] = 0;
+		}
+		while(top > 0)
+		{
+			int depth = this.stack[--top];
+			int to = this.stack[--top];
+			int from = this.stack[--top];
+			while(from < to)
+			{
+				int middle = (from + to) >>> 1;
+				double px = this.xs[middle];
+				double py = this.ys[middle];
+				if(Math.abs(px - x) <= r && Math.abs(py - y) <= r)
+				{
+					if(this.foundCount == this.found.length)
+					{
+						this.found = Arrays.copyOf(this.found, 2*this.foundCount);
+					}
+					this.found[this.foundCount++] = this.ids[middle];
+				}
+				double split = depth % 2 == 0 ? px : py;
+				double query = depth % 2 == 0 ? x : y;
+				boolean left = query - r <= split;
+				boolean right = query + r >= split;
+				depth++;
+				if(left && right)
+				{
+					/* Continue with the smaller half, so the stack stays logarithmic */
+					if(middle - from < to - middle - 1)
+					{
+						this.stack[top++] = middle + 1;
+						this.stack[top++] = to;
+						this.stack[top++] = depth;
+						to = middle;
+					}else {
+						this.stack[top++] = from;
+						this.stack[top++] = middle;
+						this.stack[top++] = depth;
+						from = middle + 1;
+					}
+				}else if(left) {
+					to = middle;
+				}else if(right) {
+					from = middle + 1;
+				}else {
+					break;
+				}
+			}
+		}
+		return this.foundCount;
+	}
+
+	/**
+	 * @param i
+	 * @return the i'th point found by the last query
+	 */
+	int getFound(int i)
+	{
+		return this.found[i];
+	}
+}
@@ -0,0 +1,126 @@
+package contract;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A temporary file of fixed size records, which holds data of a complex that is kept outside of the heap. The
+ * file is memory mapped in windows of whole records, each at most WINDOW bytes, so only the pages in use are
+ * resident. All values are little endian. The file is deleted when it is closed.
+ */
+class RecordFile implements Closeable {
+
+	private static final long WINDOW = 1L << 30;
+
+	private File path;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int recordSize;
+	private int recordsPerWindow;
+	private long records;
+	private MappedByteBuffer[] windows;
+
+	/**
+	 * Creates a temporary file of the given number of records, filled with zeros.
+	 * @param records
+	 * @param recordSize in bytes
+	 * @throws IOException
+	 */
+	RecordFile(long records, int recordSize) throws IOException
+	{
+		if(records < 0 || recordSize <= 0 || recordSize > WINDOW)
+		{
+			throw new IllegalArgumentException("Cannot create " + records + " records of " + recordSize + " bytes!");
+		}
+		this.path = File.createTempFile("contract", ".records");
+		this.path.deleteOnExit();
+		this.file = new RandomAccessFile(this.path, "rw");
+		this.channel = this.file.getChannel();
+		this.recordSize = recordSize;
+		this.recordsPerWindow = (int)(WINDOW / recordSize);
+		this.records = records;
+		this.windows = new MappedByteBuffer[(int)((records + this.recordsPerWindow - 1) / this.recordsPerWindow)];
+		try {
+			this.file.setLength(records * recordSize);
+			for(int w = 0; w < this.windows.length; w++)
+			{
+				long first = (long)w * this.recordsPerWindow;
+				long length = Math.min(records - first, this.recordsPerWindow) * recordSize;
+				this.windows[w] = this.channel.map(FileChannel.MapMode.READ_WRITE, first * recordSize, length);
+				this.windows[w].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}catch(IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	long size()
+	{
+		return this.records;
+	}
+
+	private MappedByteBuffer window(long record)
+	{
+		if(record < 0 || record >= this.records)
+		{
+			throw new IndexOutOfBoundsException("Record " + record + " of " + this.records + "!");
+		}
+		return this.windows[(int)(record / this.recordsPerWindow)];
+	}
+
+	private int offset(long record, int field)
+	{
+		return (int)(record % this.recordsPerWindow) * this.recordSize + field;
+	}
+
+	/**
+	 * @param record
+	 * @param field the offset of the value in the record, in bytes
+	 * @return the int stored there
+	 */
+	int getInt(long record, int field)
+	{
+		return this.window(record).getInt(this.offset(record, field));
+	}
+
+	void putInt(long record, int field, int value)
+	{
+		this.window(record).putInt(this.offset(record, field), value);
+	}
+
+	/**
+	 * @param record
+	 * @param field the offset of the value in the record, in bytes
+	 * @return the double stored there
+	 */
+	double getDouble(long record, int field)
+	{
+		return this.window(record).getDouble(this.offset(record, field));
+	}
+
+	void putDouble(long record, int field, double value)
+	{
+		this.window(record).putDouble(this.offset(record, field), value);
+	}
+
+	/**
+	 * Unmaps the windows as far as the garbage collector allows and deletes the file.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		this.windows = null;
+		try {
+			this.channel.close();
+			this.file.close();
+		}finally {
+			this.path.delete();
+		}
+	}
+}
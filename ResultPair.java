@@ -6,6 +6,7 @@ public class ResultPair {
 	private int contracted;
 	private int simplices; 
 	private int itCount; 
+	private BottleneckReport bottleneckReport;
 	
 	public ResultPair(long millis, int contracted, int simplices, int itCount)
 	{
@@ -34,4 +35,17 @@ public class ResultPair {
 	{
 		return this.simplices;
 	}
+	
+	/**
+	 * @return the bottleneck distances of the run, or null if they were not checked, see Driver.setBottleneckCheck
+	 */
+	public BottleneckReport getBottleneckReport()
+	{
+		return this.bottleneckReport;
+	}
+	
+	void setBottleneckReport(BottleneckReport report)
+	{
+		this.bottleneckReport = report;
+	}
 }
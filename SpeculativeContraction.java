@@ -0,0 +1,345 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs the passes of Driver.contract with worker threads that contract edges speculatively.
+ *
+ * A pass proceeds in rounds. A round gathers the chain of scheduled edges the pass would visit next if each of
+ * them were contracted, as ParallelContraction does. Workers then take edges from the chain and, for each,
+ * claim the vertices of its closed star, test it and contract it. A vertex is claimed by setting its entry in
+ * an ownership table from free to the edge, so that no two edges of a round hold overlapping stars. If a
+ * vertex of the star is already owned the attempt is aborted: the worker releases what it claimed and leaves
+ * the edge scheduled, so that it is retried in a later round, after the contraction that caused the conflict.
+ *
+ * The stars of contracted edges stay claimed until the end of the round, so the stars contracted in a round
+ * are pairwise disjoint and every test sees the complex as it was when the round started. The contracted edges
+ * form a chain of disjoint windows, which keeps the epsilon*maxIts bound. Which of two conflicting edges wins
+ * depends on the timing of the workers, so unlike ParallelContraction the output is not deterministic.
+ *
+ * As with ParallelContraction, a pass contracts fewer edges than an iteration of Driver.contract, and aborted
+ * edges also wait for a later round, so a run takes more passes to converge: on the 316 x 316 terrain of the
+ * benchmarks with epsilon 5 and 4 workers, between 7047 and 7051 passes in three runs against 3121 iterations of
+ * Driver.contract. A run to convergence is therefore bounded about twice as loosely, by a bound that varies from
+ * run to run with the aborts. ParallelBenchmark reports the range of iterations over its repetitions.
+ */
+public class SpeculativeContraction {
+
+	/* Candidates gathered per round for every worker */
+	private static final int BATCH_PER_THREAD = 64;
+	private static final int FREE = 0;
+
+	/* Outcomes of an attempt */
+	private static final byte ABORTED = 0;
+	private static final byte REJECTED = 1;
+	private static final byte CONTRACTED = 2;
+
+	private ArrayList<Edge> edges;
+	private int[] rankOfPosition;
+	private int basePosition;
+	private ContractionScheduler scheduler;
+	private ForkJoinPool pool;
+	private int threads;
+	private int batchSize;
+	/* Candidate of the round owning each vertex, by index, plus one, or FREE */
+	private AtomicIntegerArray owner;
+	private Edge[] candidates;
+	private int[] candidateRanks;
+	private byte[] outcome;
+	/* Vertices claimed for each candidate, to release them at the end of the round */
+	private int[][] claims;
+	private int[] claimCount;
+	private AtomicInteger nextCandidate;
+	private double epsilon;
+	private AtomicLong attempts;
+	private AtomicLong aborts;
+
+	/**
+	 * Constructs the speculative contraction of a complex.
+	 * @param vertexCount the number of vertices of the complex, which are indexed from 0
+	 * @param edges the edges of the complex, sorted with PersistenceSort
+	 * @param threads the number of workers
+	 */
+	public SpeculativeContraction(int vertexCount, ArrayList<Edge> edges, int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		this.edges = edges;
+		this.basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			this.basePosition = Math.min(this.basePosition, e.getPosition());
+		}
+		this.rankOfPosition = new int[edges.size()];
+		double[] startingTimes = new double[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			this.rankOfPosition[edges.get(i).getPosition() - this.basePosition] = i;
+			startingTimes[i] = edges.get(i).getStartingTime();
+		}
+		this.scheduler = new ContractionScheduler(startingTimes);
+		this.pool = new ForkJoinPool(threads);
+		this.threads = threads;
+		this.batchSize = BATCH_PER_THREAD * threads;
+		this.owner = new AtomicIntegerArray(vertexCount);
+		this.candidates = new Edge[this.batchSize];
+		this.candidateRanks = new int[this.batchSize];
+		this.outcome = new byte[this.batchSize];
+		this.claims = new int[this.batchSize][];
+		this.claimCount = new int[this.batchSize];
+		this.nextCandidate = new AtomicInteger();
+		this.attempts = new AtomicLong();
+		this.aborts = new AtomicLong();
+	}
+
+	/**
+	 * Performs one pass over the scheduled edges.
+	 * @param epsilon
+	 * @param limit the maximum number of edges to contract, or a negative value for no limit
+	 * @return the number of edges contracted
+	 */
+	public int pass(double epsilon, int limit)
+	{
+		this.epsilon = epsilon;
+		int contracted = 0;
+		double currentTime = Double.NEGATIVE_INFINITY;
+		int rank = 0;
+		while(contracted != limit)
+		{
+			int count = 0;
+			double windowEnd = currentTime;
+			/* Never gather more candidates than may still be contracted, since all of them may succeed */
+			int room = limit < 0 ? this.batchSize : Math.min(this.batchSize, limit - contracted);
+			for(int i = this.scheduler.next(rank, windowEnd); i >= 0 && count < room; i = this.scheduler.next(i + 1, windowEnd))
+			{
+				Edge e = this.edges.get(i);
+				/* The slack is cached in the edge, so it is filled here rather than by the threads testing the edge */
+				if(!e.hasVanished() && e.isViable())
+				{
+					e.getEpsilonSlack();
+				}
+				this.candidates[count] = e;
+				this.candidateRanks[count] = i;
+				count++;
+				windowEnd = e.getEndingTime();
+			}
+			if(count == 0)
+			{
+				break;
+			}
+
+			this.nextCandidate.set(0);
+			Worker[] workers = new Worker[this.threads];
+			for(int w = 0; w < this.threads; w++)
+			{
+				workers[w] = new Worker(count);
+			}
+			this.pool.invoke(new Round(workers));
+			boolean progress = false;
+			for(int c = 0; c < count && !progress; c++)
+			{
+				progress = this.outcome[c] != ABORTED;
+			}
+			if(!progress)
+			{
+				/* The candidates aborted each other, which needs them to interleave their claims; retry the first alone */
+				this.attempt(0);
+			}
+
+			int roundContracted = 0;
+			for(int c = 0; c < count; c++)
+			{
+				this.releaseStar(c);
+				if(this.outcome[c] == REJECTED)
+				{
+					this.scheduler.deactivate(this.candidateRanks[c]);
+				}else if(this.outcome[c] == CONTRACTED) {
+					this.scheduler.deactivate(this.candidateRanks[c]);
+					currentTime = this.candidates[c].getEndingTime();
+					rank = this.candidateRanks[c] + 1;
+					roundContracted++;
+				}
+			}
+			for(int c = 0; c < count; c++)
+			{
+				if(this.outcome[c] == CONTRACTED)
+				{
+					/* Also recomputes the windows the contractions invalidated, before the next workers read them */
+					Driver.touchStar(this.candidates[c].getFirstVertex(), this.scheduler, this.rankOfPosition, this.basePosition);
+				}
+				this.candidates[c] = null;
+			}
+			contracted += roundContracted;
+			/* Aborted edges stay scheduled and are visited again once the conflicting contractions are done */
+		}
+		return contracted;
+	}
+
+	/**
+	 * Claims the vertex with the given index for the candidate.
+	 * @return false if another candidate owns the vertex
+	 */
+	private boolean claim(int candidate, int index)
+	{
+		int token = candidate + 1;
+		int current = this.owner.get(index);
+		if(current == token)
+		{
+			return true;
+		}
+		if(current != FREE || !this.owner.compareAndSet(index, FREE, token))
+		{
+			return false;
+		}
+		int[] claimed = this.claims[candidate];
+		if(claimed == null || claimed.length == this.claimCount[candidate])
+		{
+			claimed = new int[claimed == null ? 16 : 2*claimed.length];
+			if(this.claims[candidate] != null)
+			{
+				System.arraycopy(this.claims[candidate], 0, claimed, 0, this.claimCount[candidate]);
+			}
+			this.claims[candidate] = claimed;
+		}
+		claimed[this.claimCount[candidate]++] = index;
+		return true;
+	}
+
+	/**
+	 * Claims the closed star of the candidate, first its vertices and then, once their incident edges can no
+	 * longer change, their neighbours.
+	 * @return false if part of the star is owned by another candidate
+	 */
+	private boolean claimStar(int candidate)
+	{
+		Edge e = this.candidates[candidate];
+		Vertex first = e.getFirstVertex();
+		Vertex second = e.getSecondVertex();
+		if(!this.claim(candidate, first.getIndex()) || !this.claim(candidate, second.getIndex()))
+		{
+			return false;
+		}
+		if(first.hasVanished() || second.hasVanished())
+		{
+			/* Merged by a contraction of this round before the claim went through */
+			return false;
+		}
+		for(Vertex v : new Vertex[] {first, second})
+		{
+			for(Edge f : v.getIncidentEdges())
+			{
+				if(!f.hasVanished() && !this.claim(candidate, f.getOtherVertex(v).getIndex()))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Claims the star of the candidate, then tests and contracts it. A rejected candidate changed nothing, so
+	 * its star is released at once, while the star of a contracted one stays claimed until the end of the round.
+	 * @param candidate
+	 */
+	private void attempt(int candidate)
+	{
+		this.attempts.incrementAndGet();
+		if(!this.claimStar(candidate))
+		{
+			this.releaseStar(candidate);
+			this.aborts.incrementAndGet();
+			this.outcome[candidate] = ABORTED;
+		}else if(this.candidates[candidate].isContractible(this.epsilon)) {
+			this.candidates[candidate].contract();
+			this.outcome[candidate] = CONTRACTED;
+		}else {
+			this.releaseStar(candidate);
+			this.outcome[candidate] = REJECTED;
+		}
+	}
+
+	private void releaseStar(int candidate)
+	{
+		for(int k = 0; k < this.claimCount[candidate]; k++)
+		{
+			this.owner.set(this.claims[candidate][k], FREE);
+		}
+		this.claimCount[candidate] = 0;
+	}
+
+	/**
+	 * @return the number of contractions that were attempted, including aborted ones
+	 */
+	public long getAttempts()
+	{
+		return this.attempts.get();
+	}
+
+	/**
+	 * @return the number of attempts aborted because of a conflict with another edge of the round
+	 */
+	public long getAborts()
+	{
+		return this.aborts.get();
+	}
+
+	/**
+	 * Releases the threads of the pool.
+	 */
+	public void shutdown()
+	{
+		this.pool.shutdown();
+	}
+
+	/**
+	 * Runs the workers of a round.
+	 */
+	private class Round extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private Worker[] workers;
+
+		Round(Worker[] workers)
+		{
+			this.workers = workers;
+		}
+
+		@Override
+		protected void compute()
+		{
+			RecursiveAction.invokeAll(this.workers);
+		}
+	}
+
+	/**
+	 * Takes candidates of the round until none are left, and attempts to contract each of them.
+	 */
+	private class Worker extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int count;
+
+		Worker(int count)
+		{
+			this.count = count;
+		}
+
+		@Override
+		protected void compute()
+		{
+			AtomicInteger next = SpeculativeContraction.this.nextCandidate;
+			for(int c = next.getAndIncrement(); c < this.count; c = next.getAndIncrement())
+			{
+				SpeculativeContraction.this.attempt(c);
+			}
+		}
+	}
+}
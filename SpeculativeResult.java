@@ -0,0 +1,32 @@
+package contract;
+
+public class SpeculativeResult extends ResultPair {
+
+	private long attempts;
+	private long aborts;
+	
+	public SpeculativeResult(long millis, int contracted, int simplices, int itCount, long attempts, long aborts)
+	{
+		super(millis, contracted, simplices, itCount);
+		this.attempts = attempts;
+		this.aborts = aborts;
+	}
+	
+	public long getAttempts()
+	{
+		return this.attempts;
+	}
+	
+	public long getAborts()
+	{
+		return this.aborts;
+	}
+	
+	/**
+	 * @return the fraction of attempted contractions that were aborted because of a conflict
+	 */
+	public double getAbortRate()
+	{
+		return this.attempts == 0 ? 0 : (double)this.aborts / this.attempts;
+	}
+}
@@ -0,0 +1,440 @@
+package contract;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Generates synthetic terrains on a rows x cols grid, each grid cell split into two triangles along its
+ * diagonal. Vertex i*cols + j lies at row i and column j, and its height is a function of its position and the
+ * seed only, so a terrain can be streamed to files of any size without holding it in memory.
+ *
+ * The height is a sum of octaves. The first octave has features of about FeatureSize cells and amplitude
+ * Amplitude, and every further octave halves the feature size and multiplies the amplitude by Gain. Independent
+ * noise of amplitude Noise is added to every vertex. The persistence of the critical pairs spreads accordingly:
+ * the large features give pairs of persistence up to about twice the amplitude, every octave adds pairs that are
+ * Gain times less persistent, and the noise adds many pairs of persistence below twice the noise. The octaves
+ * are either smooth value noise (FRACTAL) or products of sines with random phases (WAVES), the latter giving
+ * regular rows of peaks and pits.
+ *
+ * A terrain is written to the Data, Edges and Triangles text files read by Driver, to a binary mesh, or built
+ * in memory into Vertex, Edge and Triangle objects or a CompactComplex. All of them list the simplices in the
+ * same order.
+ */
+public class TerrainGenerator {
+
+	public enum Surface { FRACTAL, WAVES }
+
+	private int rows;
+	private int cols;
+	private long seed;
+	private Surface surface;
+	private double featureSize;
+	private double amplitude;
+	private int octaves;
+	private double gain;
+	private double noise;
+
+	/**
+	 * Constructs a generator of FRACTAL terrains with features of up to 64 cells and heights in about [-10, 10],
+	 * in four octaves of gain one half, plus noise of amplitude 0.1.
+	 * @param rows
+	 * @param cols
+	 * @param seed
+	 */
+	public TerrainGenerator(int rows, int cols, long seed)
+	{
+		if(rows < 2 || cols < 2)
+		{
+			throw new IllegalArgumentException("A terrain needs at least two rows and two columns!");
+		}
+		long edges = (long)rows*(cols - 1) + (long)(rows - 1)*cols + (long)(rows - 1)*(cols - 1);
+		if(2*edges > Integer.MAX_VALUE || 6L*(rows - 1)*(cols - 1) > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("A terrain of " + rows + " x " + cols + " vertices cannot be indexed!");
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.seed = seed;
+		this.surface = Surface.FRACTAL;
+		this.featureSize = 64;
+		this.amplitude = 10;
+		this.octaves = 4;
+		this.gain = 0.5;
+		this.noise = 0.1;
+	}
+
+	/**
+	 * Constructs a generator of a square terrain with about the given number of vertices.
+	 * @param vertices
+	 * @param seed
+	 * @return TerrainGenerator
+	 */
+	public static TerrainGenerator square(long vertices, long seed)
+	{
+		int side = (int)Math.max(2, Math.round(Math.sqrt((double)vertices)));
+		return new TerrainGenerator(side, side, seed);
+	}
+
+	public void setSurface(Surface surface)
+	{
+		this.surface = surface;
+	}
+
+	/**
+	 * @param cells the size of the features of the first octave, in grid cells
+	 */
+	public void setFeatureSize(double cells)
+	{
+		if(!(cells > 0))
+		{
+			throw new IllegalArgumentException("The feature size has to be positive!");
+		}
+		this.featureSize = cells;
+	}
+
+	/**
+	 * @param amplitude the amplitude of the first octave
+	 */
+	public void setAmplitude(double amplitude)
+	{
+		this.amplitude = amplitude;
+	}
+
+	/**
+	 * @param octaves the number of octaves, zero for a terrain of noise only
+	 */
+	public void setOctaves(int octaves)
+	{
+		if(octaves < 0)
+		{
+			throw new IllegalArgumentException("The number of octaves cannot be negative!");
+		}
+		this.octaves = octaves;
+	}
+
+	/**
+	 * @param gain the ratio of the amplitudes of consecutive octaves
+	 */
+	public void setGain(double gain)
+	{
+		this.gain = gain;
+	}
+
+	/**
+	 * @param noise the amplitude of the noise added to every vertex
+	 */
+	public void setNoise(double noise)
+	{
+		this.noise = noise;
+	}
+
+	public int getVertexCount()
+	{
+		return this.rows*this.cols;
+	}
+
+	public int getEdgeCount()
+	{
+		return this.rows*(this.cols - 1) + (this.rows - 1)*this.cols + (this.rows - 1)*(this.cols - 1);
+	}
+
+	public int getTriangleCount()
+	{
+		return 2*(this.rows - 1)*(this.cols - 1);
+	}
+
+	/**
+	 * Returns the height of the vertex at the given row and column.
+	 * @param i
+	 * @param j
+	 * @return double
+	 */
+	public double height(int i, int j)
+	{
+		double height = this.noise*(2*this.random(-1, i, j) - 1);
+		double size = this.featureSize;
+		double amp = this.amplitude;
+		for(int o = 0; o < this.octaves; o++)
+		{
+			if(this.surface == Surface.FRACTAL)
+			{
+				height += amp*(2*this.valueNoise(o, i/size, j/size) - 1);
+			}else {
+				double phase = 2*Math.PI*this.random(o, -1, 0);
+				double otherPhase = 2*Math.PI*this.random(o, -1, 1);
+				height += amp*Math.sin(Math.PI*i/size + phase)*Math.cos(Math.PI*j/size + otherPhase);
+			}
+			size /= 2;
+			amp *= this.gain;
+		}
+		return height;
+	}
+
+	/**
+	 * Smoothly interpolates random values given at the integer points.
+	 */
+	private double valueNoise(int octave, double x, double y)
+	{
+		long x0 = (long)Math.floor(x);
+		long y0 = (long)Math.floor(y);
+		double fx = TerrainGenerator.smooth(x - x0);
+		double fy = TerrainGenerator.smooth(y - y0);
+		double top = (1 - fy)*this.random(octave, x0, y0) + fy*this.random(octave, x0, y0 + 1);
+		double bottom = (1 - fy)*this.random(octave, x0 + 1, y0) + fy*this.random(octave, x0 + 1, y0 + 1);
+		return (1 - fx)*top + fx*bottom;
+	}
+
+	private static double smooth(double t)
+	{
+		return t*t*(3 - 2*t);
+	}
+
+	/**
+	 * Returns a value in [0, 1) determined by the seed, the octave and the point.
+	 */
+	private double random(int octave, long x, long y)
+	{
+		long h = this.seed ^ (octave + 1)*0x9E3779B97F4A7C15L;
+		h = TerrainGenerator.mix(h ^ x*0xC2B2AE3D27D4EB4FL);
+		h = TerrainGenerator.mix(h ^ y*0x165667B19E3779F9L);
+		return (h >>> 11)*0x1.0p-53;
+	}
+
+	/* The finalizer of SplitMix64 */
+	private static long mix(long h)
+	{
+		h = (h ^ (h >>> 30))*0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27))*0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * Writes the terrain to path/name/nameData.txt, nameEdges.txt and nameTriangles.txt, the files read by
+	 * Driver.contract. Every line of the Data file holds the row, the column and the height of a vertex.
+	 * @param path
+	 * @param name
+	 * @throws IOException
+	 */
+	public void writeText(String path, String name) throws IOException
+	{
+		File directory = new File(path + name);
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create " + directory + "!");
+		}
+		String prefix = path + name + "/" + name;
+		BufferedWriter bw = new BufferedWriter(new FileWriter(prefix + "Data.txt"), 1 << 16);
+		for(int i = 0; i < this.rows; i++)
+		{
+			for(int j = 0; j < this.cols; j++)
+			{
+				bw.write(i + "," + j + "," + this.height(i, j) + "\n");
+			}
+		}
+		bw.close();
+
+		bw = new BufferedWriter(new FileWriter(prefix + "Edges.txt"), 1 << 16);
+		int[] edge = new int[2];
+		for(int v = 0; v < this.getVertexCount(); v++)
+		{
+			for(int k = 0; k < 3; k++)
+			{
+				if(this.edge(v, k, edge))
+				{
+					bw.write(edge[0] + "," + edge[1] + "\n");
+				}
+			}
+		}
+		bw.close();
+
+		bw = new BufferedWriter(new FileWriter(prefix + "Triangles.txt"), 1 << 16);
+		int[] triangle = new int[3];
+		for(int t = 0; t < this.getTriangleCount(); t++)
+		{
+			this.triangle(t, triangle);
+			bw.write(triangle[0] + "," + triangle[1] + "," + triangle[2] + "\n");
+		}
+		bw.close();
+	}
+
+	/**
+	 * Writes the terrain to a binary mesh, see BinaryMesh.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void writeBinary(String filename) throws IOException
+	{
+		try(BinaryMeshWriter writer = new BinaryMeshWriter(filename, this.getVertexCount(), this.getEdgeCount(), this.getTriangleCount(), 0)) {
+			for(int i = 0; i < this.rows; i++)
+			{
+				for(int j = 0; j < this.cols; j++)
+				{
+					writer.writeVertexHeight(this.height(i, j));
+				}
+			}
+			int[] edge = new int[2];
+			for(int v = 0; v < this.getVertexCount(); v++)
+			{
+				for(int k = 0; k < 3; k++)
+				{
+					if(this.edge(v, k, edge))
+					{
+						writer.writeEdge(edge[0], edge[1]);
+					}
+				}
+			}
+			int[] triangle = new int[3];
+			for(int t = 0; t < this.getTriangleCount(); t++)
+			{
+				this.triangle(t, triangle);
+				writer.writeTriangle(triangle[0], triangle[1], triangle[2]);
+			}
+		}
+	}
+
+	/**
+	 * Stores the k-th edge starting at vertex v, to the right, down or down the diagonal, if the grid has it.
+	 * @return false if the edge leaves the grid
+	 */
+	private boolean edge(int v, int k, int[] edge)
+	{
+		int i = v / this.cols;
+		int j = v % this.cols;
+		edge[0] = v;
+		if(k == 0)
+		{
+			edge[1] = v + 1;
+			return j + 1 < this.cols;
+		}else if(k == 1) {
+			edge[1] = v + this.cols;
+			return i + 1 < this.rows;
+		}
+		edge[1] = v + this.cols + 1;
+		return i + 1 < this.rows && j + 1 < this.cols;
+	}
+
+	/**
+	 * Stores the vertices of the t-th triangle, the two triangles of every cell in row major order.
+	 */
+	private void triangle(int t, int[] triangle)
+	{
+		int cell = t / 2;
+		int v = (cell / (this.cols - 1))*this.cols + cell % (this.cols - 1);
+		triangle[0] = v;
+		if(t % 2 == 0)
+		{
+			triangle[1] = v + 1;
+			triangle[2] = v + this.cols + 1;
+		}else {
+			triangle[1] = v + this.cols + 1;
+			triangle[2] = v + this.cols;
+		}
+	}
+
+	/**
+	 * Returns the columns of the terrain, with the heights of edges and triangles omitted.
+	 */
+	private ParallelLoader columns()
+	{
+		double[] vertexHeights = new double[this.getVertexCount()];
+		for(int i = 0; i < this.rows; i++)
+		{
+			for(int j = 0; j < this.cols; j++)
+			{
+				vertexHeights[i*this.cols + j] = this.height(i, j);
+			}
+		}
+		int[] edgeColumns = new int[2*this.getEdgeCount()];
+		int[] edge = new int[2];
+		for(int e = 0, v = 0; v < vertexHeights.length; v++)
+		{
+			for(int k = 0; k < 3; k++)
+			{
+				if(this.edge(v, k, edge))
+				{
+					edgeColumns[2*e] = edge[0];
+					edgeColumns[2*e+1] = edge[1];
+					e++;
+				}
+			}
+		}
+		int[] triangleColumns = new int[3*this.getTriangleCount()];
+		int[] triangle = new int[3];
+		for(int t = 0; t < this.getTriangleCount(); t++)
+		{
+			this.triangle(t, triangle);
+			System.arraycopy(triangle, 0, triangleColumns, 3*t, 3);
+		}
+		double[] edgeHeights = new double[this.getEdgeCount()];
+		Arrays.fill(edgeHeights, Double.NaN);
+		double[] triangleHeights = new double[this.getTriangleCount()];
+		Arrays.fill(triangleHeights, Double.NaN);
+		return new ParallelLoader(vertexHeights, edgeColumns, edgeHeights, triangleColumns, triangleHeights);
+	}
+
+	/**
+	 * Builds the terrain into Vertex, Edge and Triangle objects, appending them to the lists, as
+	 * Driver.contract would read them from the files written by writeText.
+	 * @param vertices
+	 * @param edges
+	 * @param triangles
+	 */
+	public void buildObjects(ArrayList<Vertex> vertices, ArrayList<Edge> edges, ArrayList<Triangle> triangles)
+	{
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			this.columns().buildObjects(pool, vertices, edges, triangles);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Builds the terrain into a CompactComplex on the given number of threads.
+	 * @param threads
+	 * @return CompactComplex
+	 */
+	public CompactComplex buildCompact(int threads)
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return this.columns().buildCompact(pool);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Writes a square terrain. Arguments: path name vertices [seed] [text|binary] [fractal|waves].
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 3)
+		{
+			System.out.println("Usage: TerrainGenerator path name vertices [seed] [text|binary] [fractal|waves]");
+			return;
+		}
+		String path = args[0];
+		String name = args[1];
+		TerrainGenerator generator = TerrainGenerator.square((long)Double.parseDouble(args[2]), args.length > 3 ? Long.parseLong(args[3]) : 1);
+		if(args.length > 5)
+		{
+			generator.setSurface(Surface.valueOf(args[5].toUpperCase()));
+		}
+		long initial = System.currentTimeMillis();
+		if(args.length > 4 && args[4].equals("binary"))
+		{
+			new File(path + name).mkdirs();
+			generator.writeBinary(path + name + "/" + name + ".mesh");
+		}else {
+			generator.writeText(path, name);
+		}
+		System.out.println(name + "\tVertices: " + generator.getVertexCount() + "\tEdges: " + generator.getEdgeCount() + "\tTriangles: " + generator.getTriangleCount()
+				+ "\tTime: " + (System.currentTimeMillis() - initial) + " ms");
+	}
+}
@@ -0,0 +1,417 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Performs the iterations of Driver.contract on tiles of the complex, which are contracted independently and in
+ * parallel, followed by a pass over the seams between them.
+ *
+ * The vertices are split into tiles of consecutive vertices in breadth first order, which keeps the tiles
+ * connected pieces of the mesh whatever the order of the input. Every vertex with a neighbour in another tile is
+ * a seam vertex and is marked with Vertex.setBoundary, so that Edge.isViable rejects every edge touching it. An
+ * edge contracted in a tile then has both vertices inside the tile, away from its seam, and the contraction only
+ * changes the simplices of the tile: Vertex.union updates the perishing vertex, the survivor and their
+ * neighbours, which all belong to the tile. The tiles therefore never touch the same simplices, and each one
+ * runs the iterations of Driver.contract on its own edges, with its own ContractionScheduler and window rule.
+ *
+ * As the tiles move disjoint sets of simplices their contractions commute, and the tile phase has the effect
+ * of running the iterations of the tiles one tile after the other. Each of those iterations contracts a chain
+ * of windows, so it is an epsilon perturbation, as an iteration of Driver.contract is. The k'th iterations of
+ * different tiles are not counted as one, since their windows do not form a single chain, which is what the
+ * bound of an iteration rests on, see ParallelContraction. The tile phase therefore counts the iterations of all
+ * tiles together, and maxIts is shared out among the tiles. The seam pass then clears the boundary flags and
+ * runs further iterations of Driver.contract over the whole complex, visiting the edges the seams froze, the
+ * edges the tiles left scheduled, and whatever their contractions touch. The bound of epsilon*maxIts holds for
+ * the iterations of both phases together.
+ */
+public class TiledContraction {
+
+	private ArrayList<Edge> edges;
+	private int[] rankOfPosition;
+	private int basePosition;
+	private int tileCount;
+	/* Tile of every vertex, by index */
+	private int[] tileOf;
+	private List<Vertex> seamVertices;
+	/* Tile of every edge, by rank, or -1 for the edges touching a seam, and its rank within the tile */
+	private int[] edgeTile;
+	private int[] tileRank;
+	/* Ranks of the edges of every tile, in rank order */
+	private int[][] tileEdges;
+	private ContractionScheduler[] schedulers;
+	private int[] tileIterations;
+	private int[] tileContracted;
+	private ForkJoinPool pool;
+	/* Contractions left under the limit of the tile phase */
+	private AtomicInteger budget;
+	private int iterations;
+
+	/**
+	 * Constructs the tiled contraction of a complex, marking the seams between the tiles as boundary.
+	 * @param vertices the vertices of the complex, which are indexed from 0
+	 * @param edges the edges of the complex, sorted with PersistenceSort
+	 * @param tiles the number of tiles
+	 * @param threads the parallelism of the fork-join pool the tiles are contracted on
+	 */
+	public TiledContraction(List<Vertex> vertices, ArrayList<Edge> edges, int tiles, int threads)
+	{
+		if(tiles < 1)
+		{
+			throw new IllegalArgumentException("At least one tile is required!");
+		}
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required!");
+		}
+		this.edges = edges;
+		this.basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			this.basePosition = Math.min(this.basePosition, e.getPosition());
+		}
+		this.rankOfPosition = new int[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			this.rankOfPosition[edges.get(i).getPosition() - this.basePosition] = i;
+		}
+		this.tileCount = tiles;
+		this.partition(vertices);
+		this.markSeams(vertices);
+		this.assignEdges();
+		this.tileIterations = new int[tiles];
+		this.tileContracted = new int[tiles];
+		this.pool = new ForkJoinPool(threads);
+		this.iterations = 0;
+	}
+
+	/**
+	 * Cuts the vertices, in breadth first order from the lowest index of every component, into tiles of equal
+	 * size.
+	 */
+	private void partition(List<Vertex> vertices)
+	{
+		Vertex[] byIndex = new Vertex[vertices.size()];
+		for(Vertex v : vertices)
+		{
+			byIndex[v.getIndex()] = v;
+		}
+		int n = byIndex.length;
+		int[] order = new int[n];
+		boolean[] visited = new boolean[n];
+		int count = 0;
+		for(int start = 0; start < n; start++)
+		{
+			if(visited[start])
+			{
+				continue;
+			}
+			visited[start] = true;
+			order[count++] = start;
+			for(int head = count - 1; head < count; head++)
+			{
+				Vertex v = byIndex[order[head]];
+				for(Edge e : v.getIncidentEdges())
+				{
+					int w = e.getOtherVertex(v).getIndex();
+					if(!visited[w])
+					{
+						visited[w] = true;
+						order[count++] = w;
+					}
+				}
+			}
+		}
+		this.tileOf = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			this.tileOf[order[i]] = (int)((long)i * this.tileCount / n);
+		}
+	}
+
+	private void markSeams(List<Vertex> vertices)
+	{
+		this.seamVertices = new ArrayList<Vertex>();
+		for(Vertex v : vertices)
+		{
+			for(Edge e : v.getIncidentEdges())
+			{
+				if(this.tileOf[e.getOtherVertex(v).getIndex()] != this.tileOf[v.getIndex()])
+				{
+					v.setBoundary();
+					this.seamVertices.add(v);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives every edge whose vertices are both inside the same tile to that tile, and builds the scheduler of
+	 * every tile over its edges.
+	 */
+	private void assignEdges()
+	{
+		this.edgeTile = new int[this.edges.size()];
+		this.tileRank = new int[this.edges.size()];
+		int[] counts = new int[this.tileCount];
+		for(int i = 0; i < this.edges.size(); i++)
+		{
+			Edge e = this.edges.get(i);
+			int tile = this.tileOf[e.getFirstVertex().getIndex()];
+			if(e.isViable() && this.tileOf[e.getSecondVertex().getIndex()] == tile)
+			{
+				this.edgeTile[i] = tile;
+				this.tileRank[i] = counts[tile]++;
+			}else {
+				this.edgeTile[i] = -1;
+			}
+		}
+		this.tileEdges = new int[this.tileCount][];
+		for(int t = 0; t < this.tileCount; t++)
+		{
+			this.tileEdges[t] = new int[counts[t]];
+		}
+		for(int i = 0; i < this.edges.size(); i++)
+		{
+			if(this.edgeTile[i] >= 0)
+			{
+				this.tileEdges[this.edgeTile[i]][this.tileRank[i]] = i;
+			}
+		}
+		this.schedulers = new ContractionScheduler[this.tileCount];
+		for(int t = 0; t < this.tileCount; t++)
+		{
+			double[] startingTimes = new double[counts[t]];
+			for(int i = 0; i < counts[t]; i++)
+			{
+				startingTimes[i] = this.edges.get(this.tileEdges[t][i]).getStartingTime();
+			}
+			this.schedulers[t] = new ContractionScheduler(startingTimes);
+		}
+	}
+
+	/**
+	 * Contracts the tiles in parallel with their seams frozen, each until an iteration contracts nothing or it
+	 * has run its share of maxIts. The shares differ by at most one and add up to maxIts, so that the iterations
+	 * of all tiles together never exceed it.
+	 * @param epsilon
+	 * @param maxIts the maximum number of iterations of all tiles together, or -1 for no limit
+	 * @param limit the maximum number of edges to contract, or a negative value for no limit. With a limit,
+	 * which tiles get the contractions depends on the timing of the threads.
+	 * @return the number of edges contracted
+	 */
+	public int contractTiles(double epsilon, int maxIts, int limit)
+	{
+		this.budget = limit < 0 ? null : new AtomicInteger(limit);
+		this.pool.invoke(new Tiles(0, this.tileCount, epsilon, maxIts));
+		int contracted = 0;
+		for(int t = 0; t < this.tileCount; t++)
+		{
+			contracted += this.tileContracted[t];
+			this.iterations += this.tileIterations[t];
+		}
+		return contracted;
+	}
+
+	/**
+	 * Runs the iterations of Driver.contract on the edges of a tile, at most its share of maxIts.
+	 */
+	private void contractTile(int tile, double epsilon, int maxIts)
+	{
+		int[] ranks = this.tileEdges[tile];
+		ContractionScheduler scheduler = this.schedulers[tile];
+		int tileIts = this.share(tile, maxIts);
+		int edgesContracted = 0;
+		int formerCount = -1;
+		int itCount = 0;
+		boolean flag = true;
+		while(edgesContracted - formerCount > 0 && itCount != tileIts && flag)
+		{
+			itCount++;
+			formerCount = edgesContracted;
+			double currentTime = Double.NEGATIVE_INFINITY;
+			for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+			{
+				Edge e = this.edges.get(ranks[i]);
+				if(!e.isContractible(epsilon))
+				{
+					scheduler.deactivate(i);
+					continue;
+				}
+				if(this.budget != null && this.budget.getAndDecrement() <= 0)
+				{
+					/* The edge stays scheduled for the seam pass, which has no contractions left either */
+					flag = false;
+					break;
+				}
+				scheduler.deactivate(i);
+				currentTime = e.getEndingTime();
+				e.contract();
+				edgesContracted++;
+				this.touchStar(e.getFirstVertex(), tile);
+			}
+		}
+		this.tileIterations[tile] = itCount;
+		this.tileContracted[tile] = edgesContracted;
+	}
+
+	/**
+	 * @return the iterations of maxIts the tile may run, or -1 for no limit
+	 */
+	private int share(int tile, int maxIts)
+	{
+		if(maxIts < 0)
+		{
+			return -1;
+		}
+		return maxIts / this.tileCount + (tile < maxIts % this.tileCount ? 1 : 0);
+	}
+
+	/**
+	 * Schedules the edges of the tile which have an endpoint in the closed star of the survivor, as
+	 * Driver.touchStar does. The closed star may reach the seam, whose edges belong to no tile.
+	 */
+	private void touchStar(Vertex survivor, int tile)
+	{
+		for(Edge e : survivor.getIncidentEdges())
+		{
+			if(!e.hasVanished())
+			{
+				this.touch(e, tile);
+				for(Edge f : e.getOtherVertex(survivor).getIncidentEdges())
+				{
+					if(!f.hasVanished())
+					{
+						this.touch(f, tile);
+					}
+				}
+			}
+		}
+	}
+
+	private void touch(Edge e, int tile)
+	{
+		int rank = this.rankOfPosition[e.getPosition() - this.basePosition];
+		if(this.edgeTile[rank] == tile)
+		{
+			this.schedulers[tile].touch(this.tileRank[rank], e.getStartingTime());
+		}
+	}
+
+	/**
+	 * Clears the boundary flags of the seams and runs the iterations of Driver.contract over the whole complex,
+	 * starting from the edges touching a seam and the edges the tiles left scheduled, until an iteration
+	 * contracts nothing or the iterations of both phases reach maxIts.
+	 * @param epsilon
+	 * @param maxIts the maximum number of iterations of both phases, or -1 for no limit
+	 * @param limit the maximum number of edges to contract, or a negative value for no limit
+	 * @return the number of edges contracted
+	 */
+	public int contractSeams(double epsilon, int maxIts, int limit)
+	{
+		for(Vertex v : this.seamVertices)
+		{
+			v.clearBoundary();
+		}
+		double[] startingTimes = new double[this.edges.size()];
+		for(int i = 0; i < this.edges.size(); i++)
+		{
+			Edge e = this.edges.get(i);
+			int tile = this.edgeTile[i];
+			if(!e.hasVanished() && (tile < 0 || this.schedulers[tile].isActive(this.tileRank[i])))
+			{
+				startingTimes[i] = e.getStartingTime();
+			}else {
+				startingTimes[i] = Double.NEGATIVE_INFINITY;
+			}
+		}
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
+		int edgesContracted = 0;
+		int formerCount = -1;
+		boolean flag = limit != 0;
+		while(edgesContracted - formerCount > 0 && this.iterations != maxIts && flag && scheduler.pending() > 0)
+		{
+			this.iterations++;
+			formerCount = edgesContracted;
+			double currentTime = Double.NEGATIVE_INFINITY;
+			for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+			{
+				Edge e = this.edges.get(i);
+				scheduler.deactivate(i);
+				if(e.isContractible(epsilon))
+				{
+					currentTime = e.getEndingTime();
+					e.contract();
+					edgesContracted++;
+					Driver.touchStar(e.getFirstVertex(), scheduler, this.rankOfPosition, this.basePosition);
+				}
+				if(edgesContracted == limit)
+				{
+					flag = false;
+					break;
+				}
+			}
+		}
+		return edgesContracted;
+	}
+
+	/**
+	 * @return the number of iterations run, counting the iterations of every tile
+	 */
+	public int getIterations()
+	{
+		return this.iterations;
+	}
+
+	/**
+	 * @return the number of vertices on the seams between the tiles
+	 */
+	public int getSeamVertexCount()
+	{
+		return this.seamVertices.size();
+	}
+
+	/**
+	 * Releases the threads of the pool.
+	 */
+	public void shutdown()
+	{
+		this.pool.shutdown();
+	}
+
+	/**
+	 * Contracts tiles from..to-1.
+	 */
+	private class Tiles extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+		private double epsilon;
+		private int maxIts;
+
+		Tiles(int from, int to, double epsilon, int maxIts)
+		{
+			this.from = from;
+			this.to = to;
+			this.epsilon = epsilon;
+			this.maxIts = maxIts;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(this.to - this.from == 1)
+			{
+				TiledContraction.this.contractTile(this.from, this.epsilon, this.maxIts);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new Tiles(this.from, middle, this.epsilon, this.maxIts), new Tiles(middle, this.to, this.epsilon, this.maxIts));
+		}
+	}
+}
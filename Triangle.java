@@ -98,7 +98,7 @@ public class Triangle implements Simplex,Comparable<Triangle>{
 			throw new IllegalArgumentException("The edges cannot be null!");
 		}
 		
-		if(edge1.getHeightValue() < heightvalue || edge2.getHeightValue() < heightvalue || edge3.getHeightValue() < heightvalue)
+		if(heightvalue < edge1.getHeightValue() || heightvalue < edge2.getHeightValue() || heightvalue < edge3.getHeightValue())
 		{
 			throw new IllegalArgumentException("Height value is less than the height value of an edge!");
 		}
@@ -142,6 +142,11 @@ public class Triangle implements Simplex,Comparable<Triangle>{
 		
 		this.heightValue = heightvalue;
 		this.computeIndexRep();
+		
+		for(Vertex v : this.vertices)
+		{
+			v.addTriangle(this);
+		}
 	}
 
 	/**
@@ -238,6 +243,27 @@ public class Triangle implements Simplex,Comparable<Triangle>{
 		return this.index[0] + "," + this.index[1] + "," + this.index[2];
 	}
 
+	/**
+	 * Returns the key under which this triangle is stored in the incidence map of the owner, which is
+	 * the key of the edge formed by the other two vertices.
+	 * @param owner a constituent vertex
+	 * @return long
+	 */
+	public long getKey(Vertex owner)
+	{
+		int o = owner.getKey();
+		int a = this.vertices[0].getKey();
+		int b = this.vertices[1].getKey();
+		int c = this.vertices[2].getKey();
+		if(a == o)
+		{
+			return Edge.key(b, c);
+		}else if(b == o) {
+			return Edge.key(a, c);
+		}
+		return Edge.key(a, b);
+	}
+	
 	/**
 	 * Returns a clone of the index.
 	 * @return
@@ -330,6 +356,36 @@ public class Triangle implements Simplex,Comparable<Triangle>{
 		return this.vertices[0].equals(v) || this.vertices[1].equals(v) || this.vertices[2].equals(v);
 	}
 	
+	/**
+	 * Returns the first constituent vertex, in the order of the internal vertex array, which is not
+	 * equal to the parameter.
+	 * @param v
+	 * @return Vertex
+	 */
+	public Vertex getFirstOtherVertex(Vertex v)
+	{
+		if(this.vertices[0].equals(v))
+		{
+			return this.vertices[1].getVertex();
+		}
+		return this.vertices[0].getVertex();
+	}
+	
+	/**
+	 * Returns the last constituent vertex, in the order of the internal vertex array, which is not
+	 * equal to the parameter.
+	 * @param v
+	 * @return Vertex
+	 */
+	public Vertex getSecondOtherVertex(Vertex v)
+	{
+		if(this.vertices[2].equals(v))
+		{
+			return this.vertices[1].getVertex();
+		}
+		return this.vertices[2].getVertex();
+	}
+	
 	/**
 	 * Modifies internal state so that the old vertex is replaced with the new vertex.
 	 * @param old
@@ -392,6 +448,7 @@ public class Triangle implements Simplex,Comparable<Triangle>{
 		}else {
 			throw new IllegalStateException("Error! This triangle does not contain the input edge!");
 		}
+		nw.invalidateWindow();
 	}
 
 	/**
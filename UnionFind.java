@@ -0,0 +1,204 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets over the integers 0..size-1 in two arrays, merged by rank and searched with path halving, so
+ * that find and union take amortized almost constant time without recursion or per-element objects.
+ *
+ * Unions can be made on trial: between checkpoint and rollback every union is recorded in an undo log and
+ * find leaves the paths as they are, so rollback restores the sets exactly as they were at the checkpoint.
+ * A trial costs a few ints per union and makes find logarithmic rather than almost constant until it ends.
+ */
+public class UnionFind {
+
+	private int[] parent;
+	private byte[] rank;
+	private int size;
+	/* Triples of the root hung below another, the root it was hung below and that root's former rank */
+	private int[] undo;
+	private int undoSize;
+	private int trials;
+
+	/**
+	 * Constructs size singleton sets.
+	 * @param size
+	 */
+	public UnionFind(int size)
+	{
+		this.parent = new int[size];
+		this.rank = new byte[size];
+		this.size = size;
+		this.undo = new int[0];
+		this.reset();
+	}
+
+	/**
+	 * Makes every element a singleton again, discarding any trial.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < this.size; i++)
+		{
+			this.parent[i] = i;
+		}
+		Arrays.fill(this.rank, (byte)0);
+		this.undoSize = 0;
+		this.trials = 0;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Adds singleton sets up to the given size, if there are fewer elements.
+	 * @param size
+	 */
+	public void ensureSize(int size)
+	{
+		if(size <= this.size)
+		{
+			return;
+		}
+		if(size > this.parent.length)
+		{
+			int capacity = Math.max(size, 2*this.parent.length);
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			this.rank = Arrays.copyOf(this.rank, capacity);
+		}
+		for(int i = this.size; i < size; i++)
+		{
+			this.parent[i] = i;
+			this.rank[i] = 0;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Returns the representative of the set of the element, pointing every other node on the way to its
+	 * grandparent unless a trial is open.
+	 * @param x
+	 * @return int
+	 */
+	public int find(int x)
+	{
+		int[] parent = this.parent;
+		if(this.trials > 0)
+		{
+			while(parent[x] != x)
+			{
+				x = parent[x];
+			}
+			return x;
+		}
+		while(parent[x] != x)
+		{
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Merges the sets of the two elements, hanging the root of lower rank below the other.
+	 * @param a
+	 * @param b
+	 * @return the representative of the merged set, or -1 if the elements were already in the same set
+	 */
+	public int union(int a, int b)
+	{
+		int x = this.find(a);
+		int y = this.find(b);
+		if(x == y)
+		{
+			return -1;
+		}
+		if(this.rank[x] < this.rank[y])
+		{
+			int swap = x;
+			x = y;
+			y = swap;
+		}
+		if(this.trials > 0)
+		{
+			this.record(y, x, this.rank[x]);
+		}
+		if(this.rank[x] == this.rank[y])
+		{
+			this.rank[x]++;
+		}
+		this.parent[y] = x;
+		return x;
+	}
+
+	private void record(int child, int root, int rank)
+	{
+		if(this.undoSize + 3 > this.undo.length)
+		{
+			this.undo = Arrays.copyOf(this.undo, Math.max(48, 2*this.undo.length));
+		}
+		this.undo[this.undoSize++] = child;
+		this.undo[this.undoSize++] = root;
+		this.undo[this.undoSize++] = rank;
+	}
+
+	/**
+	 * Opens a trial, which may be nested in another one.
+	 * @return the checkpoint to pass to rollback or commit
+	 */
+	public int checkpoint()
+	{
+		this.trials++;
+		return this.undoSize;
+	}
+
+	/**
+	 * Undoes every union made since the checkpoint and closes its trial.
+	 * @param checkpoint
+	 */
+	public void rollback(int checkpoint)
+	{
+		this.checkTrial(checkpoint);
+		while(this.undoSize > checkpoint)
+		{
+			int rank = this.undo[--this.undoSize];
+			int root = this.undo[--this.undoSize];
+			int child = this.undo[--this.undoSize];
+			this.parent[child] = child;
+			this.rank[root] = (byte)rank;
+		}
+		this.trials--;
+	}
+
+	/**
+	 * Keeps the unions made since the checkpoint and closes its trial. They can still be undone by rolling back
+	 * an enclosing trial.
+	 * @param checkpoint
+	 */
+	public void commit(int checkpoint)
+	{
+		this.checkTrial(checkpoint);
+		if(--this.trials == 0)
+		{
+			this.undoSize = 0;
+		}
+	}
+
+	private void checkTrial(int checkpoint)
+	{
+		if(this.trials == 0 || checkpoint < 0 || checkpoint > this.undoSize)
+		{
+			throw new IllegalStateException("There is no trial at checkpoint " + checkpoint + "!");
+		}
+	}
+
+	/**
+	 * @return whether a trial is open
+	 */
+	public boolean inTrial()
+	{
+		return this.trials > 0;
+	}
+}
@@ -1,50 +1,92 @@
 package contract;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Vertex implements Simplex,Comparable<Vertex>{
 	
 	private int index;
-	private Map<String,Edge> incidentEdges;
-	private Map<String,Triangle> incidentTriangles;
+	/* Key of the vertex in the incidence maps, its index until a union hands it the key of a larger star */
+	private int key;
+	private LongMap<Edge> incidentEdges;
+	private LongMap<Triangle> incidentTriangles;
 	private double heightValue;
 	private boolean isBoundary;
-	private Vertex parent;
+	private VertexForest forest;
+	/* Whether this vertex has perished, so that a vertex which has not needs no lookup in the forest */
+	private boolean perished;
+	/* The forest of the vertices constructed without one, replaced once a vertex takes an index it already holds */
+	private static VertexForest defaultForest;
 	
 	/**
-	 * Constructs a new Vertex with assigned index and height value
+	 * Constructs a new Vertex with assigned index and height value. The vertices constructed without a forest
+	 * share one, which grows as needed, and a vertex whose index is already taken in it starts a new one, so a
+	 * complex whose vertices are constructed in turn from index 0 gets a forest of its own.
 	 * @param index
 	 * @param heightValue
 	 */
 	public Vertex(int index, double heightValue)
+	{
+		this(index, heightValue, Vertex.defaultForest(index));
+	}
+	
+	/**
+	 * Constructs a new Vertex with assigned index and height value, in the forest of its complex
+	 * @param index
+	 * @param heightValue
+	 * @param forest
+	 */
+	public Vertex(int index, double heightValue, VertexForest forest)
 	{
 		this.index = index;
-		this.incidentEdges = new HashMap<String,Edge>();
-		this.incidentTriangles = new HashMap<String,Triangle>();
+		this.key = index;
+		this.incidentEdges = new LongMap<Edge>(8);
+		this.incidentTriangles = new LongMap<Triangle>(8);
 		this.heightValue = heightValue;
 		this.isBoundary = false;
-		this.parent = this;
+		this.forest = forest;
+		forest.add(this, index);
+	}
+	
+	private static synchronized VertexForest defaultForest(int index)
+	{
+		if(Vertex.defaultForest == null || Vertex.defaultForest.contains(index))
+		{
+			Vertex.defaultForest = new VertexForest(16);
+		}
+		return Vertex.defaultForest;
 	}
 	
 	/**
-	 * Returns the parent associated with this vertex.
+	 * Returns the vertex which survived for this vertex, see VertexForest.
 	 * @return Vertex
 	 */
 	public Vertex getVertex()
 	{
-		if(this.parent.index == this.index)
+		if(!this.perished)
 		{
 			return this;
 		}
-		return this.parent = this.parent.getVertex(); 
+		return this.forest.getVertex(this.index);
+	}
+	
+	/**
+	 * Returns the forest of the complex of this vertex, in which contractions can be tried and undone.
+	 * @return VertexForest
+	 */
+	public VertexForest getForest()
+	{
+		return this.forest;
 	}
 	
 	/** 
 	 * Combines parameter vertex with this vertex. Includes updating the
 	 * surviving vertex's incident vertex list. 
 	 * 
+	 * The vertex with the lower height survives, but the incidences of whichever vertex has fewer of them are
+	 * the ones moved: if the perishing vertex has more, the survivor first swaps its maps and its key with it.
+	 * Only the moved simplices are rekeyed, so a run of unions costs O(n log n) however a high valence vertex
+	 * absorbs its neighbours. Which mirror survives does not depend on the direction of the move.
+	 * 
 	 * @param v
 	 */
 	public void union(Vertex v)
@@ -54,6 +96,10 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 			/* Check to make sure we're not in the same tree */
 			return;
 		}
+		if(v.forest != this.forest)
+		{
+			throw new IllegalArgumentException("Vertex " + v.getIndex() + " is not in the forest of vertex " + this.getIndex() + "!");
+		}
 		
 		Vertex earlier;
 		Vertex later;
@@ -72,39 +118,68 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 		/* Ensures that the edge with minimum height value survives */
 		/* this becomes later */
 		/* v becomes earlier */
-		later.getVertex().parent = earlier.getVertex();
-		for(String s : later.incidentEdges.keySet())
+		this.forest.union(later.index, earlier.index);
+		/* From here on later holds the smaller maps, whether or not they were its own */
+		boolean swapped = later.incidentEdges.size() + later.incidentTriangles.size() > earlier.incidentEdges.size() + earlier.incidentTriangles.size();
+		if(swapped)
+		{
+			Vertex.swapIncidences(earlier, later);
+		}
+		/* The maps are walked by slot, which allocates nothing, in the order of their iterators */
+		LongMap<Edge> laterEdges = later.incidentEdges;
+		for(int i = 0; i < laterEdges.slots(); i++)
 		{
-			Edge incident = later.incidentEdges.get(s);
-			String oldHash = incident.toString();
-			//if(!s.equals(oldHash)) {System.out.println("Hashes are inequal!");}
+			Edge incident = laterEdges.valueAt(i);
+			if(incident == null)
+			{
+				continue;
+			}
 			incident.computeIndexRep(); // Update the index representation
-			String newHash = incident.toString();
 				
 			if(!incident.hasVanished())
 			{
 				Vertex otherVert = incident.getOtherVertex(earlier.getVertex()).getVertex();
+				long oldHash = Edge.key(later.key, otherVert.key);
+				long newHash = Edge.key(earlier.key, otherVert.key);
 				if(earlier.getVertex().incidentEdges.containsKey(newHash)) /* Incident and incidentEdges.get(newHash) are mirrored */
 				{
+					Edge existing = earlier.getVertex().incidentEdges.get(newHash);
 					Edge survivingMirror;
 					Edge vanishingMirror;
-					if(earlier.getVertex().incidentEdges.get(newHash).getHeightValue() > incident.getHeightValue())
+					/* The mirror from the perishing vertex survives if the other one is higher */
+					if(swapped ? !(incident.getHeightValue() > existing.getHeightValue()) : existing.getHeightValue() > incident.getHeightValue())
 					{
-						vanishingMirror = earlier.getVertex().incidentEdges.get(newHash);
+						vanishingMirror = existing;
 						survivingMirror = incident;
 						vanishingMirror.setVanished();
+						ContractionStatistics.mirrorEdgeMerged();
+						CollapseLog.mirrorEdgeVanished(vanishingMirror, swapped);
 						earlier.getVertex().incidentEdges.put(newHash, incident);
 						otherVert.incidentEdges.put(newHash, incident);
-						otherVert.incidentEdges.remove(oldHash);
+						if(swapped)
+						{
+							/* The neighbour keeps the vanished mirror under its old key, as it does when that mirror is the one moved */
+							otherVert.incidentEdges.put(oldHash, existing);
+						}else {
+							otherVert.incidentEdges.remove(oldHash);
+						}
 					}else {
 						vanishingMirror = incident;
-						survivingMirror = earlier.getVertex().incidentEdges.get(newHash);
+						survivingMirror = existing;
 						vanishingMirror.setVanished();
+						ContractionStatistics.mirrorEdgeMerged();
+						CollapseLog.mirrorEdgeVanished(vanishingMirror, !swapped);
 						/* The surviving mirror is already incident to vanished */
+						if(swapped)
+						{
+							otherVert.incidentEdges.remove(oldHash);
+						}
 					}
-					for(Triangle t : vanishingMirror.getIncidentTriangles())
+					LongMap<Triangle> mirrorTriangles = vanishingMirror.triangleMap();
+					for(int j = 0; j < mirrorTriangles.slots(); j++)
 					{
-						if(!t.hasVanished())
+						Triangle t = mirrorTriangles.valueAt(j);
+						if(t != null && !t.hasVanished())
 						{
 							t.replaceEdge(vanishingMirror, survivingMirror);
 							t.computeIndexRep();
@@ -119,42 +194,95 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 			}
 		}
 		
-		for(String s : later.incidentTriangles.keySet())
+		LongMap<Triangle> laterTriangles = later.incidentTriangles;
+		for(int i = 0; i < laterTriangles.slots(); i++)
 		{
-			Triangle t = later.incidentTriangles.get(s);
-			String newHash = t.toString();
-			
-			if(!t.hasVanished())
+			Triangle t = laterTriangles.valueAt(i);
+			if(t != null && !t.hasVanished())
 			{
+				t.computeIndexRep();
+				long newHash = t.getKey(earlier);
 				if(earlier.adjacentToTriangle(newHash)) /* t is a mirror */
 				{
-					if(t.compareTo(earlier.incidentTriangles.get(newHash)) < 0) /* If they are mirrors, the older one survives */
+					Triangle existing = earlier.incidentTriangles.get(newHash);
+					/* If they are mirrors, the older one survives */
+					if(swapped ? existing.compareTo(t) >= 0 : t.compareTo(existing) < 0)
 					{
-						earlier.incidentTriangles.get(newHash).setVanished(); /* The younger one has now merged into the older one  */
+						existing.setVanished(); /* The younger one has now merged into the older one  */
+						ContractionStatistics.mirrorTriangleMerged();
+						CollapseLog.mirrorTriangleVanished(existing, swapped);
 						earlier.incidentTriangles.put(newHash, t);
 					}else {
 						t.setVanished(); /* Older one vanishes */
+						ContractionStatistics.mirrorTriangleMerged();
+						CollapseLog.mirrorTriangleVanished(t, !swapped);
 					}
 				}else {
 					earlier.addTriangle(t);
 				}
 			}
 		}
+		earlier.invalidateSlack();
+	}
+	
+	/**
+	 * Exchanges the incidence maps of the two vertices together with the keys they are stored under.
+	 */
+	private static void swapIncidences(Vertex a, Vertex b)
+	{
+		LongMap<Edge> edges = a.incidentEdges;
+		a.incidentEdges = b.incidentEdges;
+		b.incidentEdges = edges;
+		LongMap<Triangle> triangles = a.incidentTriangles;
+		a.incidentTriangles = b.incidentTriangles;
+		b.incidentTriangles = triangles;
+		int key = a.key;
+		a.key = b.key;
+		b.key = key;
+	}
+	
+	/**
+	 * Discards the epsilon slack of the edges of the star of this vertex and of its incident triangles. Every
+	 * edge whose vertices, triangles or mirrors a union into this vertex changes is one of them.
+	 */
+	void invalidateSlack()
+	{
+		LongMap<Edge> edges = this.incidentEdges;
+		for(int i = 0; i < edges.slots(); i++)
+		{
+			Edge e = edges.valueAt(i);
+			if(e != null)
+			{
+				e.invalidateSlack();
+			}
+		}
+		LongMap<Triangle> triangles = this.incidentTriangles;
+		for(int i = 0; i < triangles.slots(); i++)
+		{
+			Triangle t = triangles.valueAt(i);
+			if(t != null)
+			{
+				t.getFirstEdge().invalidateSlack();
+				t.getSecondEdge().invalidateSlack();
+				t.getThirdEdge().invalidateSlack();
+			}
+		}
 	}
 	
 	/**
 	 * Updates the value assigned to the old key to be associated with the new key.
 	 * @param oldkey
 	 * @param newkey
+	 * @throws IllegalStateException if no edge is assigned to the old key, which union never leaves
 	 */
-	private void updateEdgeHash(String oldkey, String newkey)
+	private void updateEdgeHash(long oldkey, long newkey)
 	{
-		if(!this.getVertex().incidentEdges.containsKey(oldkey))
+		Edge e = this.getVertex().incidentEdges.remove(oldkey);
+		if(e == null)
 		{
-			System.out.println("Adding a null edge!");
+			throw new IllegalStateException("Vertex " + this.getIndex() + " has no edge under the key " + oldkey + "!");
 		}
-		this.getVertex().incidentEdges.put(newkey, this.getVertex().incidentEdges.get(oldkey));
-		this.getVertex().incidentEdges.remove(oldkey);
+		this.getVertex().incidentEdges.put(newkey, e);
 	}
 	
 	/**
@@ -166,28 +294,57 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 	{
 		return this.getVertex().index;
 	}
+	
+	/**
+	 * Returns the key of this vertex in the incidence maps, see Edge.key. It starts out as the index, but unlike
+	 * the index it is handed over by union, together with the maps of the vertex with more incidences.
+	 * @return int
+	 */
+	public int getKey()
+	{
+		return this.getVertex().key;
+	}
 		
 	/**
 	 * Determines if the incidentEdges structure contains the key parameter.
 	 * @param key
 	 * @return
 	 */
-	public boolean adjacentToEdge(String key)
+	public boolean adjacentToEdge(long key)
 	{
 		return this.getVertex().incidentEdges.containsKey(key);
 	}
 	
 	/**
 	 * Determines if this vertex is recorded as being incident to a triangle
-	 * with string representation equal (in the String sense) to the parameter. 
+	 * whose other two vertices have the packed key given by the parameter, see Triangle.getKey(Vertex). 
 	 * @param key
 	 * @return
 	 */
-	public boolean adjacentToTriangle(String key)
+	public boolean adjacentToTriangle(long key)
 	{
 		return this.getVertex().incidentTriangles.containsKey(key);
 	}
 		
+	/**
+	 * Determines if this vertex is incident to a triangle, which has not vanished, that also 
+	 * contains both parameters. 
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public boolean adjacentToTriangle(Vertex first, Vertex second)
+	{
+		for(Triangle t : this.getVertex().incidentTriangles.values())
+		{
+			if(!t.hasVanished() && t.containsVertex(first) && t.containsVertex(second))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+		
 	/**
 	 * Adds the parameter to internal representation. 
 	 * @param e Edge to be inserted
@@ -198,7 +355,8 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 		{
 			throw new IllegalArgumentException("Cannot add vanished edge!");
 		}
-		if(this.getVertex().incidentEdges.containsKey(e.toString())) 
+		e.computeIndexRep();
+		if(this.getVertex().incidentEdges.containsKey(e.getKey())) 
 		{
 			throw new IllegalArgumentException("Vertex " + this.toString() + " already is incident to edge " + e.toString());
 		}
@@ -207,8 +365,7 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 			throw new IllegalArgumentException("The input edge must be incident to this vertex!");
 		}
 
-		e.computeIndexRep();
-		this.getVertex().incidentEdges.put(e.toString(), e);
+		this.getVertex().incidentEdges.put(e.getKey(), e);
 	}
 	
 	/**
@@ -221,7 +378,8 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 		{
 			throw new IllegalArgumentException("Cannot add vanished triangle!");
 		}
-		if(this.getVertex().incidentTriangles.containsKey(t.toString()))
+		t.computeIndexRep();
+		if(this.getVertex().incidentTriangles.containsKey(t.getKey(this.getVertex())))
 		{
 			throw new IllegalArgumentException("Vertex: " + this.toString() + " already is incident to triangle " + t.toString());
 		}
@@ -230,11 +388,31 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 			throw new IllegalArgumentException("The input triangle must be incident to this vertex!");
 		}
 		
-		t.computeIndexRep();
-		this.getVertex().incidentTriangles.put(t.toString(), t);
+		this.getVertex().incidentTriangles.put(t.getKey(this.getVertex()), t);
 		
 	}
 		
+	/**
+	 * Removes the incident edges and triangles which satisfy the filter, given their keys in the incidence
+	 * maps, from the maps of this vertex, which is not necessarily its own vertex. Used to drop the parts of
+	 * the complex that are no longer held in memory; no later contraction may need the removed simplices.
+	 * @param filter
+	 */
+	void removeIncident(LongMap.EntryFilter<Simplex> filter)
+	{
+		this.incidentEdges.removeIf(filter);
+		this.incidentTriangles.removeIf(filter);
+	}
+	
+	/**
+	 * Drops this vertex from its forest, once it has perished or is no longer held in memory and nothing that is
+	 * refers to it, see VertexForest.release.
+	 */
+	void release()
+	{
+		this.forest.release(this.index);
+	}
+	
 	/**
 	 * Returns the number of edges incident to this vertex
 	 * @return the number of edges of which this vertex is a constituent
@@ -277,6 +455,14 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 		this.getVertex().isBoundary = true;
 	}
 	
+	/**
+	 * Sets this vertex not to be a boundary vertex, undoing setBoundary
+	 */
+	public void clearBoundary()
+	{
+		this.getVertex().isBoundary = false;
+	}
+	
 	/**
 	 * Determines if this vertex is on a boundary.
 	 * @return boolean
@@ -292,9 +478,36 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 	 */
 	public boolean hasVanished()
 	{
-		return this.equals(this.getVertex());
+		return this.perished;
+	}
+	
+	/**
+	 * Records whether this vertex has perished, as VertexForest merges and restores its set.
+	 * @param perished
+	 */
+	void setPerished(boolean perished)
+	{
+		this.perished = perished;
 	}
 		
+	/**
+	 * Returns the incident edges map of this vertex itself, for LinkCondition and the loops which walk it by slot.
+	 * @return LongMap
+	 */
+	LongMap<Edge> edgeMap()
+	{
+		return this.incidentEdges;
+	}
+	
+	/**
+	 * Returns the incident triangles map of this vertex itself, for LinkCondition and the loops which walk it by slot.
+	 * @return LongMap
+	 */
+	LongMap<Triangle> triangleMap()
+	{
+		return this.incidentTriangles;
+	}
+	
 	/**
 	 * Gets the values of the incident edges hashmap. 
 	 * @return
@@ -333,7 +546,7 @@ public class Vertex implements Simplex,Comparable<Vertex>{
 	@Override
 	public int hashCode()
 	{
-		return this.getVertex().toString().hashCode();
+		return this.getVertex().index;
 	}
 
 	public int compareTo(Vertex arg0)
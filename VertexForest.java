@@ -0,0 +1,166 @@
+package contract;
+
+import java.util.Arrays;
+
+/**
+ * The partition of the vertices of a complex into the sets that have been contracted into one vertex. The sets
+ * are kept in a UnionFind over the vertex indices, merged by rank, and every root records the vertex that
+ * survived for its set, which is the vertex Vertex.getVertex returns. The vertex that survives is chosen by
+ * Vertex.union and does not have to be the root, so the trees stay shallow however the contractions chain. A
+ * vertex that has not perished is its own vertex without a lookup, see Vertex.setPerished, so the forest is
+ * only searched for the vertices that have.
+ *
+ * Every vertex of a complex has to be in the same forest, at its index. Vertices can be added concurrently as
+ * long as the forest was constructed large enough for them, see ParallelLoader.
+ */
+public class VertexForest {
+
+	private UnionFind sets;
+	/* survivor[root] is the index of the vertex that survived for the set of root */
+	private int[] survivor;
+	private Vertex[] vertices;
+	/* Triples of a root, its former survivor and the vertex that perished, for every union since the outermost checkpoint */
+	private int[] undo;
+	private int undoSize;
+
+	/**
+	 * Constructs a forest with room for the vertices with indices below the capacity, which grows as needed.
+	 * @param capacity
+	 */
+	public VertexForest(int capacity)
+	{
+		this.sets = new UnionFind(capacity);
+		this.survivor = new int[capacity];
+		this.vertices = new Vertex[capacity];
+		this.undo = new int[0];
+	}
+
+	/**
+	 * Adds the vertex as a singleton set at its index.
+	 * @param v
+	 * @param index
+	 */
+	void add(Vertex v, int index)
+	{
+		if(index >= this.vertices.length)
+		{
+			int capacity = Math.max(index + 1, 2*this.vertices.length);
+			this.survivor = Arrays.copyOf(this.survivor, capacity);
+			this.vertices = Arrays.copyOf(this.vertices, capacity);
+			this.sets.ensureSize(capacity);
+		}
+		if(this.vertices[index] != null)
+		{
+			throw new IllegalArgumentException("The forest already has vertex " + index + "!");
+		}
+		this.survivor[index] = index;
+		this.vertices[index] = v;
+	}
+
+	/**
+	 * Determines if the forest holds a vertex at the given index.
+	 * @param index
+	 * @return boolean
+	 */
+	boolean contains(int index)
+	{
+		return index >= 0 && index < this.vertices.length && this.vertices[index] != null;
+	}
+
+	/**
+	 * Returns the vertex that survived for the set of the vertex with the given index.
+	 * @param index
+	 * @return Vertex
+	 */
+	Vertex getVertex(int index)
+	{
+		return this.vertices[this.survivor[this.sets.find(index)]];
+	}
+
+	/**
+	 * Merges the sets of the two vertices, which have not perished, with the second one surviving for the merged
+	 * set.
+	 * @param perishing
+	 * @param surviving
+	 */
+	void union(int perishing, int surviving)
+	{
+		int root = this.sets.union(perishing, surviving);
+		if(root < 0)
+		{
+			return;
+		}
+		if(this.sets.inTrial())
+		{
+			if(this.undoSize + 3 > this.undo.length)
+			{
+				this.undo = Arrays.copyOf(this.undo, Math.max(48, 2*this.undo.length));
+			}
+			this.undo[this.undoSize++] = root;
+			this.undo[this.undoSize++] = this.survivor[root];
+			this.undo[this.undoSize++] = perishing;
+		}
+		this.survivor[root] = surviving;
+		this.vertices[perishing].setPerished(true);
+	}
+
+	/**
+	 * Opens a trial in which unions can be undone, see UnionFind.checkpoint. Only the sets are restored by
+	 * rollback, not the incidences Vertex.union moves to the surviving vertex, so a trial is for what-if
+	 * evaluation on the partition, such as which vertices a sequence of contractions would merge.
+	 * @return the checkpoint to pass to rollback or commit
+	 */
+	public int checkpoint()
+	{
+		return this.sets.checkpoint();
+	}
+
+	/**
+	 * @return whether a trial is open, so that the unions made since its checkpoint may still be undone
+	 */
+	public boolean inTrial()
+	{
+		return this.sets.inTrial();
+	}
+
+	/**
+	 * Undoes every union made since the checkpoint and closes its trial.
+	 * @param checkpoint
+	 */
+	public void rollback(int checkpoint)
+	{
+		/* The sets record three ints for every union, as this does */
+		while(this.undoSize > checkpoint)
+		{
+			int perishing = this.undo[--this.undoSize];
+			int former = this.undo[--this.undoSize];
+			int root = this.undo[--this.undoSize];
+			this.survivor[root] = former;
+			this.vertices[perishing].setPerished(false);
+		}
+		this.sets.rollback(checkpoint);
+	}
+
+	/**
+	 * Keeps the unions made since the checkpoint and closes its trial.
+	 * @param checkpoint
+	 */
+	public void commit(int checkpoint)
+	{
+		this.sets.commit(checkpoint);
+		if(!this.sets.inTrial())
+		{
+			this.undoSize = 0;
+		}
+	}
+
+	/**
+	 * Drops the reference to the vertex with the given index, which has perished or is no longer held in memory,
+	 * see OutOfCoreContraction. The vertex is no longer returned for its set.
+	 * @param index
+	 */
+	void release(int index)
+	{
+		this.vertices[index] = null;
+	}
+}
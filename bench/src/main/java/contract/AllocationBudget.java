@@ -0,0 +1,144 @@
+package contract;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * Enforces the allocation budget of the contraction loop. Contracts a side x side terrain with the loop of
+ * Driver.contract, ContractionScheduler.next and deactivate, Edge.isContractible, Edge.contract and
+ * Driver.touchStar, a few times to warm up and MEASURED times more with the allocated bytes counter of
+ * com.sun.management.ThreadMXBean. The round which allocated least is checked: an allocation of the loop shows
+ * in every round, while the JIT compiling or deoptimizing the loop only shows in some. The scheduling and the
+ * contractibility tests have to allocate nothing. A contraction is allowed to allocate, since Vertex.union grows
+ * the incidence maps of the survivor, but only CONTRACT_BUDGET bytes per contraction on average: the maps double
+ * when they grow, so the average stays a small constant however large the terrain.
+ *
+ * Usage: AllocationBudget [side [epsilon [warmups]]], by default a 316 x 316 terrain, epsilon 5 and 3 warm ups.
+ * The test phase of the bench module runs it on a 128 x 128 terrain, so going over the budget fails the build.
+ */
+public class AllocationBudget {
+
+	/* The mesh of MeshBenchmark, set up by hand instead of by JMH */
+	private static class Mesh extends MeshBenchmark {
+	}
+
+	/* The bytes a contraction may allocate on average, a few times what the maps growing take */
+	private static final long CONTRACT_BUDGET = 1024;
+	/* The number of rounds measured after the warm ups */
+	private static final int MEASURED = 3;
+
+	private long examined;
+	private long contracted;
+	private long scheduleBytes;
+	private long checkBytes;
+	private long contractBytes;
+
+	public static void main(String[] args) throws Exception
+	{
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 316;
+		double epsilon = args.length > 1 ? Double.parseDouble(args[1]) : 5.0;
+		int warmups = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported())
+		{
+			throw new IllegalStateException("The JVM does not count allocated bytes per thread!");
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		Mesh mesh = new Mesh();
+		mesh.side = side;
+		mesh.writeMesh();
+		try {
+			AllocationBudget budget = null;
+			for(int round = 0; round < warmups + MEASURED; round++)
+			{
+				AllocationBudget next = new AllocationBudget();
+				next.contract(mesh, epsilon, threads);
+				if(budget == null || round <= warmups || next.getBytes() < budget.getBytes())
+				{
+					budget = next;
+				}
+			}
+			System.out.println("scheduled " + budget.examined + " edges, " + budget.scheduleBytes + " bytes in next, deactivate and touchStar");
+			System.out.println("examined " + budget.examined + " edges, " + budget.checkBytes + " bytes in isContractible, "
+					+ (double)budget.checkBytes / Math.max(1, budget.examined) + " per edge");
+			System.out.println("contracted " + budget.contracted + " edges, " + budget.contractBytes + " bytes in contract, "
+					+ (double)budget.contractBytes / Math.max(1, budget.contracted) + " per contraction");
+			if(budget.scheduleBytes != 0)
+			{
+				throw new IllegalStateException("The scheduling allocated " + budget.scheduleBytes + " bytes!");
+			}
+			if(budget.checkBytes != 0)
+			{
+				throw new IllegalStateException("Edge.isContractible allocated " + budget.checkBytes + " bytes!");
+			}
+			if(budget.contractBytes > CONTRACT_BUDGET * budget.contracted)
+			{
+				throw new IllegalStateException("Edge.contract allocated " + budget.contractBytes + " bytes, more than " + CONTRACT_BUDGET
+						+ " per contraction!");
+			}
+		}finally {
+			mesh.deleteMesh();
+		}
+	}
+
+	private long getBytes()
+	{
+		return this.scheduleBytes + this.checkBytes + this.contractBytes;
+	}
+
+	/**
+	 * Reads the mesh and contracts it until it is stable with the loop of Driver.contract, counting the bytes the
+	 * current thread allocates in the scheduling, in every call of Edge.isContractible and in every contraction.
+	 */
+	private void contract(Mesh mesh, double epsilon, com.sun.management.ThreadMXBean threads)
+	{
+		long id = Thread.currentThread().getId();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		mesh.read(new ArrayList<Vertex>(), edges, new ArrayList<Triangle>());
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		int basePosition = Integer.MAX_VALUE;
+		for(Edge e : edges)
+		{
+			basePosition = Math.min(basePosition, e.getPosition());
+		}
+		int[] rankOfPosition = new int[edges.size()];
+		double[] startingTimes = new double[edges.size()];
+		for(int i = 0; i < edges.size(); i++)
+		{
+			rankOfPosition[edges.get(i).getPosition() - basePosition] = i;
+			startingTimes[i] = edges.get(i).getStartingTime();
+		}
+		ContractionScheduler scheduler = new ContractionScheduler(startingTimes);
+		long formerCount = -1;
+		while(this.contracted > formerCount)
+		{
+			formerCount = this.contracted;
+			double currentTime = Double.NEGATIVE_INFINITY;
+			/* Whatever is allocated from before to the next read of the counter is scheduling */
+			long before = threads.getThreadAllocatedBytes(id);
+			for(int i = scheduler.next(0, currentTime); i >= 0; i = scheduler.next(i + 1, currentTime))
+			{
+				Edge e = edges.get(i);
+				scheduler.deactivate(i);
+				long checking = threads.getThreadAllocatedBytes(id);
+				this.scheduleBytes += checking - before;
+				this.examined++;
+				boolean contractible = e.isContractible(epsilon);
+				before = threads.getThreadAllocatedBytes(id);
+				this.checkBytes += before - checking;
+				if(contractible)
+				{
+					currentTime = e.getEndingTime();
+					e.contract();
+					long done = threads.getThreadAllocatedBytes(id);
+					this.contractBytes += done - before;
+					this.contracted++;
+					Driver.touchStar(e.getFirstVertex(), scheduler, rankOfPosition, basePosition);
+					before = done;
+				}
+			}
+			this.scheduleBytes += threads.getThreadAllocatedBytes(id) - before;
+		}
+	}
+}
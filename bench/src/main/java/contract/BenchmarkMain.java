@@ -0,0 +1,24 @@
+package contract;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so that the allocation rate per operation is reported next to the
+ * time. Takes the usual JMH command line, for example a regular expression selecting the benchmarks, -p side=100
+ * to fix the mesh size or -prof jfr to add another profiler.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception
+	{
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,98 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edge.contract, which merges the vertices of the edge with Vertex.union. Contracting changes the mesh, so
+ * every iteration reads the mesh again and picks CONTRACTIONS contractible edges in persistence order whose
+ * closed stars are pairwise disjoint, which keeps each of them contractible while the others are contracted.
+ * The iteration then contracts all of them in one invocation, and the scores are per contraction.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ContractBenchmark extends MeshBenchmark {
+
+	static final int CONTRACTIONS = 256;
+
+	private Edge[] picked;
+
+	@Setup(Level.Iteration)
+	public void pickEdges()
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		this.read(vertices, edges, new ArrayList<Triangle>());
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edges);
+		boolean[] claimed = new boolean[vertices.size()];
+		this.picked = new Edge[CONTRACTIONS];
+		int count = 0;
+		for(int i = 0; i < edges.size() && count < CONTRACTIONS; i++)
+		{
+			Edge e = edges.get(i);
+			if(e.isContractible(Double.POSITIVE_INFINITY) && !this.isClaimed(e, claimed))
+			{
+				this.claim(e.getFirstVertex(), claimed);
+				this.claim(e.getSecondVertex(), claimed);
+				this.picked[count++] = e;
+			}
+		}
+		if(count < CONTRACTIONS)
+		{
+			throw new IllegalStateException("Only " + count + " disjoint contractible edges in a grid of side " + this.side + "!");
+		}
+	}
+
+	private boolean isClaimed(Edge e, boolean[] claimed)
+	{
+		for(Vertex v : new Vertex[] {e.getFirstVertex(), e.getSecondVertex()})
+		{
+			if(claimed[v.getIndex()])
+			{
+				return true;
+			}
+			for(Edge f : v.getIncidentEdges())
+			{
+				if(claimed[f.getOtherVertex(v).getIndex()])
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void claim(Vertex v, boolean[] claimed)
+	{
+		claimed[v.getIndex()] = true;
+		for(Edge f : v.getIncidentEdges())
+		{
+			claimed[f.getOtherVertex(v).getIndex()] = true;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONTRACTIONS)
+	public void contract()
+	{
+		for(Edge e : this.picked)
+		{
+			e.contract();
+		}
+	}
+}
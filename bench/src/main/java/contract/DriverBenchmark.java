@@ -0,0 +1,43 @@
+package contract;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full run of Driver.contract limited to one pass: reading the files, sorting, one pass of contractions and
+ * writing the contracted files, with and without ContractionStatistics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DriverBenchmark extends MeshBenchmark {
+
+	@Param({"1.0", "5.0"})
+	public double epsilon;
+
+	@Benchmark
+	public ResultPair contract() throws IOException
+	{
+		return Driver.contract(this.path, NAME, this.epsilon, 1, -1);
+	}
+
+	/**
+	 * The same run with ContractionStatistics, to measure the cost of the instrumentation.
+	 */
+	@Benchmark
+	public ResultPair contractInstrumented() throws IOException
+	{
+		return Driver.contract(this.path, NAME, this.epsilon, 1, -1, new ContractionStatistics());
+	}
+}
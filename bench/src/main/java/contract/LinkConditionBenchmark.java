@@ -0,0 +1,159 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edge.linkCondition, which runs LinkCondition, against linkConditionReference, the check on the vertices and
+ * their iterators it replaced, on high valence vertices. The mesh is first contracted for the given number
+ * of passes of Driver.contract without an epsilon bound, which leaves survivors of high degree, and the scores
+ * average over the edges left with an endpoint of at least minDegree edges.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkConditionBenchmark extends MeshBenchmark {
+
+	@Param({"4"})
+	public int passes;
+
+	@Param({"16"})
+	public int minDegree;
+
+	/**
+	 * The edges of high valence, a state of its own so that it is set up after the mesh is written.
+	 */
+	@State(Scope.Benchmark)
+	public static class Stars {
+
+		Edge[] edges;
+
+		@Setup(Level.Trial)
+		public void contractMesh(LinkConditionBenchmark mesh)
+		{
+			ArrayList<Edge> edgeList = new ArrayList<Edge>();
+			mesh.read(new ArrayList<Vertex>(), edgeList, new ArrayList<Triangle>());
+			Edge.setPersistenceSort();
+			PersistenceSort.sort(edgeList);
+			for(int pass = 0; pass < mesh.passes; pass++)
+			{
+				double currentTime = Double.NEGATIVE_INFINITY;
+				for(Edge e : edgeList)
+				{
+					if(!e.hasVanished() && e.getStartingTime() > currentTime && e.isContractible(Double.POSITIVE_INFINITY))
+					{
+						currentTime = e.getEndingTime();
+						e.contract();
+					}
+				}
+			}
+			ArrayList<Edge> high = new ArrayList<Edge>();
+			for(Edge e : edgeList)
+			{
+				if(!e.hasVanished() && e.isViable()
+						&& Math.max(e.getFirstVertex().numberOfEdges(), e.getSecondVertex().numberOfEdges()) >= mesh.minDegree)
+				{
+					high.add(e);
+				}
+			}
+			if(high.isEmpty())
+			{
+				throw new IllegalStateException("No edge has a vertex of degree " + mesh.minDegree + " after " + mesh.passes + " passes!");
+			}
+			this.edges = high.toArray(new Edge[0]);
+		}
+	}
+
+	@Benchmark
+	public boolean linkCondition(Stars stars, PredicateBenchmark.Cursor cursor)
+	{
+		return cursor.next(stars.edges).linkCondition();
+	}
+
+	@Benchmark
+	public boolean linkConditionReference(Stars stars, PredicateBenchmark.Cursor cursor)
+	{
+		return LinkConditionBenchmark.linkConditionReference(cursor.next(stars.edges));
+	}
+
+	/**
+	 * The link condition as it was first written in Edge, on the vertices and their iterators, kept here as the
+	 * reference LinkCondition is benchmarked against; the two always agree.
+	 * @param edge
+	 * @return boolean
+	 */
+	static boolean linkConditionReference(Edge edge)
+	{
+		Vertex vert;
+		Vertex mirrorVert;
+		
+		if(edge.getFirstVertex().numberOfEdges() < edge.getSecondVertex().numberOfEdges())
+		{
+			vert = edge.getFirstVertex().getVertex();
+			mirrorVert = edge.getSecondVertex().getVertex();
+		}else {
+			vert = edge.getSecondVertex().getVertex();
+			mirrorVert = edge.getFirstVertex().getVertex();
+		}
+		
+		for(Edge e : vert.getIncidentEdges())
+		{
+			Vertex otherVert = e.getOtherVertex(vert).getVertex();
+			if(otherVert.equals(mirrorVert) || e.hasVanished())
+			{
+				// Vanishing one doesn't matter. 
+				continue;
+			}
+			
+			//So at this point we know that the other vert is not a mirror
+			//Need to check if the mirrored vert contains it. 
+			//A common neighbour is only allowed if it is the apex of a triangle incident to this edge.
+			
+			if(mirrorVert.adjacentToEdge(Edge.key(mirrorVert, otherVert)) && !edge.hasApex(otherVert))
+			{
+				return false;
+			}
+		}
+		
+		/* So at this point we know that there is not triangle that is getting filled in */
+		/* We don't know about mirrored triangles, however */
+		/* If there is a pair of mirrored triangles, then that means collapsing them */
+		/* Into a single triangle results in destroying a 2-cycle */
+		/* Hence, check for mirrored triangles */
+		
+		for(Triangle t : vert.getIncidentTriangles())
+		{
+			/* Skip vanishing triangles */
+			if(!t.hasVanished() && !t.containsVertex(mirrorVert))
+			{
+				Vertex first = t.getFirstOtherVertex(vert);
+				Vertex second = t.getSecondOtherVertex(vert);
+				if(mirrorVert.adjacentToEdge(Edge.key(mirrorVert, first)) && mirrorVert.adjacentToEdge(Edge.key(mirrorVert, second))
+						&& mirrorVert.adjacentToTriangle(first, second))
+				{
+					return false;
+					/* Does not pass the link condition: destroying a 2-cycle! */
+				}
+			}
+		}
+		
+		/* At this point, there are no mirrored triangles which cause collapse */
+		
+		return true;
+	}
+}
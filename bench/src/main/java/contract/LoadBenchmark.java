@@ -0,0 +1,33 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the text files into Vertex, Edge and Triangle objects with Driver.getUnstructured*.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark extends MeshBenchmark {
+
+	@Benchmark
+	public ArrayList<Triangle> load()
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		this.read(vertices, edges, triangles);
+		return triangles;
+	}
+}
@@ -0,0 +1,73 @@
+package contract;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base state of the benchmarks. Writes a side x side terrain of TerrainGenerator to a temporary directory in the
+ * layout Driver.contract expects, path/name/nameData.txt and so on, and deletes it after the trial.
+ */
+@State(Scope.Benchmark)
+public abstract class MeshBenchmark {
+
+	static final String NAME = "Bench";
+	private static final long SEED = 20190226L;
+
+	/* Side of the grid, so that the mesh has side^2 vertices, about 3 side^2 edges and 2 side^2 triangles */
+	@Param({"100", "316", "1000"})
+	public int side;
+
+	String path;
+	private File directory;
+
+	@Setup(Level.Trial)
+	public void writeMesh() throws IOException
+	{
+		this.directory = Files.createTempDirectory("contract-bench").toFile();
+		this.path = this.directory.getPath() + File.separator;
+		new TerrainGenerator(this.side, this.side, SEED).writeText(this.path, NAME);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteMesh()
+	{
+		MeshBenchmark.delete(this.directory);
+	}
+
+	String fileName(String suffix)
+	{
+		return this.path + NAME + "/" + NAME + suffix;
+	}
+
+	/**
+	 * Reads the mesh with Driver.getUnstructuredVertices, getUnstructuredEdges and getUnstructuredTriangles.
+	 */
+	void read(ArrayList<Vertex> vertices, ArrayList<Edge> edges, ArrayList<Triangle> triangles)
+	{
+		vertices.addAll(Driver.getUnstructuredVertices(this.fileName("Data.txt")));
+		LongMap<Edge> edgeMap = Driver.getUnstructuredEdges(this.fileName("Edges.txt"), vertices, edges);
+		triangles.addAll(Driver.getUnstructuredTriangles(this.fileName("Triangles.txt"), edgeMap));
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+			{
+				MeshBenchmark.delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,120 @@
+package contract;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the running time of Driver.contractParallel and Driver.contractSpeculative against Driver.contract
+ * on the same input. Throughput is reported in contracted edges per second, and for the speculative workers
+ * also the fraction of attempted contractions that were aborted because of conflicts. Every run also reports
+ * its iterations, relative to those of Driver.contract, and the bound epsilon times iterations they give, since
+ * the parallel engines take more passes than Driver.contract to converge, see ParallelContraction.
+ *
+ * Arguments: path name epsilon maxIts [repetitions] [threads...]. The thread counts default to powers of two
+ * up to the number of available processors. Every configuration is run once to warm up, then the given number
+ * of times, and the median contraction time is reported together with the speedup over Driver.contract.
+ */
+public class ParallelBenchmark {
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 4)
+		{
+			System.out.println("Usage: ParallelBenchmark path name epsilon maxIts [repetitions] [threads...]");
+			return;
+		}
+		String path = args[0];
+		String name = args[1];
+		double epsilon = Double.parseDouble(args[2]);
+		int maxIts = Integer.parseInt(args[3]);
+		int repetitions = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+		int[] threads;
+		if(args.length > 5)
+		{
+			threads = new int[args.length - 5];
+			for(int i = 5; i < args.length; i++)
+			{
+				threads[i - 5] = Integer.parseInt(args[i]);
+			}
+		}else {
+			int processors = Runtime.getRuntime().availableProcessors();
+			int count = 0;
+			for(int t = 1; t <= processors; t <<= 1)
+			{
+				count++;
+			}
+			threads = new int[count];
+			for(int i = 0, t = 1; i < count; i++, t <<= 1)
+			{
+				threads[i] = t;
+			}
+		}
+
+		long[] times = new long[repetitions];
+		ResultPair ret = Driver.contract(path, name, epsilon, maxIts, -1);
+		for(int r = 0; r < repetitions; r++)
+		{
+			ret = Driver.contract(path, name, epsilon, maxIts, -1);
+			times[r] = ret.getMillis();
+		}
+		long sequential = ParallelBenchmark.median(times);
+		int sequentialIts = ret.getItCount();
+		System.out.println("contract\tTime: " + sequential + " ms\tContracted: " + ret.getContracted() + " edges\tIterations: " + sequentialIts
+				+ "\tBound: " + epsilon * sequentialIts + "\tThroughput: " + ParallelBenchmark.throughput(ret.getContracted(), sequential) + " edges/s");
+
+		for(int t : threads)
+		{
+			ret = Driver.contractParallel(path, name, epsilon, maxIts, -1, t);
+			for(int r = 0; r < repetitions; r++)
+			{
+				ret = Driver.contractParallel(path, name, epsilon, maxIts, -1, t);
+				times[r] = ret.getMillis();
+			}
+			long parallel = ParallelBenchmark.median(times);
+			System.out.println("contractParallel(" + t + ")\tTime: " + parallel + " ms\tContracted: " + ret.getContracted() + " edges"
+					+ ParallelBenchmark.iterations(ret.getItCount(), ret.getItCount(), sequentialIts, epsilon)
+					+ "\tThroughput: " + ParallelBenchmark.throughput(ret.getContracted(), parallel) + " edges/s"
+					+ "\tSpeedup: " + String.format("%.2f", (double)sequential / Math.max(parallel, 1)));
+
+			SpeculativeResult spec = Driver.contractSpeculative(path, name, epsilon, maxIts, -1, t);
+			/* The iterations depend on the aborts, which depend on the timing of the workers */
+			int minRunIts = Integer.MAX_VALUE;
+			int maxRunIts = 0;
+			for(int r = 0; r < repetitions; r++)
+			{
+				spec = Driver.contractSpeculative(path, name, epsilon, maxIts, -1, t);
+				times[r] = spec.getMillis();
+				minRunIts = Math.min(minRunIts, spec.getItCount());
+				maxRunIts = Math.max(maxRunIts, spec.getItCount());
+			}
+			long speculative = ParallelBenchmark.median(times);
+			System.out.println("contractSpeculative(" + t + ")\tTime: " + speculative + " ms\tContracted: " + spec.getContracted() + " edges"
+					+ ParallelBenchmark.iterations(minRunIts, maxRunIts, sequentialIts, epsilon)
+					+ "\tThroughput: " + ParallelBenchmark.throughput(spec.getContracted(), speculative) + " edges/s"
+					+ "\tAborts: " + String.format("%.2f", 100*spec.getAbortRate()) + "% of " + spec.getAttempts()
+					+ "\tSpeedup: " + String.format("%.2f", (double)sequential / Math.max(speculative, 1)));
+		}
+	}
+
+	/**
+	 * Formats the iterations of the runs of an engine, which may differ from run to run, relative to the
+	 * iterations of Driver.contract, and the bound the most of them give.
+	 */
+	private static String iterations(int minIts, int maxIts, int sequentialIts, double epsilon)
+	{
+		return "\tIterations: " + (minIts == maxIts ? "" + maxIts : minIts + "-" + maxIts)
+				+ " (" + String.format("%.2f", (double)maxIts / Math.max(sequentialIts, 1)) + "x contract)\tBound: " + epsilon * maxIts;
+	}
+
+	private static long throughput(int contracted, long millis)
+	{
+		return Math.round(1000.0 * contracted / Math.max(millis, 1));
+	}
+
+	private static long median(long[] times)
+	{
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
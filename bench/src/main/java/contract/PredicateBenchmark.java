@@ -0,0 +1,73 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The contractibility tests Edge.linkCondition and Edge.isEpsilonSat on the uncontracted mesh. Every operation
+ * tests the next edge in persistence order, cycling through all of them, so that the scores average over the
+ * whole mesh rather than over one star.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark extends MeshBenchmark {
+
+	@Param({"1.0"})
+	public double epsilon;
+
+	private Edge[] edges;
+
+	@Setup(Level.Trial)
+	public void readMesh()
+	{
+		ArrayList<Edge> edgeList = new ArrayList<Edge>();
+		this.read(new ArrayList<Vertex>(), edgeList, new ArrayList<Triangle>());
+		Edge.setPersistenceSort();
+		PersistenceSort.sort(edgeList);
+		this.edges = edgeList.toArray(new Edge[0]);
+	}
+
+	/**
+	 * Position of the next edge, per thread.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		int next;
+
+		Edge next(Edge[] edges)
+		{
+			Edge e = edges[this.next];
+			this.next = this.next + 1 == edges.length ? 0 : this.next + 1;
+			return e;
+		}
+	}
+
+	@Benchmark
+	public boolean linkCondition(Cursor cursor)
+	{
+		return cursor.next(this.edges).linkCondition();
+	}
+
+	@Benchmark
+	public boolean isEpsilonSat(Cursor cursor)
+	{
+		return cursor.next(this.edges).isEpsilonSat(this.epsilon);
+	}
+}
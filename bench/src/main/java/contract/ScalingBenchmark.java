@@ -0,0 +1,139 @@
+package contract;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+
+/**
+ * Runs Driver.contract end to end on terrains of TerrainGenerator of growing size, to show where the contraction
+ * stops scaling. For every size the terrain is written to the directory, then contracted once for every epsilon.
+ *
+ * Reported per size: the time to generate the files and the heap retained per simplex by the Vertex, Edge and
+ * Triangle objects of the loaded complex. Reported per run: the wall time of Driver.contract including reading and
+ * writing, the contraction time of its ResultPair, contractions per second of contraction time, and the peak heap
+ * in total and per simplex. The peak is the sum of the peaks of the heap memory pools, which may have been reached
+ * at different times, so it is an upper bound. A run that runs out of memory is reported and ends the benchmark.
+ *
+ * Arguments: directory maxIts epsilon[,epsilon...] vertices[,vertices...] [binary]. Sizes may be given as 1e6.
+ * With binary the terrains are written as binary meshes and read with Driver.setBinaryInput.
+ */
+public class ScalingBenchmark {
+
+	private static final String NAME = "Scale";
+	private static final long SEED = 1;
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 4)
+		{
+			System.out.println("Usage: ScalingBenchmark directory maxIts epsilon[,epsilon...] vertices[,vertices...] [binary]");
+			return;
+		}
+		String path = args[0].endsWith(File.separator) ? args[0] : args[0] + File.separator;
+		int maxIts = Integer.parseInt(args[1]);
+		String[] epsilons = args[2].split(",");
+		String[] sizes = args[3].split(",");
+		boolean binary = args.length > 4 && args[4].equals("binary");
+		Driver.setBinaryInput(binary);
+
+		for(String size : sizes)
+		{
+			TerrainGenerator generator = TerrainGenerator.square((long)Double.parseDouble(size), SEED);
+			long simplices = (long)generator.getVertexCount() + generator.getEdgeCount() + generator.getTriangleCount();
+			try {
+				long initial = System.currentTimeMillis();
+				if(binary)
+				{
+					new File(path + NAME).mkdirs();
+					generator.writeBinary(path + NAME + "/" + NAME + ".mesh");
+				}else {
+					generator.writeText(path, NAME);
+				}
+				long generated = System.currentTimeMillis() - initial;
+
+				long before = ScalingBenchmark.usedHeap();
+				ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+				ArrayList<Edge> edges = new ArrayList<Edge>();
+				ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+				generator.buildObjects(vertices, edges, triangles);
+				long retained = ScalingBenchmark.usedHeap() - before;
+				System.out.println("Vertices: " + generator.getVertexCount() + "\tSimplices: " + simplices + "\tGenerated: " + generated + " ms"
+						+ "\tRetained: " + String.format("%.1f", (double)retained / simplices) + " bytes/simplex");
+				vertices = null;
+				edges = null;
+				triangles = null;
+
+				for(String epsilon : epsilons)
+				{
+					ScalingBenchmark.usedHeap();
+					ScalingBenchmark.resetPeaks();
+					long start = System.nanoTime();
+					ResultPair ret = Driver.contract(path, NAME, Double.parseDouble(epsilon), maxIts, -1);
+					long wall = (System.nanoTime() - start) / 1000000;
+					long peak = ScalingBenchmark.peakHeap();
+					System.out.println("Vertices: " + generator.getVertexCount() + "\tEpsilon: " + epsilon
+							+ "\tWall: " + wall + " ms\tContraction: " + ret.getMillis() + " ms\tContracted: " + ret.getContracted() + " edges\tIterations: " + ret.getItCount()
+							+ "\tThroughput: " + Math.round(1000.0 * ret.getContracted() / Math.max(ret.getMillis(), 1)) + " contractions/s"
+							+ "\tPeak heap: " + (peak >> 20) + " MB\t" + String.format("%.1f", (double)peak / simplices) + " bytes/simplex");
+				}
+			}catch(OutOfMemoryError e) {
+				System.out.println("Vertices: " + generator.getVertexCount() + "\tOut of memory with a maximum heap of " + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+				return;
+			}finally {
+				ScalingBenchmark.delete(new File(path + NAME));
+			}
+		}
+	}
+
+	/**
+	 * Returns the heap in use after a full collection.
+	 */
+	private static long usedHeap()
+	{
+		for(int i = 0; i < 2; i++)
+		{
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static void resetPeaks()
+	{
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+			{
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long peakHeap()
+	{
+		long peak = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP)
+			{
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+			{
+				ScalingBenchmark.delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,53 @@
+package contract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting the edges in persistence order, from the order of the file, with PersistenceSort and, for
+ * comparison, with Collections.sort on Edge.compareTo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark extends MeshBenchmark {
+
+	private ArrayList<Edge> edges;
+
+	@Setup(Level.Trial)
+	public void readMesh()
+	{
+		this.edges = new ArrayList<Edge>();
+		this.read(new ArrayList<Vertex>(), this.edges, new ArrayList<Triangle>());
+		Edge.setPersistenceSort();
+	}
+
+	@Benchmark
+	public ArrayList<Edge> persistenceSort()
+	{
+		ArrayList<Edge> sorted = new ArrayList<Edge>(this.edges);
+		PersistenceSort.sort(sorted);
+		return sorted;
+	}
+
+	@Benchmark
+	public ArrayList<Edge> collectionsSort()
+	{
+		ArrayList<Edge> sorted = new ArrayList<Edge>(this.edges);
+		Collections.sort(sorted);
+		return sorted;
+	}
+}
@@ -0,0 +1,63 @@
+package contract;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing the uncontracted mesh with Driver.writeVertices, writeEdges and writeTriangles, and as a binary mesh
+ * with Driver.writeBinary, from the bits of LiveSimplices.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark extends MeshBenchmark {
+
+	private LiveSimplices live;
+
+	@Setup(Level.Trial)
+	public void readMesh()
+	{
+		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+		ArrayList<Edge> edges = new ArrayList<Edge>();
+		ArrayList<Triangle> triangles = new ArrayList<Triangle>();
+		this.read(vertices, edges, triangles);
+		this.live = new LiveSimplices(vertices, edges, triangles);
+	}
+
+	@Benchmark
+	public void writeVertices() throws IOException
+	{
+		Driver.writeVertices(this.live, this.fileName("ContractedData.txt"));
+	}
+
+	@Benchmark
+	public void writeEdges() throws IOException
+	{
+		Driver.writeEdges(this.live, this.fileName("ContractedEdges.txt"));
+	}
+
+	@Benchmark
+	public void writeTriangles() throws IOException
+	{
+		Driver.writeTriangles(this.live, this.fileName("ContractedTriangles.txt"));
+	}
+
+	@Benchmark
+	public void writeBinary() throws IOException
+	{
+		Driver.writeBinary(this.live, this.fileName("Contracted.mesh"));
+	}
+}